@@ -186,6 +186,25 @@ object Actor extends Combinators {
   def receive[A](f: PartialFunction[Any, A]): A =
     self.receive(f)
 
+  /**
+   * Receives a message with key `key` from the mailbox of `self`, like
+   * `receive`. The mailbox is indexed by the keys of its messages (their
+   * classes by default, see `Reactor.mailboxKey`), so messages with other
+   * keys are skipped without testing `f`.
+   *
+   * @example {{{
+   * receiveFor(classOf[Reply]) {
+   *   case Reply(result) => result
+   * }
+   * }}}
+   *
+   * @param  key the key of the messages `f` may be defined at
+   * @param  f   a partial function specifying patterns and actions
+   * @return     the result of processing the received message
+   */
+  def receiveFor[A](key: Any)(f: PartialFunction[Any, A]): A =
+    self.receiveFor(key)(f)
+
   /**
    * Receives a message from the mailbox of `self`. Blocks at most `msec`
    * milliseconds if no message matching any of the cases of `f` can be
@@ -231,6 +250,16 @@ object Actor extends Combinators {
   def react(f: PartialFunction[Any, Unit]): Nothing =
     rawSelf.react(f)
 
+  /**
+   * Lightweight variant of `receiveFor`.
+   *
+   * @param  key the key of the messages `f` may be defined at
+   * @param  f   a partial function specifying patterns and actions
+   * @return     this function never returns
+   */
+  def reactFor(key: Any)(f: PartialFunction[Any, Unit]): Nothing =
+    rawSelf.reactFor(key)(f)
+
   /**
    * Lightweight variant of `receiveWithin`.
    *
@@ -31,15 +31,21 @@ private[actors] class ActorTask(actor: InternalActor,
     }
   }
 
+  protected override def continueExecution() {
+    actor.synchronized {
+      if (actor.shouldExit)
+        actor.exit()
+    }
+  }
+
   protected override def terminateExecution(e: Throwable) {
     val senderInfo = try { Some(actor.internalSender) } catch {
       case _: Exception => None
     }
-    // !!! If this is supposed to be setting the current contents of the
-    // inherited mutable var rather than always the value given in the constructor,
-    // then it should be changed from initialMsg to msg.
+    // the message being reacted to, which is no longer initialMsg once the task
+    // has reacted to several messages in a row
     val uncaught = UncaughtException(actor,
-                                     if (initialMsg != null) Some(initialMsg) else None,
+                                     if (msg != null) Some(msg) else None,
                                      senderInfo,
                                      Thread.currentThread,
                                      e)
@@ -67,4 +67,7 @@ trait IScheduler {
 
   def managedBlock(blocker: scala.concurrent.ManagedBlocker): Unit
 
+  /** Counts of the work done by the actors that run on this scheduler. */
+  val metrics: SchedulerMetrics = new SchedulerMetrics
+
 }
@@ -33,14 +33,14 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
 
   protected[actors] override def scheduler: IScheduler = Scheduler
 
-  private[actors] override def startSearch(msg: Any, replyTo: OutputChannel[Any], handler: PartialFunction[Any, Any]) =
+  private[actors] override def startSearch(startMbox: MQueue[Any], handler: PartialFunction[Any, Any]) =
     if (isSuspended) {
       () =>
         synchronized {
-          mailbox.append(msg, replyTo)
+          startMbox.foreachAppend(mailbox)
           resumeActor()
         }
-    } else super.startSearch(msg, replyTo, handler)
+    } else super.startSearch(startMbox, handler)
 
   // we override this method to check `shouldExit` before suspending
   private[actors] override def searchMailbox(startMbox: MQueue[Any],
@@ -49,7 +49,7 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
     var tmpMbox = startMbox
     var done = false
     while (!done) {
-      val qel = tmpMbox.extractFirst((msg: Any, replyTo: OutputChannel[Any]) => {
+      val qel = extractFirst(tmpMbox, handler)((msg: Any, replyTo: OutputChannel[Any]) => {
         senders = List(replyTo)
         handler.isDefinedAt(msg)
       })
@@ -67,9 +67,13 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
             // since linked actors might have set it after we checked
             // last time (e.g., at the beginning of `react`)
             if (shouldExit) exit()
-            waitingFor = handler
-            // see Reactor.searchMailbox
-            throw Actor.suspendException
+            if (tryWaitFor(handler)) {
+              // see Reactor.searchMailbox
+              throw Actor.suspendException
+            }
+            tmpMbox = new MQueue[Any]("Temp")
+            drainSendBuffer(tmpMbox)
+            // keep going
           }
         }
       } else {
@@ -82,6 +86,10 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
   private[actors] override def makeReaction(fun: () => Unit, handler: PartialFunction[Any, Any], msg: Any): Runnable =
     new ActorTask(this, fun, handler, msg)
 
+  /** See the companion object's `receiveFor` method. */
+  def receiveFor[R](key: Any)(f: PartialFunction[Any, R]): R =
+    receive(keyedHandler(key, f))
+
   /** See the companion object's `receive` method. */
   def receive[R](f: PartialFunction[Any, R]): R = {
     assert(Actor.self(scheduler) == this, "receive from channel belonging to other actor")
@@ -93,7 +101,7 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
 
     var done = false
     while (!done) {
-      val qel = mailbox.extractFirst((m: Any, replyTo: OutputChannel[Any]) => {
+      val qel = extractFirst(mailbox, f)((m: Any, replyTo: OutputChannel[Any]) => {
         senders = replyTo :: senders
         val matches = f.isDefinedAt(m)
         senders = senders.tail
@@ -102,11 +110,10 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
       if (null eq qel) {
         synchronized {
           // in mean time new stuff might have arrived
-          if (!sendBuffer.isEmpty) {
+          if (!sendBuffer.isEmpty || !tryWaitFor(f)) {
             drainSendBuffer(mailbox)
             // keep going
           } else {
-            waitingFor = f
             isSuspended = true
             scheduler.managedBlock(blocker)
             drainSendBuffer(mailbox)
@@ -148,7 +155,7 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
 
     var done = false
     while (!done) {
-      val qel = mailbox.extractFirst((m: Any, replyTo: OutputChannel[Any]) => {
+      val qel = extractFirst(mailbox, f)((m: Any, replyTo: OutputChannel[Any]) => {
         senders = replyTo :: senders
         val matches = f.isDefinedAt(m)
         senders = senders.tail
@@ -180,10 +187,11 @@ private[actors] trait InternalActor extends AbstractActor with InternalReplyReac
 
             // It is possible that !onTimeout.isEmpty, but TIMEOUT is not yet in mailbox
             // See SI-4759
-            waitingFor = f
-            received = None
-            isSuspended = true
-            scheduler.managedBlock(blocker)
+            if (tryWaitFor(f)) {
+              received = None
+              isSuspended = true
+              scheduler.managedBlock(blocker)
+            }
             drainSendBuffer(mailbox)
             // keep going
             () => {}
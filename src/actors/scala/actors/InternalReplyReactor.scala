@@ -66,7 +66,7 @@ trait InternalReplyReactor extends Reactor[Any] with ReactorCanReply {
     var tmpMbox = startMbox
     var done = false
     while (!done) {
-      val qel = tmpMbox.extractFirst((msg: Any, replyTo: OutputChannel[Any]) => {
+      val qel = extractFirst(tmpMbox, handler)((msg: Any, replyTo: OutputChannel[Any]) => {
         senders = List(replyTo)
         handler.isDefinedAt(msg)
       })
@@ -75,12 +75,11 @@ trait InternalReplyReactor extends Reactor[Any] with ReactorCanReply {
       if (null eq qel) {
         synchronized {
           // in mean time new stuff might have arrived
-          if (!sendBuffer.isEmpty) {
+          if (!sendBuffer.isEmpty || !tryWaitFor(handler)) {
             tmpMbox = new MQueue[Any]("Temp")
             drainSendBuffer(tmpMbox)
             // keep going
           } else {
-            waitingFor = handler
             // see Reactor.searchMailbox
             throw Actor.suspendException
           }
@@ -120,7 +119,7 @@ trait InternalReplyReactor extends Reactor[Any] with ReactorCanReply {
     mailbox.extractFirst((m: Any, replyTo: OutputChannel[Any]) => m == TIMEOUT)
 
     while (true) {
-      val qel = mailbox.extractFirst((m: Any, replyTo: OutputChannel[Any]) => {
+      val qel = extractFirst(mailbox, handler)((m: Any, replyTo: OutputChannel[Any]) => {
         senders = List(replyTo)
         handler isDefinedAt m
       })
@@ -133,8 +132,10 @@ trait InternalReplyReactor extends Reactor[Any] with ReactorCanReply {
           } else if (msec == 0L) {
             // throws Actor.suspendException
             resumeReceiver((TIMEOUT, this), handler, false)
+          } else if (!tryWaitFor(handler)) {
+            drainSendBuffer(mailbox)
+            // keep going
           } else {
-            waitingFor = handler
             val thisActor = this
             onTimeout = Some(new TimerTask {
               def run() { thisActor.send(TIMEOUT, thisActor) }
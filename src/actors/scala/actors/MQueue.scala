@@ -8,9 +8,15 @@
 
 package scala.actors
 
+import java.util.{ArrayDeque, HashMap}
+import java.util.concurrent.atomic.AtomicReference
+
 private[actors] class MQueueElement[Msg >: Null](val msg: Msg, val session: OutputChannel[Any], var next: MQueueElement[Msg]) {
   def this() = this(null, null, null)
   def this(msg: Msg, session: OutputChannel[Any]) = this(msg, session, null)
+
+  // set while the element is in an `MQueue`
+  var prev: MQueueElement[Msg] = null
 }
 
 private[actors] class MQueue[Msg >: Null](protected val label: String) {
@@ -18,17 +24,90 @@ private[actors] class MQueue[Msg >: Null](protected val label: String) {
   protected var last: MQueueElement[Msg] = null  // last eq null iff list is empty
   private var _size = 0
 
+  /* The elements with each key, in order, once `indexBy` was called. */
+  private var keyOf: Msg => Any = null
+  private var index: HashMap[Any, ArrayDeque[MQueueElement[Msg]]] = null
+
+  /* Written by the thread that matches the messages, and read without
+   * synchronization by others: the values they get may be out of date.
+   */
+  private var _searches = 0L
+  private var _scanned = 0L
+
   def size = _size
   final def isEmpty = last eq null
 
+  /** The number of searches made by `extractFirst` and `remove`. */
+  def searches = _searches
+
+  /** The number of messages tested by those searches. A high ratio of
+   *  scanned messages per search means that messages pile up in front
+   *  of those the handlers are looking for.
+   */
+  def scannedMessages = _scanned
+
   protected def changeSize(diff: Int) {
     _size += diff
   }
 
+  final def isIndexed = index ne null
+
+  /** Indexes the messages by the key `key` returns for them, which must
+   *  be the same every time for a given message. `extractFirst(key, p)`
+   *  then only tests the messages with that key.
+   */
+  def indexBy(key: Msg => Any) {
+    keyOf = key
+    index = new HashMap[Any, ArrayDeque[MQueueElement[Msg]]]
+    var curr = first
+    while (curr != null) {
+      addToIndex(curr)
+      curr = curr.next
+    }
+  }
+
+  private def addToIndex(el: MQueueElement[Msg]) {
+    val key = keyOf(el.msg)
+    var els = index.get(key)
+    if (els eq null) {
+      els = new ArrayDeque[MQueueElement[Msg]]
+      index.put(key, els)
+    }
+    els.addLast(el)
+  }
+
+  private def removeFromIndex(el: MQueueElement[Msg]) {
+    val key = keyOf(el.msg)
+    val els = index.get(key)
+    // usually the first one, unless a guard rejected those before it
+    if (els.peekFirst eq el) els.pollFirst()
+    else els.remove(el)
+    if (els.isEmpty)
+      index.remove(key)
+  }
+
+  private def unlink(el: MQueueElement[Msg]) {
+    if (el eq first) first = el.next
+    else el.prev.next = el.next
+    if (el eq last) last = el.prev
+    else el.next.prev = el.prev
+    el.next = null
+    el.prev = null
+
+    changeSize(-1)
+    if (index ne null)
+      removeFromIndex(el)
+  }
+
   def prepend(other: MQueue[Msg]) {
     if (!other.isEmpty) {
       other.last.next = first
+      if (isEmpty) last = other.last
+      else first.prev = other.last
       first = other.first
+      changeSize(other.size)
+      if (index ne null)
+        indexBy(keyOf)
     }
   }
 
@@ -36,6 +115,8 @@ private[actors] class MQueue[Msg >: Null](protected val label: String) {
     first = null
     last = null
     _size = 0
+    if (index ne null)
+      index.clear()
   }
 
 
@@ -44,18 +125,30 @@ private[actors] class MQueue[Msg >: Null](protected val label: String) {
     val el = new MQueueElement(msg, session)
 
     if (isEmpty) first = el
-    else last.next = el
+    else {
+      last.next = el
+      el.prev = last
+    }
 
     last = el
+    if (index ne null)
+      addToIndex(el)
   }
 
   def append(el: MQueueElement[Msg]) {
     changeSize(1) // size always increases by 1
 
-    if (isEmpty) first = el
-    else last.next = el
+    if (isEmpty) {
+      first = el
+      el.prev = null
+    } else {
+      last.next = el
+      el.prev = last
+    }
 
     last = el
+    if (index ne null)
+      addToIndex(el)
   }
 
   def foreach(f: (Msg, OutputChannel[Any]) => Unit) {
@@ -83,6 +176,8 @@ private[actors] class MQueue[Msg >: Null](protected val label: String) {
     first = null
     last = null
     _size = 0
+    if (index ne null)
+      index.clear()
   }
 
   def foldLeft[B](z: B)(f: (B, Msg) => B): B = {
@@ -124,83 +219,113 @@ private[actors] class MQueue[Msg >: Null](protected val label: String) {
     removeInternal(0)(p).orNull
 
   def extractFirst(pf: PartialFunction[Msg, Any]): MQueueElement[Msg] = {
-    if (isEmpty)    // early return
-      return null
-
-    // special handling if returning the head
-    if (pf.isDefinedAt(first.msg)) {
-      val res = first
-      first = first.next
-      if (res eq last)
-        last = null
-
-      changeSize(-1)
-      res
+    _searches += 1
+    var tested = 0
+    var curr = first
+    while (curr != null) {
+      tested += 1
+      if (pf.isDefinedAt(curr.msg)) {
+        _scanned += tested
+        unlink(curr)
+        return curr // early return
+      }
+      curr = curr.next
     }
-    else {
-      var curr = first.next   // init to element #2
-      var prev = first
-
-      while (curr != null) {
-        if (pf.isDefinedAt(curr.msg)) {
-          prev.next = curr.next
-          if (curr eq last)
-            last = prev
+    // not found
+    _scanned += tested
+    null
+  }
 
-          changeSize(-1)
+  /** Extracts the first message with the key `key` that satisfies the
+   *  predicate `p`, which must fail for messages with other keys, or
+   *  `'''null'''`. If the queue is indexed, only the messages with that
+   *  key are tested.
+   */
+  def extractFirst(key: Any, p: (Msg, OutputChannel[Any]) => Boolean): MQueueElement[Msg] =
+    if (index eq null) extractFirst(p)
+    else {
+      _searches += 1
+      val els = index.get(key)
+      if (els eq null)    // early return
+        return null
+
+      var tested = 0
+      val it = els.iterator
+      while (it.hasNext) {
+        val curr = it.next()
+        tested += 1
+        if (p(curr.msg, curr.session)) {
+          _scanned += tested
+          unlink(curr)
           return curr // early return
         }
-        else {
-          prev = curr
-          curr = curr.next
-        }
       }
       // not found
+      _scanned += tested
       null
     }
-  }
 
   private def removeInternal(n: Int)(p: (Msg, OutputChannel[Any]) => Boolean): Option[MQueueElement[Msg]] = {
     var pos = 0
 
-    def foundMsg(x: MQueueElement[Msg]) = {
-      changeSize(-1)
-      Some(x)
-    }
     def test(msg: Msg, session: OutputChannel[Any]): Boolean =
       p(msg, session) && (pos == n || { pos += 1 ; false })
 
-    if (isEmpty)    // early return
-      return None
+    _searches += 1
+    var tested = 0
+    var curr = first
+    while (curr != null) {
+      tested += 1
+      if (test(curr.msg, curr.session)) {
+        _scanned += tested
+        unlink(curr)
+        return Some(curr) // early return
+      }
+      curr = curr.next
+    }
+    // not found
+    _scanned += tested
+    None
+  }
+}
 
-    // special handling if returning the head
-    if (test(first.msg, first.session)) {
-      val res = first
-      first = first.next
-      if (res eq last)
-        last = null
+/** A queue that many threads append to without locking, and that one
+ *  thread at a time empties into an `MQueue`, where messages are matched.
+ *
+ *  Appended elements are pushed on a stack; `foreachDequeue` takes the
+ *  whole stack at once and reverses it, so messages keep their order.
+ */
+private[actors] class ConcurrentMQueue[Msg >: Null] {
+  private[this] val top = new AtomicReference[MQueueElement[Msg]]
 
-      foundMsg(res)
-    }
-    else {
-      var curr = first.next   // init to element #2
-      var prev = first
+  final def isEmpty = top.get eq null
 
-      while (curr != null) {
-        if (test(curr.msg, curr.session)) {
-          prev.next = curr.next
-          if (curr eq last)
-            last = prev
+  def append(msg: Msg, session: OutputChannel[Any]) {
+    val el = new MQueueElement(msg, session)
+    var t = top.get
+    el.next = t
+    while (!top.compareAndSet(t, el)) {
+      t = top.get
+      el.next = t
+    }
+  }
 
-          return foundMsg(curr) // early return
-        }
-        else {
-          prev = curr
-          curr = curr.next
-        }
-      }
-      // not found
-      None
+  /** Moves all messages to `target`, in the order they were appended.
+   *  Must not be called by several threads at the same time.
+   */
+  def foreachDequeue(target: MQueue[Msg]) {
+    var curr = top.getAndSet(null)
+    var prev: MQueueElement[Msg] = null
+    while (curr != null) {
+      val next = curr.next
+      curr.next = prev
+      prev = curr
+      curr = next
+    }
+    curr = prev
+    while (curr != null) {
+      target.append(curr)
+      curr = curr.next
     }
   }
 }
@@ -45,6 +45,15 @@ private[actors] object Reactor {
   }
 }
 
+/* A handler given by `reactFor` or `receiveFor`: it is only defined at
+ * messages with key `key`, so an indexed mailbox only tests those.
+ */
+private[actors] final class KeyedHandler[Msg, R](val key: Any, keyOf: Msg => Any, handler: PartialFunction[Msg, R])
+        extends PartialFunction[Msg, R] {
+  def isDefinedAt(msg: Msg) = keyOf(msg) == key && handler.isDefinedAt(msg)
+  def apply(msg: Msg) = handler(msg)
+}
+
 /**
  * Super trait of all actor traits.
  *
@@ -58,8 +67,10 @@ trait Reactor[Msg >: Null] extends OutputChannel[Msg] with Combinators {
   /* The $actor's mailbox. */
   private[actors] val mailbox = new MQueue[Msg]("Reactor")
 
-  // guarded by this
-  private[actors] val sendBuffer = new MQueue[Msg]("SendBuffer")
+  /* Senders append to it without locking, it is drained while holding
+   * the lock of this.
+   */
+  private[actors] val sendBuffer = new ConcurrentMQueue[Msg]
 
   /* Whenever this $actor executes on some thread, `waitingFor` is
    * guaranteed to be equal to `Reactor.waitingForNone`.
@@ -71,14 +82,23 @@ trait Reactor[Msg >: Null] extends OutputChannel[Msg] with Combinators {
    * If the $actor waits in a `react`, `waitingFor` holds the
    * message handler that `react` was called with.
    *
-   * guarded by this
+   * written while holding the lock of this, read without it by `send`
    */
+  @volatile
   private[actors] var waitingFor: PartialFunction[Msg, Any] =
     Reactor.waitingForNone
 
   // guarded by this
   private[actors] var _state: Actor.State.Value = Actor.State.New
 
+  /* The number of messages this $actor may still react to on the thread
+   * of the current task, and the reaction `resumeReceiver` left for that
+   * task to run next. Only used by the thread running this $actor.
+   */
+  private[actors] var reactionsLeft = 0
+  private[actors] var nextHandler: PartialFunction[Msg, Any] = null
+  private[actors] var nextMsg: Msg = null
+
   /**
    * The $actor's behavior is specified by implementing this method.
    */
@@ -97,24 +117,70 @@ trait Reactor[Msg >: Null] extends OutputChannel[Msg] with Combinators {
   protected[actors] def mailboxSize: Int =
     mailbox.size
 
+  /** The number of messages this $actor may react to in a row on the
+   *  thread of a task, when it finds them in its mailbox, before it
+   *  submits a new task to its scheduler for the next one. A larger
+   *  budget saves task submissions, but delays the other actors of
+   *  the scheduler.
+   *
+   *  @return the value of the system property `actors.messageBudget`,
+   *          1 by default
+   */
+  protected def messageBudget: Int =
+    ThreadPoolConfig.messageBudget
+
+  // called by a task that starts running this $actor
+  private[actors] def resetMessageBudget() {
+    reactionsLeft = messageBudget - 1
+  }
+
+  /** The number of times this $actor searched its mailbox for a message
+   *  its handler is defined at.
+   */
+  protected[actors] def mailboxSearches: Long =
+    mailbox.searches
+
+  /** The number of messages tested by those searches. If it is much larger
+   *  than `mailboxSearches`, handlers skip many messages to get the ones
+   *  they wait for: `reactFor` or `receiveFor` may help.
+   */
+  protected[actors] def mailboxScannedMessages: Long =
+    mailbox.scannedMessages
+
+  /** The key of `msg` in the index of the mailbox used by `reactFor`
+   *  and `receiveFor`. The key of a message must not change.
+   *
+   *  @return the class of `msg` by default
+   */
+  protected def mailboxKey(msg: Msg): Any =
+    if (msg == null) null else msg.getClass
+
+  /* The message is appended to `sendBuffer` before reading `waitingFor`,
+   * while a suspending $actor sets `waitingFor` before checking that
+   * `sendBuffer` is empty (see `tryWaitFor`): either the $actor sees the
+   * message, or the sender sees that it has to resume the $actor. Only
+   * the latter takes the lock.
+   */
   def send(msg: Msg, replyTo: OutputChannel[Any]) {
-    val todo = synchronized {
-      if (waitingFor ne Reactor.waitingForNone) {
-        val savedWaitingFor = waitingFor
-        waitingFor = Reactor.waitingForNone
-        startSearch(msg, replyTo, savedWaitingFor)
-      } else {
-        sendBuffer.append(msg, replyTo)
-        () => { /* do nothing */ }
+    sendBuffer.append(msg, replyTo)
+    if (waitingFor ne Reactor.waitingForNone) {
+      val todo = synchronized {
+        // another sender may have resumed this $actor in the mean time
+        if ((waitingFor ne Reactor.waitingForNone) && !sendBuffer.isEmpty) {
+          val savedWaitingFor = waitingFor
+          waitingFor = Reactor.waitingForNone
+          val startMbox = new MQueue[Msg]("Start")
+          drainSendBuffer(startMbox)
+          startSearch(startMbox, savedWaitingFor)
+        } else
+          () => { /* do nothing */ }
       }
+      todo()
     }
-    todo()
   }
 
-  private[actors] def startSearch(msg: Msg, replyTo: OutputChannel[Any], handler: PartialFunction[Msg, Any]) =
+  private[actors] def startSearch(startMbox: MQueue[Msg], handler: PartialFunction[Msg, Any]) =
     () => scheduler execute makeReaction(() => {
-      val startMbox = new MQueue[Msg]("Start")
-      synchronized { startMbox.append(msg, replyTo) }
       searchMailbox(startMbox, handler, true)
     })
 
@@ -128,8 +194,16 @@ trait Reactor[Msg >: Null] extends OutputChannel[Msg] with Combinators {
   private[actors] def resumeReceiver(item: (Msg, OutputChannel[Any]), handler: PartialFunction[Msg, Any], onSameThread: Boolean) {
     if (onSameThread)
       makeReaction(null, handler, item._1).run()
-    else
+    else if (reactionsLeft > 0) {
+      // run by the current task once it catches the SuspendActorControl
+      reactionsLeft -= 1
+      nextHandler = handler
+      nextMsg = item._1
+    } else {
+      if (scheduler.metrics.enabled)
+        scheduler.metrics.resubmitted()
       scheduleActor(handler, item._1)
+    }
 
     /* Here, we throw a SuspendActorControl to avoid
        terminating this actor when the current ReactorTask
@@ -156,24 +230,52 @@ trait Reactor[Msg >: Null] extends OutputChannel[Msg] with Combinators {
     sendBuffer.foreachDequeue(mbox)
   }
 
+  /* Suspends this $actor on `handler`, unless a message was sent since
+   * `sendBuffer` was last found empty. Returns whether it did.
+   *
+   * guarded by this
+   */
+  private[actors] def tryWaitFor(handler: PartialFunction[Msg, Any]): Boolean = {
+    waitingFor = handler
+    if (sendBuffer.isEmpty) true
+    else {
+      waitingFor = Reactor.waitingForNone
+      false
+    }
+  }
+
+  /* Extracts the first message of `mbox` that satisfies `p`, which must
+   * fail for the messages `handler` is not defined at. Only the messages
+   * with the key of a `KeyedHandler` are tested if `mbox` is indexed.
+   */
+  private[actors] def extractFirst(mbox: MQueue[Msg], handler: PartialFunction[Msg, Any])(p: (Msg, OutputChannel[Any]) => Boolean): MQueueElement[Msg] =
+    handler match {
+      case keyed: KeyedHandler[_, _] => mbox.extractFirst(keyed.key, p)
+      case _                         => mbox.extractFirst(p)
+    }
+
   private[actors] def searchMailbox(startMbox: MQueue[Msg],
                                     handler: PartialFunction[Msg, Any],
                                     resumeOnSameThread: Boolean) {
     var tmpMbox = startMbox
     var done = false
     while (!done) {
-      val qel = tmpMbox.extractFirst(handler)
+      val qel = handler match {
+        case keyed: KeyedHandler[_, _] =>
+          tmpMbox.extractFirst(keyed.key, (msg: Msg, replyTo: OutputChannel[Any]) => handler.isDefinedAt(msg))
+        case _ =>
+          tmpMbox.extractFirst(handler)
+      }
       if (tmpMbox ne mailbox)
         tmpMbox.foreachAppend(mailbox)
       if (null eq qel) {
         synchronized {
           // in mean time new stuff might have arrived
-          if (!sendBuffer.isEmpty) {
+          if (!sendBuffer.isEmpty || !tryWaitFor(handler)) {
             tmpMbox = new MQueue[Msg]("Temp")
             drainSendBuffer(tmpMbox)
             // keep going
           } else {
-            waitingFor = handler
             /* Here, we throw a SuspendActorControl to avoid
                terminating this actor when the current ReactorTask
                is finished.
@@ -205,6 +307,29 @@ trait Reactor[Msg >: Null] extends OutputChannel[Msg] with Combinators {
     throw Actor.suspendException
   }
 
+  /**
+   * Receives a message with key `key` from this $actor's mailbox, like
+   * `react`. The mailbox is indexed by `mailboxKey`, so messages with
+   * other keys are skipped without a look.
+   *
+   * {{{
+   * reactFor(classOf[Reply]) {
+   *   case Reply(result) => // ...
+   * }
+   * }}}
+   *
+   * @param  key      the key of the messages `handler` may be defined at
+   * @param  handler  a partial function with message patterns and actions
+   */
+  protected[actors] def reactFor(key: Any)(handler: PartialFunction[Msg, Unit]): Nothing =
+    react(keyedHandler(key, handler))
+
+  private[actors] def keyedHandler[R](key: Any, handler: PartialFunction[Msg, R]): PartialFunction[Msg, R] = {
+    if (!mailbox.isIndexed)
+      mailbox.indexBy(mailboxKey)
+    new KeyedHandler[Msg, R](key, mailboxKey, handler)
+  }
+
   /* This method is guaranteed to be executed from inside
    * an $actor's act method.
    *
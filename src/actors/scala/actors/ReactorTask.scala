@@ -24,21 +24,45 @@ private[actors] class ReactorTask[Msg >: Null](var reactor: Reactor[Msg],
   extends RecursiveAction with Callable[Unit] with Runnable {
 
   def run() {
+    var messages = 0
+    var mailboxDepths = 0L
+    val metrics = reactor.scheduler.metrics
+    val counting = metrics.enabled
     try {
       beginExecution()
-      try {
-        if (fun eq null)
-          handler(msg)
-        else
-          fun()
-      } catch {
-        case _: KillActorControl =>
-          // do nothing
+      reactor.resetMessageBudget()
+      var reacting = true
+      while (reacting) {
+        try {
+          try {
+            if (fun eq null) {
+              if (counting) {
+                messages += 1
+                mailboxDepths += reactor.mailbox.size
+              }
+              handler(msg)
+            } else
+              fun()
+          } catch {
+            case _: KillActorControl =>
+              // do nothing
 
-        case e: Exception if reactor.exceptionHandler.isDefinedAt(e) =>
-          reactor.exceptionHandler(e)
+            case e: Exception if reactor.exceptionHandler.isDefinedAt(e) =>
+              reactor.exceptionHandler(e)
+          }
+          reactor.kill()
+          reacting = false
+        } catch {
+          case _: SuspendActorControl if reactor.nextHandler ne null =>
+            // react found a message and left it to this task (see Reactor.resumeReceiver)
+            fun = null
+            handler = reactor.nextHandler
+            msg = reactor.nextMsg
+            reactor.nextHandler = null
+            reactor.nextMsg = null
+            continueExecution()
+        }
       }
-      reactor.kill()
     }
     catch {
       case _: SuspendActorControl =>
@@ -50,6 +74,8 @@ private[actors] class ReactorTask[Msg >: Null](var reactor: Reactor[Msg],
         if (!e.isInstanceOf[Exception])
           throw e
     } finally {
+      if (counting)
+        metrics.activationEnded(messages, mailboxDepths)
       suspendExecution()
       this.reactor = null
       this.fun = null
@@ -64,6 +90,9 @@ private[actors] class ReactorTask[Msg >: Null](var reactor: Reactor[Msg],
 
   protected def beginExecution() {}
 
+  // before each reaction after the first one
+  protected def continueExecution() {}
+
   protected def suspendExecution() {}
 
   protected def terminateExecution(e: Throwable) {
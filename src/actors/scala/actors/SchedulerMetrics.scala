@@ -0,0 +1,95 @@
+/*                     __                                               *\
+**     ________ ___   / /  ___     Scala API                            **
+**    / __/ __// _ | / /  / _ |    (c) 2005-2013, LAMP/EPFL             **
+**  __\ \/ /__/ __ |/ /__/ __ |    http://scala-lang.org/               **
+** /____/\___/_/ |_/____/_/ | |                                         **
+**                          |/                                          **
+\*                                                                      */
+
+package scala.actors
+
+import java.util.concurrent.atomic.AtomicLong
+import scala.actors.scheduler.ThreadPoolConfig
+
+/**
+ * Counts of the work done by the actors that run on a scheduler, to tune
+ * the number of messages an actor may react to before it gives the thread
+ * back to the scheduler (see `Reactor.messageBudget`).
+ *
+ * An activation of an actor is a task that runs it. The counts of an
+ * activation are added when it ends.
+ *
+ * The counters are shared by all the threads of the scheduler, so they are
+ * only kept when the system property `actors.enableMetrics` is `true`;
+ * otherwise all the counts stay zero.
+ *
+ * @define since since the metrics were created or last `reset`
+ */
+@deprecated("Use the akka.actor package instead. For migration from the scala.actors package refer to the Actors Migration Guide.", "2.11.0")
+class SchedulerMetrics {
+
+  private val activations, messages, mailboxDepths, resubmissions = new AtomicLong
+
+  /** Whether the counts are kept, from the property `actors.enableMetrics`. */
+  val enabled: Boolean = ThreadPoolConfig.enableMetrics
+
+  @volatile
+  private var since = System.nanoTime
+
+  private[actors] def activationEnded(messages: Int, mailboxDepths: Long) {
+    activations.incrementAndGet()
+    if (messages > 0) {
+      this.messages.addAndGet(messages)
+      this.mailboxDepths.addAndGet(mailboxDepths)
+    }
+  }
+
+  private[actors] def resubmitted() {
+    resubmissions.incrementAndGet()
+  }
+
+  /** The number of activations $since. */
+  def activationCount: Long = activations.get
+
+  /** The number of messages actors reacted to $since. */
+  def messageCount: Long = messages.get
+
+  /** The number of tasks submitted by actors to react to a message they
+   *  found in their mailbox, having reacted to as many messages as they may
+   *  on the thread of a task, $since.
+   */
+  def resubmissionCount: Long = resubmissions.get
+
+  /** The number of messages actors reacted to per second $since. */
+  def messagesPerSecond: Double = {
+    val nanos = System.nanoTime - since
+    if (nanos <= 0L) 0.0 else messageCount * 1e9 / nanos
+  }
+
+  /** The average number of messages left in the mailbox of an actor when
+   *  it reacted to a message.
+   */
+  def averageMailboxDepth: Double = {
+    val n = messageCount
+    if (n == 0L) 0.0 else mailboxDepths.get.toDouble / n
+  }
+
+  /** The average number of messages an actor reacted to per activation. */
+  def messagesPerActivation: Double = {
+    val n = activationCount
+    if (n == 0L) 0.0 else messageCount.toDouble / n
+  }
+
+  /** Resets the counts to zero. */
+  def reset() {
+    activations.set(0L)
+    messages.set(0L)
+    mailboxDepths.set(0L)
+    resubmissions.set(0L)
+    since = System.nanoTime
+  }
+
+  override def toString =
+    "SchedulerMetrics(messages/s = %.1f, average mailbox depth = %.1f, messages/activation = %.1f, resubmissions = %d)".format(
+      messagesPerSecond, averageMailboxDepth, messagesPerActivation, resubmissionCount)
+}
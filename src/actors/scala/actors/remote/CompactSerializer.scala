@@ -0,0 +1,370 @@
+/*                     __                                               *\
+**     ________ ___   / /  ___     Scala API                            **
+**    / __/ __// _ | / /  / _ |    (c) 2005-2013, LAMP/EPFL             **
+**  __\ \/ /__/ __ |/ /__/ __ |    http://scala-lang.org/               **
+** /____/\___/_/ |_/____/_/ | |                                         **
+**                          |/                                          **
+\*                                                                      */
+
+
+package scala.actors
+package remote
+
+import java.io.{DataInputStream, DataOutputStream, EOFException, IOException}
+import java.lang.reflect.Constructor
+import java.nio.ByteBuffer
+import java.nio.charset.Charset
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedQueue}
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ *  Encodes the registered case classes, primitives, strings, symbols and
+ *  byte arrays itself, and everything else with Java serialization.
+ *
+ *  Both ends of a connection must use a `CompactSerializer` (see the
+ *  property `scala.actors.remote.serializer`) and register the same
+ *  classes under the same ids.
+ */
+@deprecated("Use the akka.actor package instead. For migration from the scala.actors package refer to the Actors Migration Guide.", "2.11.0")
+object CompactSerializer {
+
+  /** The first id that `register` accepts, the ones below are reserved. */
+  val FirstUserId = 32
+
+  private final class Registration(val id: Int, val cls: Class[_]) {
+    val constructor: Constructor[_] = cls.getConstructors maxBy (_.getParameterTypes.length)
+    val arity = constructor.getParameterTypes.length
+  }
+
+  private val NotRegistered = new Registration(-1, classOf[Tuple1[_]])
+
+  private val byId = new ConcurrentHashMap[Int, Registration]
+  // the registered classes, and the specialized subclasses of those met so far
+  private val byClass = new ConcurrentHashMap[Class[_], Registration]
+
+  private def add(id: Int, cls: Class[_]) {
+    val reg = new Registration(id, cls)
+    byId.put(id, reg)
+    byClass.put(cls, reg)
+  }
+
+  add(0, classOf[Node])
+  add(1, classOf[Locator])
+  add(2, classOf[NamedSend])
+  add(3, classOf[Some[_]])
+  add(4, classOf[Tuple2[_, _]])
+  add(5, classOf[Tuple3[_, _, _]])
+
+  /** Encodes the instances of the case class `cls` as `id` followed by
+   *  their fields, which are built again by its primary constructor.
+   *
+   *  @throws IllegalArgumentException if `id` is below `FirstUserId` or
+   *          registered with another class, or `cls` has no public constructor
+   */
+  def register(id: Int, cls: Class[_ <: Product]): Unit = synchronized {
+    if (id < FirstUserId)
+      throw new IllegalArgumentException("ids below "+FirstUserId+" are reserved")
+    if (cls.getConstructors.isEmpty)
+      throw new IllegalArgumentException(cls+" has no public constructor")
+    byId.get(id) match {
+      case null                     => add(id, cls)
+      case reg if reg.cls eq cls    =>
+      case reg                      =>
+        throw new IllegalArgumentException("id "+id+" is registered with "+reg.cls)
+    }
+  }
+
+  private def registration(cls: Class[_]): Registration = {
+    val reg = byClass.get(cls)
+    if (reg ne null) reg
+    else {
+      // the specialized subclasses of a case class, like those of `Tuple2`, are encoded as it
+      val sup = cls.getSuperclass
+      val supReg = if ((sup ne null) && cls.getName.endsWith("$sp")) byClass.get(sup) else null
+      // the other classes are not cached, so that the map does not keep their class loaders
+      if (supReg eq null) NotRegistered
+      else {
+        byClass.putIfAbsent(cls, supReg)
+        supReg
+      }
+    }
+  }
+
+  /** A service creates a `CompactSerializer` if the property
+   *  `scala.actors.remote.serializer` is `compact`, a `JavaSerializer` otherwise.
+   */
+  private[remote] def forService(serv: Service, cl: ClassLoader): JavaSerializer =
+    sys.props.getOrElse("scala.actors.remote.serializer", "java") match {
+      case "compact" => new CompactSerializer(serv, cl)
+      case _         => new JavaSerializer(serv, cl)
+    }
+
+  // the buffers messages are encoded into and frames read into
+  private val InitialBufSize = 8192
+  private val MaxPooledBufSize = 1 << 20
+  private val MaxPooledBufs = 64
+
+  private val pool = new ConcurrentLinkedQueue[ByteBuffer]
+  private val pooled = new AtomicInteger
+
+  private def acquire(size: Int): ByteBuffer = {
+    val buf = pool.poll()
+    if (buf eq null) ByteBuffer.allocate(math.max(size, InitialBufSize))
+    else {
+      pooled.decrementAndGet()
+      if (buf.capacity >= size) { buf.clear(); buf }
+      else { release(buf); ByteBuffer.allocate(size) }
+    }
+  }
+
+  private def release(buf: ByteBuffer) {
+    if (buf.capacity <= MaxPooledBufSize && pooled.incrementAndGet() <= MaxPooledBufs)
+      pool offer buf
+    else if (buf.capacity <= MaxPooledBufSize)
+      pooled.decrementAndGet()
+  }
+
+  private val UTF8 = Charset.forName("UTF-8")
+
+  // the tags of the encoded values
+  private final val NullTag       = 0
+  private final val IntTag        = 1
+  private final val LongTag       = 2
+  private final val DoubleTag     = 3
+  private final val FloatTag      = 4
+  private final val ShortTag      = 5
+  private final val ByteTag       = 6
+  private final val CharTag       = 7
+  private final val TrueTag       = 8
+  private final val FalseTag      = 9
+  private final val StringTag     = 10
+  private final val SymbolTag     = 11
+  private final val ByteArrayTag  = 12
+  private final val UnitTag       = 13
+  private final val NoneTag       = 14
+  private final val RegisteredTag = 15
+  private final val JavaTag       = 16
+}
+
+/**
+ *  A serializer that encodes messages into buffers taken from a pool,
+ *  and the classes registered with `CompactSerializer.register` without
+ *  Java serialization.
+ *
+ *  `serialize` copies the encoding into an array of its exact size, which the
+ *  services queue and write: the send side still allocates one array per
+ *  message. `writeObject` and `readObject` frame from and into the pooled buffers.
+ */
+@deprecated("Use the akka.actor package instead. For migration from the scala.actors package refer to the Actors Migration Guide.", "2.11.0")
+class CompactSerializer(serv: Service, cl: ClassLoader) extends JavaSerializer(serv, cl) {
+  import CompactSerializer._
+
+  override def serialize(o: AnyRef): Array[Byte] = {
+    val enc = new Encoder(acquire(InitialBufSize))
+    try {
+      enc.write(o)
+      val buf = enc.buf
+      buf.flip()
+      val bytes = new Array[Byte](buf.remaining)
+      buf.get(bytes)
+      bytes
+    } finally release(enc.buf)
+  }
+
+  override def deserialize(bytes: Array[Byte]): AnyRef =
+    deserialize(ByteBuffer.wrap(bytes))
+
+  /** Decodes the message from the position to the limit of `buf`. */
+  def deserialize(buf: ByteBuffer): AnyRef =
+    new Decoder(buf).read().asInstanceOf[AnyRef]
+
+  @throws(classOf[IOException])
+  override def writeObject(outputStream: DataOutputStream, obj: AnyRef) {
+    val enc = new Encoder(acquire(InitialBufSize))
+    try {
+      enc.write(obj)
+      // written from the pooled buffer, without copying it to an array of the size of the message;
+      // the services only frame this way the node they send first, see `serialize`
+      outputStream.writeInt(enc.buf.position)
+      outputStream.write(enc.buf.array, enc.buf.arrayOffset, enc.buf.position)
+      outputStream.flush()
+    } finally release(enc.buf)
+  }
+
+  @throws(classOf[IOException]) @throws(classOf[ClassNotFoundException])
+  override def readObject(inputStream: DataInputStream): AnyRef = {
+    val length =
+      try inputStream.readInt()
+      catch {
+        case npe: NullPointerException =>
+          throw new EOFException("Connection closed.")
+      }
+    val buf = acquire(length)
+    try {
+      inputStream.readFully(buf.array, buf.arrayOffset, length)
+      buf.limit(length)
+      deserialize(buf)
+    } finally release(buf)
+  }
+
+  private def javaSerialize(o: AnyRef) = super.serialize(o)
+  private def javaDeserialize(bytes: Array[Byte]) = super.deserialize(bytes)
+
+  private final class Encoder(var buf: ByteBuffer) {
+    private def ensure(n: Int) {
+      if (buf.remaining < n) {
+        val larger = ByteBuffer.allocate(math.max(2 * buf.capacity, buf.position + n))
+        buf.flip()
+        larger.put(buf)
+        release(buf)
+        buf = larger
+      }
+    }
+
+    private def tag(t: Int) {
+      ensure(1)
+      buf.put(t.toByte)
+    }
+
+    private def writeVarInt(v: Int) {
+      ensure(5)
+      var x = v
+      while ((x & ~0x7F) != 0) {
+        buf.put(((x & 0x7F) | 0x80).toByte)
+        x >>>= 7
+      }
+      buf.put(x.toByte)
+    }
+
+    private def writeString(s: String) {
+      val n = s.length
+      var i = 0
+      while (i < n && s.charAt(i) < 0x80) i += 1
+      if (i == n) {
+        // ASCII, which is its own UTF-8
+        writeVarInt(n)
+        ensure(n)
+        i = 0
+        while (i < n) {
+          buf.put(s.charAt(i).toByte)
+          i += 1
+        }
+      } else {
+        val bytes = s.getBytes(UTF8)
+        writeVarInt(bytes.length)
+        ensure(bytes.length)
+        buf.put(bytes)
+      }
+    }
+
+    private def writeJava(o: Any) {
+      val bytes = javaSerialize(o.asInstanceOf[AnyRef])
+      tag(JavaTag)
+      writeVarInt(bytes.length)
+      ensure(bytes.length)
+      buf.put(bytes)
+    }
+
+    def write(o: Any): Unit = o match {
+      case null       => tag(NullTag)
+      case i: Int     => tag(IntTag); writeVarInt((i << 1) ^ (i >> 31))
+      case l: Long    => tag(LongTag); ensure(8); buf.putLong(l)
+      case d: Double  => tag(DoubleTag); ensure(8); buf.putDouble(d)
+      case f: Float   => tag(FloatTag); ensure(4); buf.putFloat(f)
+      case s: Short   => tag(ShortTag); ensure(2); buf.putShort(s)
+      case b: Byte    => tag(ByteTag); ensure(1); buf.put(b)
+      case c: Char    => tag(CharTag); ensure(2); buf.putChar(c)
+      case b: Boolean => tag(if (b) TrueTag else FalseTag)
+      case s: String  => tag(StringTag); writeString(s)
+      case s: Symbol  => tag(SymbolTag); writeString(s.name)
+      case a: Array[Byte] =>
+        tag(ByteArrayTag)
+        writeVarInt(a.length)
+        ensure(a.length)
+        buf.put(a)
+      case ()         => tag(UnitTag)
+      case None       => tag(NoneTag)
+      case p: Product =>
+        val reg = registration(p.getClass)
+        if ((reg eq NotRegistered) || reg.arity != p.productArity)
+          writeJava(p)
+        else {
+          tag(RegisteredTag)
+          writeVarInt(reg.id)
+          var i = 0
+          while (i < reg.arity) {
+            write(p.productElement(i))
+            i += 1
+          }
+        }
+      case other      => writeJava(other)
+    }
+  }
+
+  private final class Decoder(buf: ByteBuffer) {
+    private def readVarInt(): Int = {
+      var result = 0
+      var shift = 0
+      var b = 0
+      do {
+        b = buf.get()
+        result |= (b & 0x7F) << shift
+        shift += 7
+      } while ((b & 0x80) != 0)
+      result
+    }
+
+    private def readBytes(): Array[Byte] = {
+      val bytes = new Array[Byte](readVarInt())
+      buf.get(bytes)
+      bytes
+    }
+
+    private def readString(): String = {
+      val n = readVarInt()
+      if (buf.hasArray) {
+        val s = new String(buf.array, buf.arrayOffset + buf.position, n, UTF8)
+        buf.position(buf.position + n)
+        s
+      } else {
+        val bytes = new Array[Byte](n)
+        buf.get(bytes)
+        new String(bytes, UTF8)
+      }
+    }
+
+    def read(): Any = ((buf.get() & 0xFF): @annotation.switch) match {
+      case NullTag      => null
+      case IntTag       => val n = readVarInt(); (n >>> 1) ^ -(n & 1)
+      case LongTag      => buf.getLong()
+      case DoubleTag    => buf.getDouble()
+      case FloatTag     => buf.getFloat()
+      case ShortTag     => buf.getShort()
+      case ByteTag      => buf.get()
+      case CharTag      => buf.getChar()
+      case TrueTag      => true
+      case FalseTag     => false
+      case StringTag    => readString()
+      case SymbolTag    => Symbol(readString())
+      case ByteArrayTag => readBytes()
+      case UnitTag      => ()
+      case NoneTag      => None
+      case RegisteredTag =>
+        val id = readVarInt()
+        val reg = byId.get(id)
+        if (reg eq null)
+          throw new IOException("No class is registered with id "+id)
+        val args = new Array[AnyRef](reg.arity)
+        var i = 0
+        while (i < args.length) {
+          args(i) = read().asInstanceOf[AnyRef]
+          i += 1
+        }
+        reg.constructor.newInstance(args: _*)
+      case JavaTag      =>
+        javaDeserialize(readBytes())
+      case t            =>
+        throw new IOException("Invalid tag "+t)
+    }
+  }
+}
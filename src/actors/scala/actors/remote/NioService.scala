@@ -0,0 +1,507 @@
+/*                     __                                               *\
+**     ________ ___   / /  ___     Scala API                            **
+**    / __/ __// _ | / /  / _ |    (c) 2005-2013, LAMP/EPFL             **
+**  __\ \/ /__/ __ |/ /__/ __ |    http://scala-lang.org/               **
+** /____/\___/_/ |_/____/_/ | |                                         **
+**                          |/                                          **
+\*                                                                      */
+
+
+package scala.actors
+package remote
+
+
+import java.io.{EOFException, IOException}
+import java.net.{InetAddress, InetSocketAddress}
+import java.nio.ByteBuffer
+import java.nio.channels.{ClosedChannelException, SelectableChannel, SelectionKey, Selector,
+                          ServerSocketChannel, SocketChannel, UnresolvedAddressException}
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedQueue}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger, AtomicLong}
+
+import scala.collection.mutable
+
+/* Object NioService.
+ */
+@deprecated("Use the akka.actor package instead. For migration from the scala.actors package refer to the Actors Migration Guide.", "2.11.0")
+object NioService {
+  private val services = new mutable.HashMap[Int, NioService]
+
+  def apply(port: Int, cl: ClassLoader): NioService = synchronized {
+    services.get(port) match {
+      case Some(service) =>
+        service
+      case None =>
+        val service = new NioService(port, cl)
+        services(port) = service
+        service.start()
+        Debug.info("created service at "+service.node)
+        service
+    }
+  }
+
+  private def terminated(service: NioService): Unit = synchronized {
+    if (services.get(service.node.port) == Some(service))
+      services -= service.node.port
+  }
+
+  private def intProp(propName: String, default: Int): Int =
+    sys.props get propName flatMap {
+      value =>
+        try Some(value.toInt)
+        catch {
+          case e: NumberFormatException =>
+            Debug.warning(s"""Could not parse $propName = "$value" as an Int""")
+            None
+        }
+    } getOrElse default
+
+  /** The number of threads doing the I/O of a service. Set by the property
+   *  `scala.actors.remote.nio.ioThreads`, 2 by default.
+   */
+  val IoThreads: Int = math.max(1, intProp("scala.actors.remote.nio.ioThreads", 2))
+
+  /** The number of bytes that may be queued on a connection: beyond it,
+   *  `send` blocks until they are written. Set by the property
+   *  `scala.actors.remote.nio.maxQueuedBytes`, 4 MB by default.
+   */
+  val MaxQueuedBytes: Long = intProp("scala.actors.remote.nio.maxQueuedBytes", 4 << 20).toLong
+
+  // the most frames written by one gathering write
+  private val MaxGather = 64
+  private val ReadBufSize = 65536
+
+  // the states of a connection
+  private final val Connecting = 0
+  private final val Open = 1
+  private final val Failed = 2 // could not connect, its messages are buffered
+  private final val Closed = 3 // its messages are lost
+}
+
+/* Class NioService.
+ *
+ * A service that multiplexes its connections on `NioService.IoThreads`
+ * threads, each with a `Selector`. Messages sent to a node are queued on
+ * the connection to it, and written with the other messages queued by the
+ * time its I/O thread gets to it. Frames are the same as `TcpService`'s,
+ * so the two kinds of services can talk to each other.
+ */
+@deprecated("Use the akka.actor package instead. For migration from the scala.actors package refer to the Actors Migration Guide.", "2.11.0")
+class NioService(port: Int, cl: ClassLoader, host: String) extends Service {
+  import NioService._
+
+  def this(port: Int, cl: ClassLoader) =
+    this(port, cl, InetAddress.getLocalHost().getHostAddress())
+
+  val serializer: JavaSerializer = CompactSerializer.forService(this, cl)
+
+  private val internalNode = new Node(host, port)
+  def node: Node = internalNode
+
+  // sent first on the connections this service opens, see TcpServiceWorker.sendNode
+  private lazy val nodeFrame = serializer.serialize(internalNode)
+
+  private val serverChannel = ServerSocketChannel.open()
+  private val ioThreads = Array.tabulate(IoThreads)(i => new IoThread(i))
+  private val nextIoThread = new AtomicInteger
+
+  private val connections = new ConcurrentHashMap[Node, Connection]
+  private val pendingSends = new mutable.HashMap[Node, List[Array[Byte]]] // guarded by this
+
+  @volatile
+  private var shouldTerminate = false
+
+  def start() {
+    serverChannel.configureBlocking(false)
+    serverChannel.socket.setReuseAddress(true)
+    serverChannel.socket.bind(new InetSocketAddress(port))
+    ioThreads(0).register(serverChannel, SelectionKey.OP_ACCEPT, null)
+    ioThreads foreach (_.start())
+  }
+
+  /**
+   * Sends a byte array to another node on the network.
+   * The bytes are queued on the connection to the node, which is opened
+   * if needed, and written by an I/O thread. If the node cannot be
+   * reached, up to `TcpService.BufSize` messages are buffered until the
+   * next send to it. If more than `NioService.MaxQueuedBytes` are queued
+   * on the connection, the caller waits for the I/O thread to catch up.
+   */
+  def send(node: Node, data: Array[Byte]) {
+    if (!shouldTerminate)
+      connectionTo(node) enqueue data
+  }
+
+  def terminate() {
+    shouldTerminate = true
+    NioService.terminated(this)
+    try serverChannel.close()
+    catch {
+      case ioe: IOException =>
+        Debug.info(this+": caught "+ioe)
+    }
+    ioThreads foreach (_.selector.wakeup())
+  }
+
+  def isConnected(n: Node): Boolean =
+    connections.get(n) match {
+      case null => false
+      case conn => conn.state == Open
+    }
+
+  override def toString = "NioService("+internalNode+")"
+
+  private def connectionTo(n: Node): Connection = {
+    val conn = connections.get(n)
+    if (conn ne null) conn
+    else synchronized {
+      val conn = connections.get(n)
+      if (conn ne null) conn
+      else connect(n)
+    }
+  }
+
+  /* Guarded by this. The frames are queued without waiting for capacity:
+   * the connection is not registered yet, so nothing would ever make room,
+   * and this lock is needed by `dequeueAll` when a connection fails.
+   */
+  private def connect(n: Node): Connection = {
+    val channel = SocketChannel.open()
+    channel.configureBlocking(false)
+    val conn = new Connection(channel, ioThreads((nextIoThread.getAndIncrement() & Int.MaxValue) % ioThreads.length))
+    conn.remoteNode = n
+    conn offer nodeFrame
+    pendingSends.remove(n) foreach (_.reverse foreach conn.offer)
+    connections.put(n, conn)
+    try {
+      if (channel.connect(new InetSocketAddress(n.address, n.port))) {
+        conn.state = Open
+        conn.io.register(channel, SelectionKey.OP_READ, conn)
+      } else
+        conn.io.register(channel, SelectionKey.OP_CONNECT, conn)
+    } catch {
+      case ioe: IOException =>
+        conn.close(ioe)
+      case uae: UnresolvedAddressException =>
+        conn.close(uae)
+    }
+    conn
+  }
+
+  /* Takes the messages out of the queue of a connection that failed or
+   * was closed. The messages of one that could not connect are buffered,
+   * except for the node it was to send first.
+   */
+  private def dequeueAll(conn: Connection): Unit = synchronized {
+    var data = conn.queue.poll()
+    while (data ne null) {
+      conn.queuedBytes.addAndGet(-(data.length + 4))
+      if (conn.state == Failed && (data ne nodeFrame)) {
+        pendingSends.get(conn.remoteNode) match {
+          case None =>
+            pendingSends(conn.remoteNode) = List(data)
+          case Some(msgs) if msgs.length < TcpService.BufSize =>
+            pendingSends(conn.remoteNode) = data :: msgs
+          case Some(_) =>
+            Debug.info(this+": lost message to "+conn.remoteNode)
+        }
+      }
+      data = conn.queue.poll()
+    }
+  }
+
+  private class Connection(val channel: SocketChannel, val io: IoThread) {
+    @volatile var state = Connecting
+
+    // the node at the other end; that of an accepted connection is the first frame it reads
+    @volatile var remoteNode: Node = null
+
+    val queue = new ConcurrentLinkedQueue[Array[Byte]]
+    val queuedBytes = new AtomicLong
+
+    // whether a flush was requested from the I/O thread and is not over
+    private val flushScheduled = new AtomicBoolean
+
+    @volatile private var waitingSenders = 0 // written while holding the lock of this
+
+    /* The state of the I/O thread. The frames being written are in
+     * `writing(writingFrom until writingUntil)`, a header for each.
+     */
+    var key: SelectionKey = null
+    private val headers = Array.fill(MaxGather)(ByteBuffer.allocate(4))
+    private val writing = new Array[ByteBuffer](2 * MaxGather)
+    private var writingFrom, writingUntil = 0
+    private var readBuf = ByteBuffer.allocate(ReadBufSize)
+
+    def enqueue(data: Array[Byte]) {
+      if (queuedBytes.get > MaxQueuedBytes && state <= Open)
+        awaitCapacity()
+      offer(data)
+      // the state is read after offering, and written before dequeueAll
+      if (state > Open)
+        dequeueAll(this)
+      else if (flushScheduled.compareAndSet(false, true))
+        io requestFlush this
+    }
+
+    // queues a frame regardless of capacity, without requesting a flush
+    def offer(data: Array[Byte]) {
+      queue offer data
+      queuedBytes.addAndGet(data.length + 4)
+    }
+
+    private def awaitCapacity(): Unit = synchronized {
+      waitingSenders += 1
+      try {
+        while (queuedBytes.get > MaxQueuedBytes && state <= Open)
+          wait()
+      } finally {
+        waitingSenders -= 1
+      }
+    }
+
+    private def wrote(bytes: Long) {
+      if (queuedBytes.addAndGet(-bytes) <= MaxQueuedBytes && waitingSenders > 0)
+        synchronized { notifyAll() }
+    }
+
+    // on the I/O thread, from here on
+
+    def finishConnect() {
+      channel.finishConnect()
+      channel.socket.setTcpNoDelay(true)
+      state = Open
+      key.interestOps(SelectionKey.OP_READ)
+      flush()
+    }
+
+    /* Writes the queued frames until there are none left, or the socket
+     * does not take more, in which case it is flushed again once writable.
+     */
+    def flush() {
+      var done = false
+      while (!done) {
+        if (writingFrom == writingUntil)
+          takeFrames()
+        if (writingFrom == writingUntil) {
+          flushScheduled.set(false)
+          // a sender that queued a frame before the flag was cleared did not request a flush
+          if (queue.isEmpty || !flushScheduled.compareAndSet(false, true)) {
+            key.interestOps(SelectionKey.OP_READ)
+            done = true
+          }
+        } else {
+          val written = channel.write(writing, writingFrom, writingUntil - writingFrom)
+          while (writingFrom < writingUntil && !writing(writingFrom).hasRemaining) {
+            writing(writingFrom) = null
+            writingFrom += 1
+          }
+          wrote(written)
+          if (writingFrom < writingUntil) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE)
+            done = true
+          }
+        }
+      }
+    }
+
+    private def takeFrames() {
+      writingFrom = 0
+      writingUntil = 0
+      var data = queue.poll()
+      while (data ne null) {
+        val header = headers(writingUntil / 2)
+        header.clear()
+        header.putInt(data.length)
+        header.flip()
+        writing(writingUntil) = header
+        writing(writingUntil + 1) = ByteBuffer.wrap(data)
+        writingUntil += 2
+        data = if (writingUntil < writing.length) queue.poll() else null
+      }
+    }
+
+    def read() {
+      if (channel.read(readBuf) < 0)
+        throw new EOFException("Connection closed.")
+      readBuf.flip()
+      var complete = true
+      while (complete && readBuf.remaining >= 4) {
+        val length = readBuf.getInt(readBuf.position)
+        if (length < 0)
+          throw new IOException("Invalid frame length "+length)
+        if (readBuf.remaining - 4 >= length) {
+          readBuf.position(readBuf.position + 4)
+          received(readFrame(length))
+        } else
+          complete = false
+      }
+      if (readBuf.remaining == 0 && readBuf.capacity > ReadBufSize)
+        readBuf = ByteBuffer.allocate(ReadBufSize)
+      else if (!complete && readBuf.capacity - 4 < readBuf.getInt(readBuf.position)) {
+        // the frame does not fit in the buffer
+        val larger = ByteBuffer.allocate(4 + readBuf.getInt(readBuf.position))
+        larger.put(readBuf)
+        readBuf = larger
+      } else
+        readBuf.compact()
+    }
+
+    private def readFrame(length: Int): AnyRef = serializer match {
+      case compact: CompactSerializer =>
+        // decoded in place
+        val frame = readBuf.slice()
+        frame.limit(length)
+        readBuf.position(readBuf.position + length)
+        compact.deserialize(frame)
+      case _ =>
+        val bytes = new Array[Byte](length)
+        readBuf.get(bytes)
+        serializer.deserialize(bytes)
+    }
+
+    private def received(msg: AnyRef) {
+      if (remoteNode ne null)
+        kernel.processMsg(remoteNode, msg)
+      else msg match {
+        case n: Node =>
+          remoteNode = n
+          // keeps a connection already opened to the peer, which may have messages queued:
+          // this one then only receives, and closing it leaves the other registered
+          connections.putIfAbsent(n, this)
+        case _ =>
+          throw new IOException("Expected the node of the peer, got "+msg)
+      }
+    }
+
+    def close(cause: Throwable): Unit = if (state <= Open) {
+      Debug.info(NioService.this+": closing connection to "+remoteNode+": "+cause)
+      state = if (state == Connecting) Failed else Closed
+      if (key ne null)
+        key.cancel()
+      try channel.close()
+      catch {
+        case ioe: IOException =>
+      }
+      if (remoteNode ne null)
+        connections.remove(remoteNode, this)
+      dequeueAll(this)
+      synchronized { notifyAll() }
+    }
+  }
+
+  private class IoThread(id: Int) extends Thread("NioService-"+port+"-"+id) {
+    setDaemon(true)
+
+    val selector = Selector.open()
+
+    private val registrations = new ConcurrentLinkedQueue[(SelectableChannel, Int, Connection)]
+    private val flushes = new ConcurrentLinkedQueue[Connection]
+
+    def register(channel: SelectableChannel, ops: Int, conn: Connection) {
+      registrations offer ((channel, ops, conn))
+      selector.wakeup()
+    }
+
+    def requestFlush(conn: Connection) {
+      flushes offer conn
+      selector.wakeup()
+    }
+
+    override def run() {
+      try {
+        while (!shouldTerminate) {
+          selector.select()
+          processRegistrations()
+          processFlushes()
+          val keys = selector.selectedKeys.iterator
+          while (keys.hasNext) {
+            val key = keys.next()
+            keys.remove()
+            if (key.isValid) {
+              if (key.isAcceptable) {
+                try accept()
+                catch {
+                  case ioe: IOException =>
+                    Debug.info(this+": caught "+ioe)
+                }
+              }
+              else
+                handle(key, key.attachment.asInstanceOf[Connection])
+            }
+          }
+        }
+      } catch {
+        case e: Exception =>
+          Debug.info(this+": caught "+e)
+      } finally {
+        Debug.info(this+": shutting down...")
+        val keys = selector.keys.iterator
+        while (keys.hasNext) keys.next().attachment match {
+          case conn: Connection => conn.close(new ClosedChannelException)
+          case _ =>
+        }
+        selector.close()
+      }
+    }
+
+    private def handle(key: SelectionKey, conn: Connection) {
+      try {
+        if (key.isConnectable)
+          conn.finishConnect()
+        if (key.isValid && key.isReadable)
+          conn.read()
+        if (key.isValid && key.isWritable)
+          conn.flush()
+      } catch {
+        case e: Exception =>
+          conn.close(e)
+      }
+    }
+
+    private def accept() {
+      val channel = serverChannel.accept()
+      if (channel ne null) {
+        channel.configureBlocking(false)
+        channel.socket.setTcpNoDelay(true)
+        val conn = new Connection(channel, ioThreads((nextIoThread.getAndIncrement() & Int.MaxValue) % ioThreads.length))
+        conn.state = Open
+        conn.io.register(channel, SelectionKey.OP_READ, conn)
+      }
+    }
+
+    private def processRegistrations() {
+      var r = registrations.poll()
+      while (r ne null) {
+        val (channel, ops, conn) = r
+        try {
+          val key = channel.register(selector, ops, conn)
+          if (conn ne null) {
+            conn.key = key
+            if (conn.state == Open)
+              conn.flush()
+          }
+        } catch {
+          case e: IOException if conn ne null =>
+            conn.close(e)
+        }
+        r = registrations.poll()
+      }
+    }
+
+    private def processFlushes() {
+      var conn = flushes.poll()
+      while (conn ne null) {
+        // one that is not connected yet is flushed once it is
+        if (conn.state == Open && (conn.key ne null)) {
+          try conn.flush()
+          catch {
+            case e: IOException =>
+              conn.close(e)
+          }
+        }
+        conn = flushes.poll()
+      }
+    }
+  }
+}
@@ -52,6 +52,15 @@ object RemoteActor {
   def classLoader: ClassLoader = cl
   def classLoader_=(x: ClassLoader) { cl = x }
 
+  /* The service of a new kernel, a `TcpService` unless the property
+   * `scala.actors.remote.transport` is `nio`.
+   */
+  private def createService(port: Int): Service =
+    sys.props.getOrElse("scala.actors.remote.transport", "tcp") match {
+      case "nio" => NioService(port, cl)
+      case _     => TcpService(port, cl)
+    }
+
   /**
    * Makes <code>self</code> remotely accessible on TCP port
    * <code>port</code>.
@@ -61,7 +70,7 @@ object RemoteActor {
   }
 
   private def createNetKernelOnPort(port: Int): NetKernel = {
-    val serv = TcpService(port, cl)
+    val serv = createService(port)
     val kern = serv.kernel
     val s = Actor.self(Scheduler)
     kernels(s) = kern
@@ -89,7 +98,7 @@ object RemoteActor {
   def register(name: Symbol, a: Actor): Unit = synchronized {
     val kernel = kernels.get(Actor.self(Scheduler)) match {
       case None =>
-        val serv = TcpService(TcpService.generatePort, cl)
+        val serv = createService(TcpService.generatePort)
         kernels(Actor.self(Scheduler)) = serv.kernel
         serv.kernel
       case Some(k) =>
@@ -87,7 +87,7 @@ object TcpService {
  */
 @deprecated("Use the akka.actor package instead. For migration from the scala.actors package refer to the Actors Migration Guide.", "2.11.0")
 class TcpService(port: Int, cl: ClassLoader) extends Thread with Service {
-  val serializer: JavaSerializer = new JavaSerializer(this, cl)
+  val serializer: JavaSerializer = CompactSerializer.forService(this, cl)
 
   private val internalNode = new Node(InetAddress.getLocalHost().getHostAddress(), port)
   def node: Node = internalNode
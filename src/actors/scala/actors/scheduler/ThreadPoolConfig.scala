@@ -37,6 +37,20 @@ private[actors] object ThreadPoolConfig {
     if (preMaxSize >= corePoolSize) preMaxSize else corePoolSize
   }
 
+  /* The number of messages an actor may react to in a row, on the thread
+   * of one task, before it submits a new task for the next one.
+   */
+  val messageBudget = getIntegerProp("actors.messageBudget") match {
+    case Some(i) if i > 0 => i
+    case _ => 1
+  }
+
+  /* Whether schedulers count the work done by their actors (see SchedulerMetrics).
+   */
+  val enableMetrics =
+    try propIsSetTo("actors.enableMetrics", "true")
+    catch { case _: SecurityException => false }
+
   private[actors] def useForkJoin: Boolean =
     try !propIsSetTo("actors.enableForkJoin", "false") &&
       (propIsSetTo("actors.enableForkJoin", "true") || {
@@ -0,0 +1,259 @@
+/* NSC -- new Scala compiler
+ * Copyright 2005-2014 LAMP/EPFL
+ */
+
+package scala.tools.asm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Answers subtyping questions about classes by reading the header of their
+ * classfiles (access flags, super class and interfaces), without loading them.
+ * A {@link ClassWriter} built with a ClassHierarchy uses it in
+ * {@link ClassWriter#getCommonSuperClass} instead of reflection.
+ *
+ * Array types are handled without reading any classfile, except those of
+ * their element types.
+ *
+ * The headers read so far are kept in a bounded LRU cache, split into
+ * independently locked segments so that ClassWriters running on different
+ * threads can share a single ClassHierarchy.
+ *
+ */
+public class ClassHierarchy {
+
+    /**
+     * Where classfile bytes come from.
+     */
+    public interface ClassBytes {
+
+        /**
+         * @param internalName
+         *            the internal name of a class.
+         * @return the bytes of that classfile, or <tt>null</tt> if unknown.
+         */
+        byte[] get(String internalName) throws IOException;
+    }
+
+    /**
+     * The header of a classfile, as far as subtyping is concerned.
+     */
+    public static final class Info {
+
+        public final String name;
+
+        public final String superName;
+
+        public final String[] interfaces;
+
+        public final boolean isInterface;
+
+        Info(final String name, final String superName,
+                final String[] interfaces, final boolean isInterface) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+    }
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private static final int SEGMENTS = 16;
+
+    private final ClassBytes classBytes;
+
+    private final Segment[] segments;
+
+    /**
+     * Constructs a new {@link ClassHierarchy}.
+     *
+     * @param classBytes
+     *            provides the classfile for an internal name.
+     * @param maxEntries
+     *            the (approximate) number of class headers to keep cached.
+     */
+    public ClassHierarchy(final ClassBytes classBytes, final int maxEntries) {
+        this.classBytes = classBytes;
+        this.segments = new Segment[SEGMENTS];
+        int perSegment = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; ++i) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Returns a {@link ClassHierarchy} reading classfiles as resources of the
+     * given class loader. No class is loaded in the process. The loader is
+     * only weakly referenced, so that the hierarchy can be the value of a map
+     * weakly keyed by it: once it is collected, no classfile is found.
+     *
+     * @param loader
+     *            the class loader to look up classfiles in, <tt>null</tt>
+     *            standing for the system class loader.
+     * @param maxEntries
+     *            the (approximate) number of class headers to keep cached.
+     */
+    public static ClassHierarchy forClassLoader(final ClassLoader loader,
+            final int maxEntries) {
+        final WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(
+                loader != null ? loader : ClassLoader.getSystemClassLoader());
+        return new ClassHierarchy(new ClassBytes() {
+            public byte[] get(final String internalName) throws IOException {
+                ClassLoader cl = ref.get();
+                if (cl == null) {
+                    return null;
+                }
+                InputStream is = cl.getResourceAsStream(internalName + ".class");
+                if (is == null) {
+                    return null;
+                }
+                return ClassReader.readClass(is, true);
+            }
+        }, maxEntries);
+    }
+
+    /**
+     * Returns the header of the given class, reading it if not cached yet.
+     *
+     * @param internalName
+     *            the internal name of a class.
+     * @return the header of that class.
+     * @throws RuntimeException
+     *             if the classfile can't be found or read.
+     */
+    public Info getInfo(final String internalName) {
+        Segment segment = segments[(internalName.hashCode() & 0x7FFFFFFF)
+                % SEGMENTS];
+        Info info;
+        synchronized (segment) {
+            info = segment.get(internalName);
+        }
+        if (info == null) {
+            // read outside of the lock, two threads racing here compute the same Info
+            info = readInfo(internalName);
+            synchronized (segment) {
+                segment.put(internalName, info);
+            }
+        }
+        return info;
+    }
+
+    private Info readInfo(final String internalName) {
+        byte[] b;
+        try {
+            b = classBytes.get(internalName);
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString());
+        }
+        if (b == null) {
+            throw new RuntimeException("Class not found: " + internalName);
+        }
+        ClassReader cr = new ClassReader(b, 0, b.length, false);
+        return new Info(internalName, cr.getSuperName(), cr.getInterfaces(),
+                (cr.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+    }
+
+    /**
+     * Tests whether a value of type <tt>type2</tt> can be assigned to a
+     * variable of type <tt>type1</tt>, ie whether <tt>type2</tt> is a subtype
+     * of <tt>type1</tt>.
+     *
+     * @param type1
+     *            the internal name of a class.
+     * @param type2
+     *            the internal name of another class.
+     */
+    public boolean isAssignableFrom(final String type1, final String type2) {
+        if (type1.equals(type2) || type1.equals(OBJECT)) {
+            return true;
+        }
+        if (type2.charAt(0) == '[') {
+            if (type1.charAt(0) != '[') {
+                return type1.equals("java/lang/Cloneable")
+                        || type1.equals("java/io/Serializable");
+            }
+            String e1 = type1.substring(1);
+            String e2 = type2.substring(1);
+            if (e1.charAt(0) == 'L' && e2.charAt(0) == 'L') {
+                return isAssignableFrom(e1.substring(1, e1.length() - 1),
+                        e2.substring(1, e2.length() - 1));
+            }
+            if (e1.charAt(0) == '[' && e2.charAt(0) == '[') {
+                return isAssignableFrom(e1, e2);
+            }
+            // arrays of primitives are only assignable to themselves
+            return e1.charAt(0) == 'L' && e2.charAt(0) == '['
+                    && isAssignableFrom(e1.substring(1, e1.length() - 1), e2);
+        }
+        if (type1.charAt(0) == '[') {
+            return false;
+        }
+        Info info = getInfo(type2);
+        if (info.superName != null && isAssignableFrom(type1, info.superName)) {
+            return true;
+        }
+        for (int i = 0; i < info.interfaces.length; ++i) {
+            if (isAssignableFrom(type1, info.interfaces[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the common super class of the two given types, following the
+     * same rules as {@link ClassWriter#getCommonSuperClass}.
+     *
+     * @param type1
+     *            the internal name of a class.
+     * @param type2
+     *            the internal name of another class.
+     * @return the internal name of the common super class of the two given
+     *         classes.
+     */
+    public String getCommonSuperClass(final String type1, final String type2) {
+        if (isAssignableFrom(type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1)) {
+            return type2;
+        }
+        if (type1.charAt(0) == '[' || type2.charAt(0) == '[') {
+            return OBJECT;
+        }
+        Info info1 = getInfo(type1);
+        if (info1.isInterface || getInfo(type2).isInterface) {
+            return OBJECT;
+        }
+        String c = info1.superName;
+        while (c != null && !isAssignableFrom(c, type2)) {
+            c = getInfo(c).superName;
+        }
+        return c != null ? c : OBJECT;
+    }
+
+    /**
+     * One lock-protected part of the LRU cache.
+     */
+    private static final class Segment extends LinkedHashMap<String, Info> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        Segment(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Info> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
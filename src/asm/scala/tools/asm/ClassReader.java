@@ -31,6 +31,7 @@ package scala.tools.asm;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A Java class parser to make a {@link ClassVisitor} visit an existing class.
@@ -164,9 +165,54 @@ public class ClassReader {
      *            the length of the class data.
      */
     public ClassReader(final byte[] b, final int off, final int len) {
+        this(b, off, len, true);
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object reading the remaining bytes
+     * of the given buffer. A buffer backed by an accessible array (a heap
+     * buffer which is not read-only) is read in place, with no copy. Since
+     * {@link #b b} must be an array, other buffers (such as direct or
+     * memory-mapped ones) are copied once, in a single bulk transfer. The
+     * position of the buffer is not modified.
+     *
+     * @param buffer
+     *            a buffer holding the bytecode of the class to be read.
+     */
+    public ClassReader(final ByteBuffer buffer) {
+        this(array(buffer), buffer.hasArray() ? buffer.arrayOffset()
+                + buffer.position() : 0, buffer.remaining());
+    }
+
+    private static byte[] array(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        byte[] b = new byte[buffer.remaining()];
+        buffer.duplicate().get(b);
+        return b;
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object, optionally accepting class
+     * versions newer than this reader fully supports. Only the constant pool
+     * and the class header can be relied upon when the version check is
+     * skipped, which is enough for {@link ClassHierarchy}.
+     *
+     * @param b
+     *            the bytecode of the class to be read.
+     * @param off
+     *            the start offset of the class data.
+     * @param len
+     *            the length of the class data.
+     * @param checkVersion
+     *            whether to reject class versions newer than Java 7.
+     */
+    ClassReader(final byte[] b, final int off, final int len,
+            final boolean checkVersion) {
         this.b = b;
         // checks the class version
-        if (readShort(off + 6) > Opcodes.V1_7) {
+        if (checkVersion && readShort(off + 6) > Opcodes.V1_7) {
             throw new IllegalArgumentException();
         }
         // parses the constant pool
@@ -238,7 +284,7 @@ public class ClassReader {
      * @see ClassVisitor#visit(int, int, String, String, String, String[])
      */
     public String getClassName() {
-        return readClass(header + 2, new char[maxStringLength]);
+        return readClass(header + 2, null);
     }
 
     /**
@@ -252,7 +298,7 @@ public class ClassReader {
      * @see ClassVisitor#visit(int, int, String, String, String, String[])
      */
     public String getSuperName() {
-        return readClass(header + 4, new char[maxStringLength]);
+        return readClass(header + 4, null);
     }
 
     /**
@@ -268,12 +314,9 @@ public class ClassReader {
         int index = header + 6;
         int n = readUnsignedShort(index);
         String[] interfaces = new String[n];
-        if (n > 0) {
-            char[] buf = new char[maxStringLength];
-            for (int i = 0; i < n; ++i) {
-                index += 2;
-                interfaces[i] = readClass(index, buf);
-            }
+        for (int i = 0; i < n; ++i) {
+            index += 2;
+            interfaces[i] = readClass(index, null);
         }
         return interfaces;
     }
@@ -449,7 +492,7 @@ public class ClassReader {
      * @throws IOException
      *             if a problem occurs during reading.
      */
-    private static byte[] readClass(final InputStream is, boolean close)
+    static byte[] readClass(final InputStream is, boolean close)
             throws IOException {
         if (is == null) {
             throw new IOException("Class not found");
@@ -473,7 +516,7 @@ public class ClassReader {
                     if (last < 0) {
                         return b;
                     }
-                    byte[] c = new byte[b.length + 1000];
+                    byte[] c = new byte[b.length + Math.max(1000, b.length)];
                     System.arraycopy(b, 0, c, 0, len);
                     c[len++] = (byte) last;
                     b = c;
@@ -2097,12 +2140,25 @@ public class ClassReader {
      *            length of the UTF8 string to be read.
      * @param buf
      *            buffer to be used to read the string. This buffer must be
-     *            sufficiently large. It is not automatically resized.
+     *            sufficiently large. It is not automatically resized. If
+     *            <tt>null</tt>, a buffer is allocated when needed.
      * @return the String corresponding to the specified UTF8 string.
      */
-    private String readUTF(int index, final int utfLen, final char[] buf) {
+    @SuppressWarnings("deprecation")
+    private String readUTF(int index, final int utfLen, char[] buf) {
         int endIndex = index + utfLen;
         byte[] b = this.b;
+        // most names and descriptors are ASCII, they need no decoding
+        int i = index;
+        while (i < endIndex && b[i] > 0) {
+            ++i;
+        }
+        if (i == endIndex) {
+            return new String(b, 0, index, utfLen);
+        }
+        if (buf == null) {
+            buf = new char[utfLen];
+        }
         int strLen = 0;
         int c;
         int st = 0;
@@ -484,6 +484,12 @@ public class ClassWriter extends ClassVisitor {
      */
     private final boolean computeFrames;
 
+    /**
+     * Answers {@link #getCommonSuperClass} without loading classes, if not
+     * <tt>null</tt>.
+     */
+    private final ClassHierarchy hierarchy;
+
     /**
      * <tt>true</tt> if the stack map tables of this class are invalid. The
      * {@link MethodWriter#resizeInstructions} method cannot transform existing
@@ -595,10 +601,48 @@ public class ClassWriter extends ClassVisitor {
      *            {@link #COMPUTE_FRAMES}.
      */
     public ClassWriter(final int flags) {
+        this(flags, (ClassHierarchy) null);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object whose
+     * {@link #getCommonSuperClass} reads supertypes from classfiles through
+     * the given {@link ClassHierarchy}, instead of loading classes.
+     *
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this class. See {@link #COMPUTE_MAXS},
+     *            {@link #COMPUTE_FRAMES}.
+     * @param hierarchy
+     *            the class hierarchy to use, possibly shared with other
+     *            ClassWriters, or <tt>null</tt> to use reflection.
+     */
+    public ClassWriter(final int flags, final ClassHierarchy hierarchy) {
+        this(flags, hierarchy, 0);
+    }
+
+    /**
+     * Constructs a new {@link ClassWriter} object whose constant pool is sized
+     * upfront for the given number of items, avoiding the rehashes and copies
+     * of a growing constant pool when generating large classes.
+     *
+     * @param flags
+     *            option flags that can be used to modify the default behavior
+     *            of this class. See {@link #COMPUTE_MAXS},
+     *            {@link #COMPUTE_FRAMES}.
+     * @param hierarchy
+     *            the class hierarchy to use, possibly shared with other
+     *            ClassWriters, or <tt>null</tt> to use reflection.
+     * @param expectedItems
+     *            the expected number of constant pool items, 0 if unknown.
+     */
+    public ClassWriter(final int flags, final ClassHierarchy hierarchy,
+            final int expectedItems) {
         super(Opcodes.ASM4);
         index = 1;
-        pool = new ByteVector();
-        items = new Item[256];
+        pool = expectedItems > 0 ? new ByteVector(8 * expectedItems)
+                : new ByteVector();
+        items = new Item[Math.max(256, (int) (expectedItems / 0.75d) + 1)];
         threshold = (int) (0.75d * items.length);
         key = new Item();
         key2 = new Item();
@@ -606,6 +650,7 @@ public class ClassWriter extends ClassVisitor {
         key4 = new Item();
         this.computeMaxs = (flags & COMPUTE_MAXS) != 0;
         this.computeFrames = (flags & COMPUTE_FRAMES) != 0;
+        this.hierarchy = hierarchy;
     }
 
     /**
@@ -908,7 +953,8 @@ public class ClassWriter extends ClassVisitor {
             attrs.put(this, null, 0, -1, -1, out);
         }
         if (invalidFrames) {
-            ClassWriter cw = new ClassWriter(COMPUTE_FRAMES);
+            // keeps the hierarchy, rather than falling back to loading classes
+            ClassWriter cw = new ClassWriter(COMPUTE_FRAMES, hierarchy);
             new ClassReader(out.data).accept(cw, ClassReader.SKIP_FRAMES);
             return cw.toByteArray();
         }
@@ -1582,7 +1628,8 @@ public class ClassWriter extends ClassVisitor {
      * overridden to compute this common super type in other ways, in particular
      * without actually loading any class, or to take into account the class
      * that is currently being generated by this ClassWriter, which can of
-     * course not be loaded since it is under construction.
+     * course not be loaded since it is under construction. If this writer was
+     * constructed with a {@link ClassHierarchy}, that one is asked instead.
      *
      * @param type1
      *            the internal name of a class.
@@ -1592,6 +1639,9 @@ public class ClassWriter extends ClassVisitor {
      *         classes.
      */
     protected String getCommonSuperClass(final String type1, final String type2) {
+        if (hierarchy != null) {
+            return hierarchy.getCommonSuperClass(type1, type2);
+        }
         Class<?> c, d;
         ClassLoader classLoader = getClass().getClassLoader();
         try {
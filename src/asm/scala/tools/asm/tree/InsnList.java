@@ -29,6 +29,7 @@
  */
 package scala.tools.asm.tree;
 
+import java.util.Arrays;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
@@ -37,6 +38,13 @@ import scala.tools.asm.MethodVisitor;
 /**
  * A doubly linked list of {@link AbstractInsnNode} objects. <i>This
  * implementation is not thread safe</i>.
+ *
+ * The list also keeps an array of its instructions, giving their index. This
+ * array is maintained while instructions are appended, which is how lists are
+ * built by {@link MethodNode} and {@link scala.tools.asm.ClassReader}, so that
+ * {@link #get}, {@link #indexOf} and {@link #accept} do not have to walk the
+ * links. Any other modification invalidates the array, which is rebuilt on
+ * demand.
  */
 public class InsnList {
 
@@ -57,7 +65,8 @@ public class InsnList {
 
     /**
      * A cache of the instructions of this list. This cache is used to improve
-     * the performance of the {@link #get} method.
+     * the performance of the {@link #get} method. Its length may exceed the
+     * size of this list, the extra elements being <tt>null</tt>.
      */
     AbstractInsnNode[] cache;
 
@@ -94,7 +103,9 @@ public class InsnList {
      * Returns the instruction whose index is given. This method builds a cache
      * of the instructions in this list to avoid scanning the whole list each
      * time it is called. Once the cache is built, this method run in constant
-     * time. This cache is invalidated by all the methods that modify the list.
+     * time. Appends keep the cache, which may then be longer than the list, so
+     * the index is checked against the size of the list and not the cache;
+     * all the other methods that modify the list invalidate it.
      *
      * @param index
      *            the index of the instruction that must be returned.
@@ -157,6 +168,13 @@ public class InsnList {
      *            the method visitor that must visit the instructions.
      */
     public void accept(final MethodVisitor mv) {
+        if (cache != null) {
+            AbstractInsnNode[] insns = cache;
+            for (int i = 0; i < size; ++i) {
+                insns[i].accept(mv);
+            }
+            return;
+        }
         AbstractInsnNode insn = first;
         while (insn != null) {
             insn.accept(mv);
@@ -252,6 +270,7 @@ public class InsnList {
             // Better fail early.
             throw new RuntimeException("Instruction " + insn + " already belongs to some InsnList.");
         }
+        boolean indexed = cache != null || size == 0;
         ++size;
         if (last == null) {
             first = insn;
@@ -261,8 +280,25 @@ public class InsnList {
             insn.prev = last;
         }
         last = insn;
-        cache = null;
-        insn.index = 0; // insn now belongs to an InsnList
+        if (indexed) {
+            ensureCacheCapacity(size);
+            cache[size - 1] = insn;
+            insn.index = size - 1;
+        } else {
+            insn.index = 0; // insn now belongs to an InsnList
+        }
+    }
+
+    /**
+     * Makes sure the cache can hold the given number of instructions, keeping
+     * the instructions it already holds.
+     */
+    private void ensureCacheCapacity(final int n) {
+        if (cache == null) {
+            cache = new AbstractInsnNode[Math.max(n, 16)];
+        } else if (n > cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(n, 2 * cache.length));
+        }
     }
 
     /**
@@ -276,6 +312,8 @@ public class InsnList {
         if (insns.size == 0) {
             return;
         }
+        boolean indexed = cache != null || size == 0;
+        int start = size;
         size += insns.size;
         if (last == null) {
             first = insns.first;
@@ -286,7 +324,16 @@ public class InsnList {
             elem.prev = last;
             last = insns.last;
         }
-        cache = null;
+        if (indexed) {
+            ensureCacheCapacity(size);
+            int i = start;
+            for (AbstractInsnNode elem = insns.first; elem != null; elem = elem.next) {
+                cache[i] = elem;
+                elem.index = i++;
+            }
+        } else {
+            cache = null;
+        }
         insns.removeAll(false);
     }
 
@@ -506,6 +553,16 @@ public class InsnList {
         cache = null;
     }
 
+    /**
+     * Releases the unused part of the array of instructions, once no more
+     * instructions are expected to be appended.
+     */
+    void trimToSize() {
+        if (cache != null && cache.length > size) {
+            cache = Arrays.copyOf(cache, size);
+        }
+    }
+
     /**
      * Removes all of the instructions of this list.
      */
@@ -519,6 +576,15 @@ public class InsnList {
      * <code>ClassWriter</code>s.
      */
     public void resetLabels() {
+        if (cache != null) {
+            AbstractInsnNode[] insns = cache;
+            for (int i = 0; i < size; ++i) {
+                if (insns[i] instanceof LabelNode) {
+                    ((LabelNode) insns[i]).resetLabel();
+                }
+            }
+            return;
+        }
         AbstractInsnNode insn = first;
         while (insn != null) {
             if (insn instanceof LabelNode) {
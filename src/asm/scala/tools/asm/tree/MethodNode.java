@@ -444,6 +444,8 @@ public class MethodNode extends MethodVisitor {
 
     @Override
     public void visitEnd() {
+        // the method is complete, drops the spare room of the instruction array
+        instructions.trimToSize();
     }
 
     /**
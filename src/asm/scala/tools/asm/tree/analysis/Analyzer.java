@@ -76,6 +76,53 @@ public class Analyzer<V extends Value> implements Opcodes {
 
     private int top;
 
+    /**
+     * Whether frame storage is recycled from one analysis to the next.
+     */
+    private final boolean recycle;
+
+    /**
+     * Frames of previous analyses, ready to be re-initialized (recycle mode).
+     */
+    private Frame<V>[] spare;
+
+    private int spareCount;
+
+    private int spareLocals = -1;
+
+    private int spareStack = -1;
+
+    /**
+     * Work frames of the control flow analysis (kept across analyses in
+     * recycle mode).
+     */
+    private Frame<V> current;
+
+    private Frame<V> handler;
+
+    /**
+     * The method the frames were last computed for, or <tt>null</tt> if
+     * {@link #reanalyze reanalyze} must start from scratch.
+     */
+    private MethodNode lastMethod;
+
+    private int lastMaxLocals;
+
+    private int lastMaxStack;
+
+    private List<TryCatchBlockNode> lastTryCatchBlocks;
+
+    /**
+     * The control flow edges of the method as last analyzed that lead back to
+     * an earlier instruction, as (source, target) pairs of indices. The frames
+     * of their targets hold values merged from their sources, so
+     * {@link #reanalyze reanalyze} can't keep them if the edit starts at or
+     * before a source, even if the edge is gone.
+     */
+    private int[] lastBackEdges = new int[16];
+
+    private int lastBackEdgeCount;
+
     /**
      * Constructs a new {@link Analyzer}.
      *
@@ -84,7 +131,27 @@ public class Analyzer<V extends Value> implements Opcodes {
      *            bytecode instructions.
      */
     public Analyzer(final Interpreter<V> interpreter) {
+        this(interpreter, false);
+    }
+
+    /**
+     * Constructs a new {@link Analyzer}, optionally recycling frame storage.
+     * In recycle mode the arrays and {@link Frame} objects of an analysis are
+     * reused by the next call to {@link #analyze analyze} or
+     * {@link #reanalyze reanalyze}, so the frames returned by a call are only
+     * valid until the next one. Frames are recycled with
+     * {@link Frame#init(Frame)}: subclasses whose frames carry additional
+     * state should not use this mode.
+     *
+     * @param interpreter
+     *            the interpreter to be used to symbolically interpret the
+     *            bytecode instructions.
+     * @param recycle
+     *            whether to recycle frame storage across analyses.
+     */
+    public Analyzer(final Interpreter<V> interpreter, final boolean recycle) {
         this.interpreter = interpreter;
+        this.recycle = recycle;
     }
 
     /**
@@ -104,17 +171,259 @@ public class Analyzer<V extends Value> implements Opcodes {
      */
     public Frame<V>[] analyze(final String owner, final MethodNode m)
             throws AnalyzerException {
+        lastMethod = null;
         if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+            release(0);
             frames = (Frame<V>[]) new Frame<?>[0];
             return frames;
         }
+        prepare(m, 0);
+
+        // initializes the data structures for the control flow analysis
+        current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
+        Type[] args = Type.getArgumentTypes(m.desc);
+        int local = 0;
+        if ((m.access & ACC_STATIC) == 0) {
+            Type ctype = Type.getObjectType(owner);
+            current.setLocal(local++, interpreter.newValue(ctype));
+        }
+        for (int i = 0; i < args.length; ++i) {
+            current.setLocal(local++, interpreter.newValue(args[i]));
+            if (args[i].getSize() == 2) {
+                current.setLocal(local++, interpreter.newValue(null));
+            }
+        }
+        while (local < m.maxLocals) {
+            current.setLocal(local++, interpreter.newValue(null));
+        }
+        current.clearStack();
+        merge(0, current, null);
+
+        init(owner, m);
+
+        flow(m);
+        remember(m);
+        return frames;
+    }
+
+    /**
+     * Analyzes the given method again after a local edit, reusing the frames
+     * computed by the previous call to {@link #analyze analyze} or
+     * {@link #reanalyze reanalyze} for that same method. The instructions (and
+     * exception handlers covering them) that precede <tt>firstChanged</tt>
+     * must not have been modified, nor the method's maxLocals and maxStack.
+     * Their frames are kept as is, provided no control flow edge leads back
+     * into them from the edited part, nor did before the edit: only the
+     * instructions flowing into the edited part and the instructions that
+     * follow are interpreted again. Otherwise, or if the method uses
+     * subroutines, the whole method is analyzed again. Since kept instructions are not visited,
+     * {@link #newControlFlowEdge newControlFlowEdge} is only called for the
+     * edges of re-interpreted instructions.
+     *
+     * @param owner
+     *            the internal name of the class to which the method belongs.
+     * @param m
+     *            the method to be analyzed.
+     * @param firstChanged
+     *            the first instruction of <tt>m</tt> that was inserted or
+     *            modified since the previous analysis.
+     * @return the symbolic state of the execution stack frame at each bytecode
+     *         instruction of the method, as for {@link #analyze analyze}.
+     * @throws AnalyzerException
+     *             if a problem occurs during the analysis.
+     */
+    public Frame<V>[] reanalyze(final String owner, final MethodNode m,
+            final AbstractInsnNode firstChanged) throws AnalyzerException {
+        if (m != lastMethod || m.maxLocals != lastMaxLocals
+                || m.maxStack != lastMaxStack) {
+            return analyze(owner, m);
+        }
+        int from = m.instructions.indexOf(firstChanged);
+        if (from <= 0 || from > frames.length || hadBackEdgeInto(from)
+                || !isPrefixUnaffected(m, from)) {
+            return analyze(owner, m);
+        }
+        lastMethod = null;
+        prepare(m, from);
+
+        // (re)interprets the kept instructions with a successor in the edited part
+        for (int i = 0; i < from; ++i) {
+            if (frames[i] != null && flowsInto(i, from)) {
+                queued[i] = true;
+                queue[top++] = i;
+            }
+        }
+
+        init(owner, m);
+
+        flow(m);
+        remember(m);
+        return frames;
+    }
+
+    /**
+     * Tests whether, in the method as last analyzed, a control flow edge led
+     * from an instruction at or after <tt>from</tt> to one before it.
+     */
+    private boolean hadBackEdgeInto(final int from) {
+        for (int i = 0; i < lastBackEdgeCount; i += 2) {
+            if (lastBackEdges[i] >= from && lastBackEdges[i + 1] < from) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether the frames of the instructions before <tt>from</tt> can be
+     * kept, ie whether no control flow edge leads from the edited part back
+     * to them, and no subroutine is used.
+     */
+    private boolean isPrefixUnaffected(final MethodNode m, final int from) {
+        InsnList is = m.instructions;
+        for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
+            TryCatchBlockNode tcb = m.tryCatchBlocks.get(i);
+            int begin = is.indexOf(tcb.start);
+            if (begin < from && !lastTryCatchBlocks.contains(tcb)) {
+                return false;
+            }
+            if (is.indexOf(tcb.handler) < from && is.indexOf(tcb.end) > from) {
+                return false;
+            }
+        }
+        if (!m.tryCatchBlocks.containsAll(lastTryCatchBlocks)) {
+            return false;
+        }
+        int i = 0;
+        for (AbstractInsnNode node = is.getFirst(); node != null; node = node
+                .getNext(), ++i) {
+            int opcode = node.getOpcode();
+            if (opcode == JSR || opcode == RET) {
+                return false;
+            }
+            if (i < from) {
+                continue;
+            }
+            if (node instanceof JumpInsnNode) {
+                if (is.indexOf(((JumpInsnNode) node).label) < from) {
+                    return false;
+                }
+            } else if (node instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) node;
+                if (is.indexOf(lsi.dflt) < from
+                        || anyBefore(is, lsi.labels, from)) {
+                    return false;
+                }
+            } else if (node instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tsi = (TableSwitchInsnNode) node;
+                if (is.indexOf(tsi.dflt) < from
+                        || anyBefore(is, tsi.labels, from)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean anyBefore(final InsnList is,
+            final List<LabelNode> labels, final int from) {
+        for (int i = 0; i < labels.size(); ++i) {
+            if (is.indexOf(labels.get(i)) < from) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether instruction <tt>insn</tt> (possibly) has a successor at
+     * or after <tt>from</tt>.
+     */
+    private boolean flowsInto(final int insn, final int from) {
+        if (insn == from - 1) {
+            return true;
+        }
+        AbstractInsnNode node = insns.get(insn);
+        if (node instanceof JumpInsnNode) {
+            if (insns.indexOf(((JumpInsnNode) node).label) >= from) {
+                return true;
+            }
+        } else if (node instanceof LookupSwitchInsnNode) {
+            LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) node;
+            if (insns.indexOf(lsi.dflt) >= from
+                    || !allBefore(lsi.labels, from)) {
+                return true;
+            }
+        } else if (node instanceof TableSwitchInsnNode) {
+            TableSwitchInsnNode tsi = (TableSwitchInsnNode) node;
+            if (insns.indexOf(tsi.dflt) >= from
+                    || !allBefore(tsi.labels, from)) {
+                return true;
+            }
+        }
+        List<TryCatchBlockNode> insnHandlers = handlers[insn];
+        if (insnHandlers != null) {
+            for (int i = 0; i < insnHandlers.size(); ++i) {
+                if (insns.indexOf(insnHandlers.get(i).handler) >= from) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean allBefore(final List<LabelNode> labels, final int from) {
+        for (int i = 0; i < labels.size(); ++i) {
+            if (insns.indexOf(labels.get(i)) >= from) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Initializes the data structures of an analysis of the given method,
+     * keeping the frames of its first <tt>keep</tt> instructions.
+     */
+    private void prepare(final MethodNode m, final int keep)
+            throws AnalyzerException {
         n = m.instructions.size();
         insns = m.instructions;
-        handlers = (List<TryCatchBlockNode>[]) new List<?>[n];
-        frames = (Frame<V>[]) new Frame<?>[n];
-        subroutines = new Subroutine[n];
-        queued = new boolean[n];
-        queue = new int[n];
+
+        Frame<V>[] old = frames;
+        release(keep);
+        if (recycle && old != null && old.length == n) {
+            frames = old;
+        } else {
+            frames = (Frame<V>[]) new Frame<?>[n];
+            if (keep > 0) {
+                System.arraycopy(old, 0, frames, 0, keep);
+            }
+        }
+        if (spareLocals != m.maxLocals || spareStack != m.maxStack) {
+            while (spareCount > 0) {
+                spare[--spareCount] = null;
+            }
+            spareLocals = m.maxLocals;
+            spareStack = m.maxStack;
+            current = null;
+            handler = null;
+        }
+        if (!recycle || current == null) {
+            current = newFrame(m.maxLocals, m.maxStack);
+            handler = newFrame(m.maxLocals, m.maxStack);
+        }
+
+        if (recycle && queue != null && queue.length >= n) {
+            java.util.Arrays.fill(handlers, null);
+            java.util.Arrays.fill(subroutines, null);
+            java.util.Arrays.fill(queued, false);
+        } else {
+            handlers = (List<TryCatchBlockNode>[]) new List<?>[n];
+            subroutines = new Subroutine[n];
+            queued = new boolean[n];
+            queue = new int[n];
+        }
         top = 0;
 
         // computes exception handlers for each instruction
@@ -153,29 +462,85 @@ public class Analyzer<V extends Value> implements Opcodes {
                 subroutines[i] = null;
             }
         }
+    }
 
-        // initializes the data structures for the control flow analysis
-        Frame<V> current = newFrame(m.maxLocals, m.maxStack);
-        Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
-        current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
-        Type[] args = Type.getArgumentTypes(m.desc);
-        int local = 0;
-        if ((m.access & ACC_STATIC) == 0) {
-            Type ctype = Type.getObjectType(owner);
-            current.setLocal(local++, interpreter.newValue(ctype));
+    /**
+     * Hands the frames of the previous analysis, from index <tt>keep</tt> on,
+     * over to the spare frames (recycle mode only).
+     */
+    private void release(final int keep) {
+        if (!recycle || frames == null) {
+            return;
         }
-        for (int i = 0; i < args.length; ++i) {
-            current.setLocal(local++, interpreter.newValue(args[i]));
-            if (args[i].getSize() == 2) {
-                current.setLocal(local++, interpreter.newValue(null));
+        for (int i = keep; i < frames.length; ++i) {
+            Frame<V> f = frames[i];
+            if (f != null) {
+                if (spare == null || spareCount == spare.length) {
+                    Frame<V>[] s = (Frame<V>[]) new Frame<?>[Math.max(16,
+                            2 * spareCount)];
+                    if (spare != null) {
+                        System.arraycopy(spare, 0, s, 0, spareCount);
+                    }
+                    spare = s;
+                }
+                spare[spareCount++] = f;
+                frames[i] = null;
             }
         }
-        while (local < m.maxLocals) {
-            current.setLocal(local++, interpreter.newValue(null));
+    }
+
+    private void remember(final MethodNode m) {
+        lastMethod = m;
+        lastMaxLocals = m.maxLocals;
+        lastMaxStack = m.maxStack;
+        lastTryCatchBlocks = new ArrayList<TryCatchBlockNode>(m.tryCatchBlocks);
+        lastBackEdgeCount = 0;
+        int i = 0;
+        for (AbstractInsnNode node = insns.getFirst(); node != null; node = node
+                .getNext(), ++i) {
+            if (node instanceof JumpInsnNode) {
+                rememberBackEdge(i, ((JumpInsnNode) node).label);
+            } else if (node instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) node;
+                rememberBackEdge(i, lsi.dflt);
+                for (int j = 0; j < lsi.labels.size(); ++j) {
+                    rememberBackEdge(i, lsi.labels.get(j));
+                }
+            } else if (node instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tsi = (TableSwitchInsnNode) node;
+                rememberBackEdge(i, tsi.dflt);
+                for (int j = 0; j < tsi.labels.size(); ++j) {
+                    rememberBackEdge(i, tsi.labels.get(j));
+                }
+            }
+            List<TryCatchBlockNode> insnHandlers = handlers[i];
+            if (insnHandlers != null) {
+                for (int j = 0; j < insnHandlers.size(); ++j) {
+                    rememberBackEdge(i, insnHandlers.get(j).handler);
+                }
+            }
         }
-        merge(0, current, null);
+    }
 
-        init(owner, m);
+    private void rememberBackEdge(final int source, final LabelNode label) {
+        int target = insns.indexOf(label);
+        if (target < source) {
+            if (lastBackEdgeCount == lastBackEdges.length) {
+                int[] a = new int[2 * lastBackEdges.length];
+                System.arraycopy(lastBackEdges, 0, a, 0, lastBackEdgeCount);
+                lastBackEdges = a;
+            }
+            lastBackEdges[lastBackEdgeCount++] = source;
+            lastBackEdges[lastBackEdgeCount++] = target;
+        }
+    }
+
+    /**
+     * Runs the control flow analysis until no queued instruction remains.
+     */
+    private void flow(final MethodNode m) throws AnalyzerException {
+        Frame<V> current = this.current;
+        Frame<V> handler = this.handler;
 
         // control flow analysis
         while (top > 0) {
@@ -298,7 +663,6 @@ public class Analyzer<V extends Value> implements Opcodes {
             }
         }
 
-        return frames;
     }
 
     private void findSubroutine(int insn, final Subroutine sub,
@@ -493,6 +857,15 @@ public class Analyzer<V extends Value> implements Opcodes {
 
     // -------------------------------------------------------------------------
 
+    private Frame<V> copyOf(final Frame<V> src) {
+        if (spareCount > 0) {
+            Frame<V> f = spare[--spareCount];
+            spare[spareCount] = null;
+            return f.init(src);
+        }
+        return newFrame(src);
+    }
+
     private void merge(final int insn, final Frame<V> frame,
             final Subroutine subroutine) throws AnalyzerException {
         Frame<V> oldFrame = frames[insn];
@@ -500,7 +873,7 @@ public class Analyzer<V extends Value> implements Opcodes {
         boolean changes;
 
         if (oldFrame == null) {
-            frames[insn] = newFrame(frame);
+            frames[insn] = copyOf(frame);
             changes = true;
         } else {
             changes = oldFrame.merge(frame, interpreter);
@@ -532,7 +905,7 @@ public class Analyzer<V extends Value> implements Opcodes {
         afterRET.merge(beforeJSR, access);
 
         if (oldFrame == null) {
-            frames[insn] = newFrame(afterRET);
+            frames[insn] = copyOf(afterRET);
             changes = true;
         } else {
             changes = oldFrame.merge(afterRET, interpreter);
@@ -0,0 +1,188 @@
+/* NSC -- new Scala compiler
+ * Copyright 2005-2014 LAMP/EPFL
+ */
+
+package scala.tools.asm.tree.analysis;
+
+import java.util.List;
+
+import scala.tools.asm.Opcodes;
+import scala.tools.asm.Type;
+import scala.tools.asm.tree.AbstractInsnNode;
+import scala.tools.asm.tree.FieldInsnNode;
+import scala.tools.asm.tree.InsnList;
+import scala.tools.asm.tree.InvokeDynamicInsnNode;
+import scala.tools.asm.tree.LdcInsnNode;
+import scala.tools.asm.tree.MethodInsnNode;
+
+/**
+ * An {@link Interpreter} for {@link BitSourceValue} values, computing the same
+ * information as {@link SourceInterpreter}. The value produced by an
+ * instruction is created once and shared by all the frames it flows into, and
+ * merges only allocate when the result is a strict superset of both operands.
+ *
+ * An instance is dedicated to the instructions of one method.
+ *
+ */
+public class BitSourceInterpreter extends Interpreter<BitSourceValue> implements
+        Opcodes {
+
+    private static final BitSourceValue EMPTY1 = new BitSourceValue(1);
+
+    private static final BitSourceValue EMPTY2 = new BitSourceValue(2);
+
+    private final InsnList insns;
+
+    /**
+     * The value produced by each instruction, for each size (indexed by
+     * 3 * insn + size, size 0 being the result of void method calls).
+     */
+    private final BitSourceValue[] produced;
+
+    /**
+     * Constructs a new {@link BitSourceInterpreter}.
+     *
+     * @param insns
+     *            the instructions of the method to be analyzed.
+     */
+    public BitSourceInterpreter(final InsnList insns) {
+        super(ASM4);
+        this.insns = insns;
+        this.produced = new BitSourceValue[3 * insns.size()];
+    }
+
+    private BitSourceValue produced(final AbstractInsnNode insn, final int size) {
+        int index = insns.indexOf(insn);
+        int slot = 3 * index + size;
+        BitSourceValue v = produced[slot];
+        if (v == null) {
+            v = new BitSourceValue(size, index);
+            produced[slot] = v;
+        }
+        return v;
+    }
+
+    @Override
+    public BitSourceValue newValue(final Type type) {
+        if (type == Type.VOID_TYPE) {
+            return null;
+        }
+        return type != null && type.getSize() == 2 ? EMPTY2 : EMPTY1;
+    }
+
+    @Override
+    public BitSourceValue newOperation(final AbstractInsnNode insn) {
+        int size;
+        switch (insn.getOpcode()) {
+        case LCONST_0:
+        case LCONST_1:
+        case DCONST_0:
+        case DCONST_1:
+            size = 2;
+            break;
+        case LDC:
+            Object cst = ((LdcInsnNode) insn).cst;
+            size = cst instanceof Long || cst instanceof Double ? 2 : 1;
+            break;
+        case GETSTATIC:
+            size = Type.getType(((FieldInsnNode) insn).desc).getSize();
+            break;
+        default:
+            size = 1;
+        }
+        return produced(insn, size);
+    }
+
+    @Override
+    public BitSourceValue copyOperation(final AbstractInsnNode insn,
+            final BitSourceValue value) {
+        return produced(insn, value.getSize());
+    }
+
+    @Override
+    public BitSourceValue unaryOperation(final AbstractInsnNode insn,
+            final BitSourceValue value) {
+        int size;
+        switch (insn.getOpcode()) {
+        case LNEG:
+        case DNEG:
+        case I2L:
+        case I2D:
+        case L2D:
+        case F2L:
+        case F2D:
+        case D2L:
+            size = 2;
+            break;
+        case GETFIELD:
+            size = Type.getType(((FieldInsnNode) insn).desc).getSize();
+            break;
+        default:
+            size = 1;
+        }
+        return produced(insn, size);
+    }
+
+    @Override
+    public BitSourceValue binaryOperation(final AbstractInsnNode insn,
+            final BitSourceValue value1, final BitSourceValue value2) {
+        int size;
+        switch (insn.getOpcode()) {
+        case LALOAD:
+        case DALOAD:
+        case LADD:
+        case DADD:
+        case LSUB:
+        case DSUB:
+        case LMUL:
+        case DMUL:
+        case LDIV:
+        case DDIV:
+        case LREM:
+        case DREM:
+        case LSHL:
+        case LSHR:
+        case LUSHR:
+        case LAND:
+        case LOR:
+        case LXOR:
+            size = 2;
+            break;
+        default:
+            size = 1;
+        }
+        return produced(insn, size);
+    }
+
+    @Override
+    public BitSourceValue ternaryOperation(final AbstractInsnNode insn,
+            final BitSourceValue value1, final BitSourceValue value2,
+            final BitSourceValue value3) {
+        return produced(insn, 1);
+    }
+
+    @Override
+    public BitSourceValue naryOperation(final AbstractInsnNode insn,
+            final List<? extends BitSourceValue> values) {
+        int size;
+        int opcode = insn.getOpcode();
+        if (opcode == MULTIANEWARRAY) {
+            size = 1;
+        } else {
+            String desc = (opcode == INVOKEDYNAMIC) ? ((InvokeDynamicInsnNode) insn).desc
+                    : ((MethodInsnNode) insn).desc;
+            size = Type.getReturnType(desc).getSize();
+        }
+        return produced(insn, size);
+    }
+
+    @Override
+    public void returnOperation(final AbstractInsnNode insn,
+            final BitSourceValue value, final BitSourceValue expected) {
+    }
+
+    @Override
+    public BitSourceValue merge(final BitSourceValue d, final BitSourceValue w) {
+        return d.union(w);
+    }
+}
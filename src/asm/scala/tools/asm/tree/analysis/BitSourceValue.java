@@ -0,0 +1,147 @@
+/* NSC -- new Scala compiler
+ * Copyright 2005-2014 LAMP/EPFL
+ */
+
+package scala.tools.asm.tree.analysis;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import scala.tools.asm.tree.AbstractInsnNode;
+import scala.tools.asm.tree.InsnList;
+
+/**
+ * A {@link Value} recording, like {@link SourceValue}, the instructions that
+ * can produce it, but as a bitset of instruction indices. Instances are
+ * immutable, which allows {@link BitSourceInterpreter} to share them between
+ * frames instead of allocating a value per instruction and per merge.
+ *
+ */
+public class BitSourceValue implements Value {
+
+    private static final long[] NO_BITS = new long[0];
+
+    /**
+     * The size of this value.
+     */
+    public final int size;
+
+    /**
+     * The indices of the instructions that can produce this value, never with
+     * trailing zero words.
+     */
+    private final long[] bits;
+
+    BitSourceValue(final int size, final long[] bits) {
+        this.size = size;
+        this.bits = bits;
+    }
+
+    /**
+     * Constructs a value with no producing instruction.
+     */
+    public BitSourceValue(final int size) {
+        this(size, NO_BITS);
+    }
+
+    /**
+     * Constructs a value produced by the instruction at the given index.
+     */
+    public BitSourceValue(final int size, final int insn) {
+        this(size, new long[(insn >> 6) + 1]);
+        bits[insn >> 6] = 1L << insn;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Tests whether the instruction at the given index can produce this value.
+     */
+    public boolean contains(final int insn) {
+        int w = insn >> 6;
+        return w < bits.length && (bits[w] & (1L << insn)) != 0;
+    }
+
+    /**
+     * Returns the number of instructions that can produce this value.
+     */
+    public int cardinality() {
+        int c = 0;
+        for (int i = 0; i < bits.length; ++i) {
+            c += Long.bitCount(bits[i]);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the instructions that can produce this value.
+     *
+     * @param insns
+     *            the instructions of the analyzed method.
+     */
+    public Set<AbstractInsnNode> getInsns(final InsnList insns) {
+        Set<AbstractInsnNode> s = new HashSet<AbstractInsnNode>();
+        for (int w = 0; w < bits.length; ++w) {
+            long word = bits[w];
+            while (word != 0) {
+                int b = Long.numberOfTrailingZeros(word);
+                s.add(insns.get((w << 6) + b));
+                word &= word - 1;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns the union of this value and the given one, which is this value
+     * or <tt>v</tt> whenever possible, ie without allocating.
+     */
+    BitSourceValue union(final BitSourceValue v) {
+        int size = Math.min(this.size, v.size);
+        if (size == this.size && includes(bits, v.bits)) {
+            return this;
+        }
+        if (size == v.size && includes(v.bits, bits)) {
+            return v;
+        }
+        long[] longer = bits.length >= v.bits.length ? bits : v.bits;
+        long[] shorter = longer == bits ? v.bits : bits;
+        long[] u = longer.clone();
+        for (int i = 0; i < shorter.length; ++i) {
+            u[i] |= shorter[i];
+        }
+        return new BitSourceValue(size, u);
+    }
+
+    private static boolean includes(final long[] a, final long[] b) {
+        if (b.length > a.length) {
+            return false;
+        }
+        for (int i = 0; i < b.length; ++i) {
+            if ((b[i] & ~a[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object value) {
+        if (value == this) {
+            return true;
+        }
+        if (!(value instanceof BitSourceValue)) {
+            return false;
+        }
+        BitSourceValue v = (BitSourceValue) value;
+        return size == v.size && Arrays.equals(bits, v.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bits);
+    }
+}
@@ -29,7 +29,9 @@
  */
 package scala.tools.asm.tree.analysis;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import scala.tools.asm.Type;
 
@@ -68,6 +70,12 @@ public class SimpleVerifier extends BasicVerifier {
      */
     private ClassLoader loader = getClass().getClassLoader();
 
+    /**
+     * The values of reference types created so far, by type descriptor, so
+     * that each one is only allocated once per verifier.
+     */
+    private final Map<String, BasicValue> referenceValues = new HashMap<String, BasicValue>();
+
     /**
      * Constructs a new {@link SimpleVerifier}.
      */
@@ -140,13 +148,20 @@ public class SimpleVerifier extends BasicVerifier {
         }
 
         boolean isArray = type.getSort() == Type.ARRAY;
+        if (!isArray && type.getSort() != Type.OBJECT) {
+            return super.newValue(type);
+        }
+        BasicValue cached = referenceValues.get(type.getDescriptor());
+        if (cached != null) {
+            return cached;
+        }
         if (isArray) {
             switch (type.getElementType().getSort()) {
             case Type.BOOLEAN:
             case Type.CHAR:
             case Type.BYTE:
             case Type.SHORT:
-                return new BasicValue(type);
+                return intern(type);
             }
         }
 
@@ -158,14 +173,24 @@ public class SimpleVerifier extends BasicVerifier {
                 for (int i = 0; i < type.getDimensions(); ++i) {
                     desc = '[' + desc;
                 }
-                v = new BasicValue(Type.getType(desc));
+                v = intern(Type.getType(desc));
             } else {
-                v = new BasicValue(type);
+                v = intern(type);
             }
         }
         return v;
     }
 
+    private BasicValue intern(final Type type) {
+        String desc = type.getDescriptor();
+        BasicValue v = referenceValues.get(desc);
+        if (v == null) {
+            v = new BasicValue(type);
+            referenceValues.put(desc, v);
+        }
+        return v;
+    }
+
     @Override
     protected boolean isArrayValue(final BasicValue value) {
         Type t = value.getType();
@@ -74,12 +74,17 @@ abstract class BCodeHelpers extends BCodeTypes with BytecodeWriters {
   /*  An `asm.ClassWriter` that uses `jvmWiseLUB()`
    *  The internal name of the least common ancestor of the types given by inameA and inameB.
    *  It's what ASM needs to know in order to compute stack map frames, http://asm.ow2.org/doc/developer-guide.html#controlflow
+   *
+   *  @param poolSizeHint expected number of constant pool entries, used to size the constant pool upfront (0 if unknown).
    */
-  final class CClassWriter(flags: Int) extends asm.ClassWriter(flags) {
+  final class CClassWriter(flags: Int, poolSizeHint: Int) extends asm.ClassWriter(flags, null, poolSizeHint) {
+
+    def this(flags: Int) = this(flags, 0)
 
     /*
      *  This method is thread re-entrant because chrs never grows during its operation (that's because all TypeNames being looked up have already been entered).
      *  To stress this point, rather than using `newTypeName()` we use `lookupTypeName()`
+     *  In GenBCode's parallel mode, this holds because Worker2 threads are only started once Worker1, which enters names, is done.
      *
      *  can-multi-thread
      */
@@ -216,7 +221,7 @@ abstract class BCodeHelpers extends BCodeTypes with BytecodeWriters {
         }
         else log(s"Main-Class was specified: ${settings.mainClass.value}")
 
-        new DirectToJarfileWriter(f.file)
+        factoryJarBytecodeWriter(f.file)
 
       case _ => factoryNonJarBytecodeWriter()
     }
@@ -14,6 +14,100 @@ import scala.language.postfixOps
 /** Can't output a file due to the state of the file system. */
 class FileConflictException(msg: String, val file: AbstractFile) extends IOException(msg)
 
+/* Writes classfiles on a background thread (see -Yasync-classfiles).
+ *
+ * The writer thread takes whatever has been queued since its previous round. Within a round, only
+ * the last contents queued for a file are written; a file queued again in a later round is written again.
+ * A classfile already on disk with the same contents is left untouched, so that its modification time
+ * tells downstream incremental tools it did not change.
+ * Errors are handed to `reportError` on the thread calling `close()`, the compiler thread. The progress
+ * message of a classfile is handed to `inform` once it is on disk, by the next `write` or by `close()`.
+ * If the writer thread dies, the Throwable that stopped it is rethrown by the next `write` or by `close()`.
+ */
+class ClassfileSink(reportError: String => Unit, inform: String => Unit) {
+  private case class Pending(file: AbstractFile, bytes: Array[Byte], progress: String)
+  private val poison   = Pending(null, null, null)
+  private val queue    = new java.util.concurrent.LinkedBlockingQueue[Pending]
+  private val failures = new java.util.concurrent.ConcurrentLinkedQueue[String]
+  private val written  = new java.util.concurrent.ConcurrentLinkedQueue[String]
+  @volatile private var unchanged = 0
+  @volatile private var died: Throwable = null
+
+  private val thread = new Thread("scalac-classfile-writer") {
+    override def run() {
+      val batch = new java.util.ArrayList[Pending]
+      val byPath = new java.util.LinkedHashMap[String, Pending]
+      var done = false
+      try {
+        while (!done) {
+          batch add queue.take()
+          queue drainTo batch
+          val it = batch.iterator
+          while (it.hasNext) {
+            val p = it.next()
+            if (p eq poison) done = true
+            else byPath.put(p.file.path, p)
+          }
+          val pending = byPath.values.iterator
+          while (pending.hasNext) {
+            val p = pending.next()
+            try {
+              writeIfChanged(p.file, p.bytes)
+              written add p.progress
+            }
+            catch { case e: Exception => failures add s"error writing ${p.file}: ${e.getMessage}" }
+          }
+          batch.clear()
+          byPath.clear()
+        }
+      } catch {
+        case t: Throwable => died = t
+      }
+    }
+  }
+  thread setDaemon true
+  thread.start()
+
+  private def writeIfChanged(file: AbstractFile, bytes: Array[Byte]) {
+    val jfile = file.file
+    val same = (
+         (jfile != null) && jfile.isFile && (jfile.length == bytes.length)
+      && java.util.Arrays.equals(file.toByteArray, bytes)
+    )
+    if (same) unchanged += 1
+    else {
+      val out = file.output
+      try out.write(bytes, 0, bytes.length)
+      finally out.close()
+    }
+  }
+
+  private def informWritten() {
+    while (!written.isEmpty) inform(written.poll)
+  }
+
+  private def rethrowIfDied() {
+    if (died != null) throw died
+  }
+
+  /* Queues `bytes` to be written to `file`, `progress` is handed to `inform` once they are. */
+  def write(file: AbstractFile, bytes: Array[Byte], progress: String) {
+    informWritten()
+    rethrowIfDied()
+    queue put Pending(file, bytes, progress)
+  }
+
+  /* Waits until everything queued has been written, then reports the errors. */
+  def close() {
+    queue put poison
+    thread.join()
+    informWritten()
+    while (!failures.isEmpty) reportError(failures.poll)
+    rethrowIfDied()
+    if (unchanged > 0) inform(s"left $unchanged unchanged classfiles untouched")
+  }
+}
+
 /** For the last mile: turning generated bytecode in memory into
  *  something you can use.  Has implementations for writing to class
  *  files, jars, and disassembled/javap output.
@@ -25,6 +119,10 @@ trait BytecodeWriters {
   def outputDirectory(sym: Symbol): AbstractFile =
     settings.outputDirs outputDirFor enteringFlatten(sym.sourceFile)
 
+  /* Output directories already checked (and created if needed) by `getFile`, by base directory and package path.
+   * Cleared when a ClassBytecodeWriter is closed. */
+  private val outputDirectories = new java.util.concurrent.ConcurrentHashMap[(AbstractFile, String), AbstractFile]
+
   /**
    * @param clsName cls.getName
    */
@@ -32,10 +130,16 @@ trait BytecodeWriters {
     def ensureDirectory(dir: AbstractFile): AbstractFile =
       if (dir.isDirectory) dir
       else throw new FileConflictException(s"${base.path}/$clsName$suffix: ${dir.path} is not a directory", dir)
-    var dir = base
     val pathParts = clsName.split("[./]").toList
-    for (part <- pathParts.init) dir = ensureDirectory(dir) subdirectoryNamed part
-    ensureDirectory(dir) fileNamed pathParts.last + suffix
+    val key = (base, pathParts.init mkString "/")
+    var dir = outputDirectories get key
+    if (dir == null) {
+      dir = base
+      for (part <- pathParts.init) dir = ensureDirectory(dir) subdirectoryNamed part
+      dir = ensureDirectory(dir)
+      outputDirectories.put(key, dir)
+    }
+    dir fileNamed pathParts.last + suffix
   }
   def getFile(sym: Symbol, clsName: String, suffix: String): AbstractFile =
     getFile(outputDirectory(sym), clsName, suffix)
@@ -51,6 +155,12 @@ trait BytecodeWriters {
     }
   }
 
+  def factoryJarBytecodeWriter(jfile: JFile): BytecodeWriter = settings.YjarCompression.value match {
+    case "parallel" => new ParallelJarfileWriter(jfile, settings.YjarCompressionThreads.value, compress = true)
+    case "store"    => new ParallelJarfileWriter(jfile, 1, compress = false)
+    case _          => new DirectToJarfileWriter(jfile)
+  }
+
   trait BytecodeWriter {
     def writeClass(label: String, jclassName: String, jclassBytes: Array[Byte], outfile: AbstractFile): Unit
     def close(): Unit = ()
@@ -77,6 +187,25 @@ trait BytecodeWriters {
     override def close() = writer.close()
   }
 
+  /* Compresses jar entries on `threads` threads (or stores them uncompressed), appending them in the order they were written. */
+  class ParallelJarfileWriter(jfile: JFile, threads: Int, compress: Boolean) extends BytecodeWriter {
+    val jarMainAttrs = (
+      if (settings.mainClass.isDefault) Nil
+      else List(Name.MAIN_CLASS -> settings.mainClass.value)
+    )
+    val writer = new ParallelJarWriter(io.File(jfile), Jar.WManifest(jarMainAttrs: _*).underlying, threads, compress)
+
+    def writeClass(label: String, jclassName: String, jclassBytes: Array[Byte], outfile: AbstractFile) {
+      assert(outfile == null,
+             "The outfile formal param is there just because ClassBytecodeWriter overrides this method and uses it.")
+      val path = jclassName + ".class"
+      writer.writeEntry(path, jclassBytes)
+
+      informProgress("added " + label + path + " to jar")
+    }
+    override def close() = writer.close()
+  }
+
   /*
    * The ASM textual representation for bytecode overcomes disadvantages of javap ouput in three areas:
    *    (a) pickle dingbats undecipherable to the naked eye;
@@ -115,14 +244,26 @@ trait BytecodeWriters {
   }
 
   trait ClassBytecodeWriter extends BytecodeWriter {
+    private val sink = if (settings.YasyncClassfiles.value) new ClassfileSink(msg => error(msg), msg => informProgress(msg)) else null
+
     def writeClass(label: String, jclassName: String, jclassBytes: Array[Byte], outfile: AbstractFile) {
       assert(outfile != null,
              "Precisely this override requires its invoker to hand out a non-null AbstractFile.")
-      val outstream = new DataOutputStream(outfile.bufferedOutput)
+      val progress = "wrote '" + label + "' to " + outfile
+      // the sink reports progress once the classfile is on disk
+      if (sink != null) sink.write(outfile, jclassBytes, progress)
+      else {
+        val outstream = new DataOutputStream(outfile.bufferedOutput)
 
-      try outstream.write(jclassBytes, 0, jclassBytes.length)
-      finally outstream.close()
-      informProgress("wrote '" + label + "' to " + outfile)
+        try outstream.write(jclassBytes, 0, jclassBytes.length)
+        finally outstream.close()
+        informProgress(progress)
+      }
+    }
+
+    override def close() {
+      if (sink != null) sink.close()
+      outputDirectories.clear()
     }
   }
 
@@ -90,7 +90,7 @@ abstract class GenASM extends SubComponent with BytecodeWriters with GenJVMASM {
           }
           else log("Main-Class was specified: " + settings.mainClass.value)
 
-          new DirectToJarfileWriter(f.file)
+          factoryJarBytecodeWriter(f.file)
 
         case _ => factoryNonJarBytecodeWriter()
       }
@@ -39,6 +39,12 @@ import scala.tools.asm
  *
  *  Plain, mirror, and bean classes are built respectively by PlainClassBuilder, JMirrorBuilder, and JBeanInfoBuilder.
  *
+ *  By default the three pipelines run one after another on the compiler thread.
+ *  With `-Ybackend-parallelism N` (N > 1) pipeline-1 still runs on the compiler thread (it needs the typer),
+ *  while N threads run pipeline-2 concurrently with it. Queue-3 is drained to disk on the compiler thread once pipeline-1
+ *  is over (output files are resolved and progress is reported there), while the N threads may still be filling it.
+ *  Errors found by those helper threads are reported on the compiler thread once the pipeline has finished.
+ *
  *  @author  Miguel Garcia, http://lamp.epfl.ch/~magarcia/ScalaCompilerCornerReloaded/
  *  @version 1.0
  *
@@ -81,7 +87,7 @@ abstract class GenBCode extends BCodeSyncAndTry {
     }
 
     private val poison2 = Item2(Int.MaxValue, null, null, null, null)
-    private val q2 = new _root_.java.util.LinkedList[Item2]
+    private val q2 = new java.util.concurrent.LinkedBlockingQueue[Item2]
 
     /* ---------------- q3 ---------------- */
 
@@ -113,12 +119,30 @@ abstract class GenBCode extends BCodeSyncAndTry {
       }
     }
     private val poison3 = Item3(Int.MaxValue, null, null, null, null)
-    private val q3 = new java.util.PriorityQueue[Item3](1000, i3comparator)
+    private val q3 = new java.util.concurrent.PriorityBlockingQueue[Item3](1000, i3comparator)
+
+    /* ---------------- errors found off the compiler thread ---------------- */
+
+    private val pendingErrors = new java.util.concurrent.ConcurrentLinkedQueue[String]
+
+    /*
+     *  Worker2 may run on helper threads, where the reporter can't be used.
+     *
+     *  can-multi-thread
+     */
+    private def backendError(msg: String) { pendingErrors add msg }
+
+    /*
+     *  must-single-thread
+     */
+    private def reportPendingErrors() {
+      while (!pendingErrors.isEmpty) { error(pendingErrors.poll) }
+    }
 
     /*
      *  Pipeline that takes ClassDefs from queue-1, lowers them into an intermediate form, placing them on queue-2
      */
-    class Worker1(needsOutFolder: Boolean) {
+    class Worker1(needsOutFolder: Boolean, numWorker2: Int) {
 
       val caseInsensitively = mutable.Map.empty[String, Symbol]
 
@@ -126,7 +150,7 @@ abstract class GenBCode extends BCodeSyncAndTry {
         while (true) {
           val item = q1.poll
           if (item.isPoison) {
-            q2 add poison2
+            for (i <- 0 until numWorker2) { q2 add poison2 }
             return
           }
           else {
@@ -135,6 +159,8 @@ abstract class GenBCode extends BCodeSyncAndTry {
               case ex: Throwable =>
                 ex.printStackTrace()
                 error(s"Error while emitting ${item.cunit.source}\n${ex.getMessage}")
+                // keep the arrival sequence free of gaps, the writer in parallel mode waits on each position.
+                q3 add Item3(item.arrivalPos, null, null, null, null)
             }
           }
         }
@@ -208,14 +234,19 @@ abstract class GenBCode extends BCodeSyncAndTry {
      *
      *    (a) no optimization involves:
      *          - converting the plain ClassNode to byte array and placing it on queue-3
+     *
+     *  Several Worker2 may be running at the same time, sharing `remaining`:
+     *  the last one to see its poison2 places poison3, after all of them have placed their items.
+     *
+     *  can-multi-thread
      */
-    class Worker2 {
+    class Worker2(remaining: java.util.concurrent.atomic.AtomicInteger) {
 
       def run() {
         while (true) {
-          val item = q2.poll
+          val item = q2.take
           if (item.isPoison) {
-            q3 add poison3
+            if (remaining.decrementAndGet() == 0) { q3 add poison3 }
             return
           }
           else {
@@ -223,7 +254,8 @@ abstract class GenBCode extends BCodeSyncAndTry {
             catch {
               case ex: Throwable =>
                 ex.printStackTrace()
-                error(s"Error while emitting ${item.plain.name}\n${ex.getMessage}")
+                backendError(s"Error while emitting ${item.plain.name}\n${ex.getMessage}")
+                q3 add Item3(item.arrivalPos, null, null, null, null)
             }
           }
         }
@@ -231,8 +263,16 @@ abstract class GenBCode extends BCodeSyncAndTry {
 
       private def addToQ3(item: Item2) {
 
+        /* A rough estimate of the number of constant pool entries of `cn`, large classes thus avoid growing their constant pool step by step. */
+        def poolSizeHint(cn: asm.tree.ClassNode): Int = {
+          var hint = 16 + 2 * cn.fields.size
+          val ms = cn.methods.iterator
+          while (ms.hasNext) { hint += 2 + ms.next().instructions.size / 2 }
+          hint
+        }
+
         def getByteArray(cn: asm.tree.ClassNode): Array[Byte] = {
-          val cw = new CClassWriter(extraProc)
+          val cw = new CClassWriter(extraProc, poolSizeHint(cn))
           cn.accept(cw)
           cw.toByteArray
         }
@@ -274,7 +314,10 @@ abstract class GenBCode extends BCodeSyncAndTry {
       beanInfoCodeGen = new JBeanInfoBuilder
 
       val needsOutfileForSymbol = bytecodeWriter.isInstanceOf[ClassBytecodeWriter]
-      buildAndSendToDisk(needsOutfileForSymbol)
+      val parallelism = settings.YbackendParallelism.value
+      if (parallelism > 1) buildAndSendToDiskInParallel(needsOutfileForSymbol, parallelism)
+      else buildAndSendToDisk(needsOutfileForSymbol)
+      reportPendingErrors()
 
       // closing output files.
       bytecodeWriter.close()
@@ -306,12 +349,57 @@ abstract class GenBCode extends BCodeSyncAndTry {
     private def buildAndSendToDisk(needsOutFolder: Boolean) {
 
       feedPipeline1()
-      (new Worker1(needsOutFolder)).run()
-      (new Worker2).run()
+      (new Worker1(needsOutFolder, 1)).run()
+      (new Worker2(new java.util.concurrent.atomic.AtomicInteger(1))).run()
       drainQ3()
 
     }
 
+    /*
+     *  Concurrently:
+     *    (a) on the compiler thread, place all ClassDefs in queue-1 and lower them one at a time into queue-2
+     *    (b) once (a) is over, on `numWorker2` helper threads, convert ClassNodes from queue-2 to byte-arrays,
+     *        placing them in queue-3
+     *    (c) meanwhile on the compiler thread, serialize to disk by draining queue-3 in arrival order.
+     *        It stays on the compiler thread because output files are resolved (must-single-thread)
+     *        and progress is reported while writing.
+     *
+     *  Worker2 may only start after Worker1 is done: `getCommonSuperClass` looks up names in the name table
+     *  without synchronization, which is only safe once no name is being entered (see `CClassWriter`).
+     *  Starting the helper threads also orders all of Worker1's writes before their reads.
+     *
+     *  The pipeline is over once the helper threads have been joined.
+     */
+    private def buildAndSendToDiskInParallel(needsOutFolder: Boolean, numWorker2: Int) {
+
+      def helper(name: String)(body: => Unit): Thread = {
+        val task = new Runnable {
+          def run() {
+            try   { body }
+            catch {
+              case ex: Throwable =>
+                ex.printStackTrace()
+                backendError(s"Error in $name\n${ex.getMessage}")
+            }
+          }
+        }
+        val t = new Thread(task, name)
+        t.setDaemon(true)
+        t.start()
+        t
+      }
+
+      feedPipeline1()
+      (new Worker1(needsOutFolder, numWorker2)).run() // places poison2 upon returning
+
+      val remaining = new java.util.concurrent.atomic.AtomicInteger(numWorker2)
+      val workers2  = for (i <- 0 until numWorker2) yield helper(s"scalac-backend-worker2-$i") { (new Worker2(remaining)).run() }
+
+      drainQ3() // returns once the last Worker2 has placed poison3
+      workers2 foreach (_.join())
+
+    }
+
     /* Feed pipeline-1: place all ClassDefs on q1, recording their arrival position. */
     private def feedPipeline1() {
       super.run()
@@ -332,28 +420,39 @@ abstract class GenBCode extends BCodeSyncAndTry {
           }
           catch {
             case e: FileConflictException =>
-              error(s"error writing $jclassName: ${e.getMessage}")
+              backendError(s"error writing $jclassName: ${e.getMessage}")
           }
         }
       }
 
+      def sendItemToDisk(item: Item3) {
+        val outFolder = item.outFolder
+        sendToDisk(item.mirror, outFolder)
+        sendToDisk(item.plain,  outFolder)
+        sendToDisk(item.bean,   outFolder)
+      }
+
       var moreComing = true
       // `expected` denotes the arrivalPos whose Item3 should be serialized next
       var expected = 0
+      // items that arrived ahead of `expected` (only happens when Worker2 instances run in parallel)
+      val early = new java.util.PriorityQueue[Item3](16, i3comparator)
 
       while (moreComing) {
-        val incoming = q3.poll
+        val incoming = q3.take
         moreComing   = !incoming.isPoison
         if (moreComing) {
-          val item = incoming
-          val outFolder = item.outFolder
-          sendToDisk(item.mirror, outFolder)
-          sendToDisk(item.plain,  outFolder)
-          sendToDisk(item.bean,   outFolder)
-          expected += 1
+          early add incoming
+          while (!early.isEmpty && early.peek.arrivalPos == expected) {
+            sendItemToDisk(early.poll)
+            expected += 1
+          }
         }
       }
 
+      // only non-empty if some position never made it to queue-3, emit the rest in order anyway.
+      while (!early.isEmpty) { sendItemToDisk(early.poll) }
+
       // we're done
       assert(q1.isEmpty, s"Some ClassDefs remained in the first queue: $q1")
       assert(q2.isEmpty, s"Some classfiles remained in the second queue: $q2")
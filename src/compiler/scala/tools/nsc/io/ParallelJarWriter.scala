@@ -0,0 +1,194 @@
+/* NSC -- new Scala compiler
+ * Copyright 2005-2014 LAMP/EPFL
+ */
+
+package scala.tools.nsc
+package io
+
+import java.io.{ ByteArrayOutputStream, DataOutputStream, IOException }
+import java.util.concurrent.{ Callable, ExecutorService, Executors, Future, ThreadFactory }
+import java.util.jar.{ JarFile, Manifest => JManifest }
+import java.util.zip.{ CRC32, Deflater }
+
+/** Writes a jar whose entries are compressed by a pool of threads.
+ *
+ *  `java.util.jar.JarOutputStream` deflates each entry on the thread writing it,
+ *  and can't be handed data compressed beforehand. This writer lays out the
+ *  zip format itself: entries are deflated (or, when `compress` is false, only
+ *  checksummed) on `threads` worker threads while the caller keeps adding more,
+ *  and are appended to the file in the order they were added, so that the same
+ *  input gives the same jar.
+ *
+ *  With `compress` false, entries are STORED, which is faster to write and to read
+ *  back, for intermediate build artifacts.
+ *
+ *  Entries are added from a single thread. The zip64 extensions are not supported:
+ *  a jar with more than 65535 entries or larger than 4GB is an error.
+ */
+class ParallelJarWriter(val file: File, val manifest: JManifest, threads: Int, compress: Boolean) {
+  import ParallelJarWriter._
+
+  private val out = new DataOutputStream(file.bufferedOutput())
+  private var written = 0L // bytes written to `out` so far
+  private val central = new ByteArrayOutputStream()
+  private val centralOut = new DataOutputStream(central)
+  private var count = 0
+  private val (dosTime, dosDate) = dosDateTime(System.currentTimeMillis)
+
+  private val executor: ExecutorService =
+    if (threads <= 1) null
+    else Executors.newFixedThreadPool(threads, new ThreadFactory {
+      def newThread(r: Runnable) = {
+        val t = new Thread(r, "scalac-jar-deflater")
+        t.setDaemon(true)
+        t
+      }
+    })
+  // entries being compressed, in the order they were added; bounded to keep memory in check
+  private val pending = new java.util.ArrayDeque[Future[Compressed]]
+  private val maxPending = 4 * threads
+
+  locally {
+    val bytes = new ByteArrayOutputStream()
+    manifest write bytes
+    append(prepare(JarFile.MANIFEST_NAME, bytes.toByteArray), JarMagic)
+  }
+
+  /** Adds an entry with the given path and contents. */
+  def writeEntry(path: String, bytes: Array[Byte]) {
+    if (executor == null) append(prepare(path, bytes), NoExtra)
+    else {
+      pending add (executor submit new Callable[Compressed] { def call() = prepare(path, bytes) })
+      while (pending.size > maxPending) appendNext()
+    }
+  }
+
+  private def appendNext() {
+    val compressed =
+      try pending.poll().get()
+      catch { case e: java.util.concurrent.ExecutionException => throw e.getCause }
+    append(compressed, NoExtra)
+  }
+
+  /* can-multi-thread */
+  private def prepare(path: String, bytes: Array[Byte]): Compressed = {
+    val crc = new CRC32
+    crc.update(bytes, 0, bytes.length)
+    if (!compress) Compressed(path, bytes, bytes.length, bytes.length, crc.getValue, Stored)
+    else {
+      val deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true)
+      try {
+        deflater.setInput(bytes)
+        deflater.finish()
+        val buf = new ByteArrayOutputStream(bytes.length / 2 + 64)
+        val chunk = new Array[Byte](8192)
+        while (!deflater.finished()) {
+          val n = deflater.deflate(chunk)
+          buf.write(chunk, 0, n)
+        }
+        val data = buf.toByteArray
+        Compressed(path, data, data.length, bytes.length, crc.getValue, Deflated)
+      } finally deflater.end()
+    }
+  }
+
+  private def append(c: Compressed, extra: Array[Byte]) {
+    if (count == 0xFFFF || written > 0xFFFFFFFFL)
+      throw new IOException(s"$file: too many entries or too large for a jar without zip64 extensions")
+    val name   = c.path getBytes "UTF-8"
+    val offset = written
+
+    out writeInt   LocalHeaderSig
+    out writeShort swap16(20)             // version needed to extract
+    out writeShort swap16(Utf8Flag)
+    out writeShort swap16(c.method)
+    out writeShort swap16(dosTime)
+    out writeShort swap16(dosDate)
+    out writeInt   swap32(c.crc)
+    out writeInt   swap32(c.size)
+    out writeInt   swap32(c.uncompressedSize)
+    out writeShort swap16(name.length)
+    out writeShort swap16(extra.length)
+    out write name
+    out write extra
+    out.write(c.data, 0, c.size)
+    written += 30 + name.length + extra.length + c.size
+
+    centralOut writeInt   CentralHeaderSig
+    centralOut writeShort swap16(20)      // version made by
+    centralOut writeShort swap16(20)      // version needed to extract
+    centralOut writeShort swap16(Utf8Flag)
+    centralOut writeShort swap16(c.method)
+    centralOut writeShort swap16(dosTime)
+    centralOut writeShort swap16(dosDate)
+    centralOut writeInt   swap32(c.crc)
+    centralOut writeInt   swap32(c.size)
+    centralOut writeInt   swap32(c.uncompressedSize)
+    centralOut writeShort swap16(name.length)
+    centralOut writeShort swap16(extra.length)
+    centralOut writeShort 0               // comment length
+    centralOut writeShort 0               // disk number start
+    centralOut writeShort 0               // internal attributes
+    centralOut writeInt   0               // external attributes
+    centralOut writeInt   swap32(offset)
+    centralOut write name
+    centralOut write extra
+    count += 1
+  }
+
+  /** Appends the entries still being compressed, writes the central directory and closes the file. */
+  def close() {
+    try {
+      while (!pending.isEmpty) appendNext()
+      if (written > 0xFFFFFFFFL)
+        throw new IOException(s"$file: too large for a jar without zip64 extensions")
+      centralOut.flush()
+      val centralSize = central.size
+      central writeTo out
+      out writeInt   EndSig
+      out writeShort 0                    // number of this disk
+      out writeShort 0                    // disk where the central directory starts
+      out writeShort swap16(count)
+      out writeShort swap16(count)
+      out writeInt   swap32(centralSize)
+      out writeInt   swap32(written)
+      out writeShort 0                    // comment length
+    } finally {
+      if (executor != null) executor.shutdownNow()
+      out.close()
+    }
+  }
+}
+
+object ParallelJarWriter {
+  private final case class Compressed(path: String, data: Array[Byte], size: Int, uncompressedSize: Int, crc: Long, method: Int)
+
+  private final val Stored   = 0
+  private final val Deflated = 8
+  private final val Utf8Flag = 0x0800
+
+  // signatures, already in the little-endian order of the zip format
+  private final val LocalHeaderSig   = 0x504b0304
+  private final val CentralHeaderSig = 0x504b0102
+  private final val EndSig           = 0x504b0506
+
+  // the extra field JarOutputStream puts on the first entry, marking the file as a jar
+  private val JarMagic = Array[Byte](0xFE.toByte, 0xCA.toByte, 0, 0)
+  private val NoExtra  = new Array[Byte](0)
+
+  // DataOutputStream is big-endian, zip is little-endian
+  private def swap16(v: Int): Int  = ((v & 0xFF) << 8) | ((v >>> 8) & 0xFF)
+  private def swap32(v: Long): Int = Integer.reverseBytes(v.toInt)
+
+  private def dosDateTime(millis: Long): (Int, Int) = {
+    val c = java.util.Calendar.getInstance()
+    c setTimeInMillis millis
+    val year = c.get(java.util.Calendar.YEAR)
+    if (year < 1980) (0, (1 << 5) | 1) // 1980-01-01
+    else {
+      val time = (c.get(java.util.Calendar.HOUR_OF_DAY) << 11) | (c.get(java.util.Calendar.MINUTE) << 5) | (c.get(java.util.Calendar.SECOND) >> 1)
+      val date = ((year - 1980) << 9) | ((c.get(java.util.Calendar.MONTH) + 1) << 5) | c.get(java.util.Calendar.DAY_OF_MONTH)
+      (time, date)
+    }
+  }
+}
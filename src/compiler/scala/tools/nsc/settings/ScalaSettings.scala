@@ -219,6 +219,13 @@ trait ScalaSettings extends AbsScalaSettings
   val Ybackend = ChoiceSetting ("-Ybackend", "choice of bytecode emitter", "Choice of bytecode emitter.",
                                 List("GenASM", "GenBCode"),
                                 "GenASM")
+  val YbackendParallelism = IntSetting("-Ybackend-parallelism", "Number of threads GenBCode uses to serialize and write classfiles (1 keeps the pipeline sequential).",
+                                       1, Some((1, 16)), (_: String) => None)
+  val YjarCompression = ChoiceSetting ("-Yjar-compression", "mode", "How classfiles are compressed when the output is a jar: inline, on -Yjar-compression-threads threads, or not at all.",
+                                       List("deflate", "parallel", "store"), "deflate")
+  val YjarCompressionThreads = IntSetting("-Yjar-compression-threads", "Number of threads compressing classfiles with -Yjar-compression:parallel.",
+                                       4, Some((1, 16)), (_: String) => None)
+  val YasyncClassfiles = BooleanSetting("-Yasync-classfiles", "Write classfiles on a background thread, leaving untouched those whose contents did not change.")
   // Feature extensions
   val XmacroSettings          = MultiStringSetting("-Xmacro-settings", "option", "Custom settings for macros.")
 
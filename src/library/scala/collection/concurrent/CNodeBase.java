@@ -16,7 +16,12 @@ abstract class CNodeBase<K, V> extends MainNode<K, V> {
     public static final AtomicIntegerFieldUpdater<CNodeBase> updater =
             AtomicIntegerFieldUpdater.newUpdater(CNodeBase.class, "csize");
 
-    public volatile int csize = -1;
+    public volatile int csize;
+
+    public CNodeBase() {
+	// cnodes are published by a later CAS, the initial size needs no fence of its own
+	updater.lazySet(this, -1);
+    }
 
     public boolean CAS_SIZE(int oldval, int nval) {
 	return updater.compareAndSet(this, oldval, nval);
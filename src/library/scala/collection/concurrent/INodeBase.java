@@ -18,7 +18,8 @@ abstract class INodeBase<K, V> extends BasicNode {
 
     public static final Object RESTART = new Object();
 
-    public volatile MainNode<K, V> mainnode = null;
+    // not initialized here, which would be a volatile write: subclasses set it before publishing the node
+    public volatile MainNode<K, V> mainnode;
 
     public final Gen gen;
 
@@ -0,0 +1,801 @@
+/*                     __                                               *\
+**     ________ ___   / /  ___     Scala API                            **
+**    / __/ __// _ | / /  / _ |    (c) 2003-2014, LAMP/EPFL             **
+**  __\ \/ /__/ __ |/ /__/ __ |    http://scala-lang.org/               **
+** /____/\___/_/ |_/____/_/ | |                                         **
+**                          |/                                          **
+\*                                                                      */
+
+package scala
+package collection
+package concurrent
+
+import java.util.concurrent.atomic._
+import scala.annotation.tailrec
+
+/* The nodes of a LongTrieMap mirror those of a TrieMap (see TrieMap.scala for the algorithm),
+ * with unboxed keys and no stored hash code, which is cheap to recompute from a `Long`.
+ */
+
+private[concurrent] final class LongINode[V](bn: MainNode[Long, V], g: Gen) extends INodeBase[Long, V](g) {
+  import INodeBase._
+
+  WRITE(bn)
+
+  def this(g: Gen) = this(null, g)
+
+  def WRITE(nval: MainNode[Long, V]) = INodeBase.updater.lazySet(this, nval)
+
+  def CAS(old: MainNode[Long, V], n: MainNode[Long, V]) = INodeBase.updater.compareAndSet(this, old, n)
+
+  def gcasRead(ct: LongTrieMap[V]): MainNode[Long, V] = GCAS_READ(ct)
+
+  def GCAS_READ(ct: LongTrieMap[V]): MainNode[Long, V] = {
+    val m = /*READ*/mainnode
+    val prevval = /*READ*/m.prev
+    if (prevval eq null) m
+    else GCAS_Complete(m, ct)
+  }
+
+  @tailrec private def GCAS_Complete(m: MainNode[Long, V], ct: LongTrieMap[V]): MainNode[Long, V] = if (m eq null) null else {
+    val prev = /*READ*/m.prev
+    val ctr = ct.readRoot(abort = true)
+
+    prev match {
+      case null =>
+        m
+      case fn: FailedNode[_, _] => // try to commit to previous value
+        if (CAS(m, fn.prev)) fn.prev
+        else GCAS_Complete(/*READ*/mainnode, ct)
+      case vn: MainNode[_, _] =>
+        if ((ctr.gen eq gen) && ct.nonReadOnly) {
+          // try to commit
+          if (m.CAS_PREV(prev, null)) m
+          else GCAS_Complete(m, ct)
+        } else {
+          // try to abort
+          m.CAS_PREV(prev, new FailedNode(prev))
+          GCAS_Complete(/*READ*/mainnode, ct)
+        }
+    }
+  }
+
+  def GCAS(old: MainNode[Long, V], n: MainNode[Long, V], ct: LongTrieMap[V]): Boolean = {
+    n.WRITE_PREV(old)
+    if (CAS(old, n)) {
+      GCAS_Complete(n, ct)
+      /*READ*/n.prev eq null
+    } else false
+  }
+
+  private def inode(cn: MainNode[Long, V]) = {
+    val nin = new LongINode[V](gen)
+    nin.WRITE(cn)
+    nin
+  }
+
+  def copyToGen(ngen: Gen, ct: LongTrieMap[V]) = {
+    val nin = new LongINode[V](ngen)
+    val main = GCAS_READ(ct)
+    nin.WRITE(main)
+    nin
+  }
+
+  /** Inserts a key value pair, overwriting the old pair if the keys match.
+   *
+   *  @return        true if successful, false otherwise
+   */
+  @tailrec def rec_insert(k: Long, v: V, hc: Int, lev: Int, parent: LongINode[V], startgen: Gen, ct: LongTrieMap[V]): Boolean = {
+    val m = GCAS_READ(ct)
+
+    m match {
+      case cn: LongCNode[V] =>
+        val idx = (hc >>> lev) & 0x1f
+        val flag = 1 << idx
+        val bmp = cn.bitmap
+        val pos = Integer.bitCount(bmp & (flag - 1))
+        if ((bmp & flag) != 0) {
+          cn.array(pos) match {
+            case in: LongINode[V] =>
+              if (startgen eq in.gen) in.rec_insert(k, v, hc, lev + 5, this, startgen, ct)
+              else {
+                if (GCAS(cn, cn.renewed(startgen, ct), ct)) rec_insert(k, v, hc, lev, parent, startgen, ct)
+                else false
+              }
+            case sn: LongSNode[V] =>
+              if (sn.k == k) GCAS(cn, cn.updatedAt(pos, new LongSNode(k, v), gen), ct)
+              else {
+                val rn = if (cn.gen eq gen) cn else cn.renewed(gen, ct)
+                val nn = rn.updatedAt(pos, inode(LongCNode.dual(sn, LongTrieMap.hash(sn.k), new LongSNode(k, v), hc, lev + 5, gen)), gen)
+                GCAS(cn, nn, ct)
+              }
+          }
+        } else {
+          val rn = if (cn.gen eq gen) cn else cn.renewed(gen, ct)
+          val ncnode = rn.insertedAt(pos, flag, new LongSNode(k, v), gen)
+          GCAS(cn, ncnode, ct)
+        }
+      case tn: LongTNode[V] =>
+        clean(parent, ct, lev - 5)
+        false
+      case ln: LongLNode[V] =>
+        GCAS(ln, ln.inserted(k, v), ct)
+    }
+  }
+
+  /** Inserts a new key value pair, given that a specific condition is met.
+   *
+   *  @param cond        null - don't care if the key was there; KEY_ABSENT - key wasn't there; KEY_PRESENT - key was there; other value `v` - key must be bound to `v`
+   *  @return            null if unsuccessful, Option[V] otherwise (indicating previous value bound to the key)
+   */
+  @tailrec def rec_insertif(k: Long, v: V, hc: Int, cond: AnyRef, lev: Int, parent: LongINode[V], startgen: Gen, ct: LongTrieMap[V]): Option[V] = {
+    val m = GCAS_READ(ct)
+
+    m match {
+      case cn: LongCNode[V] =>
+        val idx = (hc >>> lev) & 0x1f
+        val flag = 1 << idx
+        val bmp = cn.bitmap
+        val pos = Integer.bitCount(bmp & (flag - 1))
+        if ((bmp & flag) != 0) {
+          cn.array(pos) match {
+            case in: LongINode[V] =>
+              if (startgen eq in.gen) in.rec_insertif(k, v, hc, cond, lev + 5, this, startgen, ct)
+              else {
+                if (GCAS(cn, cn.renewed(startgen, ct), ct)) rec_insertif(k, v, hc, cond, lev, parent, startgen, ct)
+                else null
+              }
+            case sn: LongSNode[V] =>
+              def replaced = if (GCAS(cn, cn.updatedAt(pos, new LongSNode(k, v), gen), ct)) Some(sn.v) else null
+              def added = {
+                val rn = if (cn.gen eq gen) cn else cn.renewed(gen, ct)
+                val nn = rn.updatedAt(pos, inode(LongCNode.dual(sn, LongTrieMap.hash(sn.k), new LongSNode(k, v), hc, lev + 5, gen)), gen)
+                if (GCAS(cn, nn, ct)) None else null
+              }
+              cond match {
+                case null                  => if (sn.k == k) replaced else added
+                case INode.KEY_ABSENT      => if (sn.k == k) Some(sn.v) else added
+                case INode.KEY_PRESENT     => if (sn.k == k) replaced else None
+                case otherv                => if (sn.k == k && sn.v == otherv) replaced else None
+              }
+          }
+        } else cond match {
+          case null | INode.KEY_ABSENT =>
+            val rn = if (cn.gen eq gen) cn else cn.renewed(gen, ct)
+            val ncnode = rn.insertedAt(pos, flag, new LongSNode(k, v), gen)
+            if (GCAS(cn, ncnode, ct)) None else null
+          case _ => None
+        }
+      case tn: LongTNode[V] =>
+        clean(parent, ct, lev - 5)
+        null
+      case ln: LongLNode[V] =>
+        def insertln() = GCAS(ln, ln.inserted(k, v), ct)
+        val optv = ln.get(k)
+        cond match {
+          case null                  => if (insertln()) optv else null
+          case INode.KEY_ABSENT      => if (optv.isDefined) optv else if (insertln()) None else null
+          case INode.KEY_PRESENT     => if (optv.isEmpty) None else if (insertln()) optv else null
+          case otherv                => if (optv.isEmpty || optv.get != otherv) None else if (insertln()) optv else null
+        }
+    }
+  }
+
+  /** Looks up the value associated with the key.
+   *
+   *  @return          null if no value has been found, RESTART if the operation wasn't successful, or any other value otherwise
+   */
+  @tailrec def rec_lookup(k: Long, hc: Int, lev: Int, parent: LongINode[V], startgen: Gen, ct: LongTrieMap[V]): AnyRef = {
+    val m = GCAS_READ(ct)
+
+    m match {
+      case cn: LongCNode[V] =>
+        val idx = (hc >>> lev) & 0x1f
+        val flag = 1 << idx
+        val bmp = cn.bitmap
+        if ((bmp & flag) == 0) null
+        else {
+          val pos = if (bmp == 0xffffffff) idx else Integer.bitCount(bmp & (flag - 1))
+          cn.array(pos) match {
+            case in: LongINode[V] =>
+              if (ct.isReadOnly || (startgen eq in.gen)) in.rec_lookup(k, hc, lev + 5, this, startgen, ct)
+              else {
+                if (GCAS(cn, cn.renewed(startgen, ct), ct)) rec_lookup(k, hc, lev, parent, startgen, ct)
+                else RESTART
+              }
+            case sn: LongSNode[V] =>
+              if (sn.k == k) sn.v.asInstanceOf[AnyRef]
+              else null
+          }
+        }
+      case tn: LongTNode[V] =>
+        if (ct.nonReadOnly) {
+          clean(parent, ct, lev - 5)
+          RESTART
+        } else {
+          if (tn.k == k) tn.v.asInstanceOf[AnyRef]
+          else null
+        }
+      case ln: LongLNode[V] =>
+        ln.lookup(k)
+    }
+  }
+
+  /** Removes the key associated with the given value.
+   *
+   *  @param v         if null, will remove the key irregardless of the value; otherwise removes only if binding contains that exact key and value
+   *  @return          null if not successful, an Option[V] indicating the previous value otherwise
+   */
+  def rec_remove(k: Long, v: V, hc: Int, lev: Int, parent: LongINode[V], startgen: Gen, ct: LongTrieMap[V]): Option[V] = {
+    val m = GCAS_READ(ct)
+
+    m match {
+      case cn: LongCNode[V] =>
+        val idx = (hc >>> lev) & 0x1f
+        val bmp = cn.bitmap
+        val flag = 1 << idx
+        if ((bmp & flag) == 0) None
+        else {
+          val pos = Integer.bitCount(bmp & (flag - 1))
+          val res = cn.array(pos) match {
+            case in: LongINode[V] =>
+              if (startgen eq in.gen) in.rec_remove(k, v, hc, lev + 5, this, startgen, ct)
+              else {
+                if (GCAS(cn, cn.renewed(startgen, ct), ct)) rec_remove(k, v, hc, lev, parent, startgen, ct)
+                else null
+              }
+            case sn: LongSNode[V] =>
+              if (sn.k == k && (v == null || sn.v == v)) {
+                val ncn = cn.removedAt(pos, flag, gen).toContracted(lev)
+                if (GCAS(cn, ncn, ct)) Some(sn.v) else null
+              } else None
+          }
+
+          if (res == None || (res eq null)) res
+          else {
+            @tailrec def cleanParent(nonlive: AnyRef) {
+              parent.GCAS_READ(ct) match {
+                case cn: LongCNode[V] =>
+                  val idx = (hc >>> (lev - 5)) & 0x1f
+                  val bmp = cn.bitmap
+                  val flag = 1 << idx
+                  if ((bmp & flag) == 0) {} // somebody already removed this i-node, we're done
+                  else {
+                    val pos = Integer.bitCount(bmp & (flag - 1))
+                    if (cn.array(pos) eq this) nonlive match {
+                      case tn: LongTNode[V] =>
+                        val ncn = cn.updatedAt(pos, tn.copyUntombed, gen).toContracted(lev - 5)
+                        if (!parent.GCAS(cn, ncn, ct))
+                          if (ct.readRoot().gen == startgen) cleanParent(nonlive)
+                    }
+                  }
+                case _ => // parent is no longer a cnode, we're done
+              }
+            }
+
+            if (parent ne null) { // never tomb at root
+              val n = GCAS_READ(ct)
+              if (n.isInstanceOf[LongTNode[_]])
+                cleanParent(n)
+            }
+
+            res
+          }
+        }
+      case tn: LongTNode[V] =>
+        clean(parent, ct, lev - 5)
+        null
+      case ln: LongLNode[V] =>
+        ln.get(k) match {
+          case optv @ Some(v0) if (v == null) || (v0 == v) =>
+            if (GCAS(ln, ln.removed(k), ct)) optv else null
+          case _ => None
+        }
+    }
+  }
+
+  private def clean(nd: LongINode[V], ct: LongTrieMap[V], lev: Int) {
+    nd.GCAS_READ(ct) match {
+      case cn: LongCNode[V] => nd.GCAS(cn, cn.toCompressed(ct, lev, gen), ct)
+      case _ =>
+    }
+  }
+
+  def cachedSize(ct: LongTrieMap[V]): Int = GCAS_READ(ct).cachedSize(ct)
+
+  /* this is a quiescent method! */
+  def string(lev: Int) = "%sINode -> %s".format("  " * lev, mainnode match {
+    case null => "<null>"
+    case x => x.string(lev)
+  })
+}
+
+
+private[concurrent] trait LongKVNode[V] {
+  def k: Long
+  def v: V
+}
+
+
+private[concurrent] final class LongSNode[V](final val k: Long, final val v: V) extends BasicNode with LongKVNode[V] {
+  final def copyTombed = new LongTNode(k, v)
+  final def string(lev: Int) = ("  " * lev) + "SNode(%d, %s)".format(k, v)
+}
+
+
+private[concurrent] final class LongTNode[V](final val k: Long, final val v: V) extends MainNode[Long, V] with LongKVNode[V] {
+  final def copyUntombed = new LongSNode(k, v)
+  final def cachedSize(ct: AnyRef): Int = 1
+  final def string(lev: Int) = ("  " * lev) + "TNode(%d, %s, !)".format(k, v)
+}
+
+
+/* Keys with the same hash code, in parallel arrays. */
+private[concurrent] final class LongLNode[V](final val keys: Array[Long], final val vals: Array[AnyRef]) extends MainNode[Long, V] {
+  private def indexOf(k: Long): Int = {
+    var i = 0
+    while (i < keys.length && keys(i) != k) i += 1
+    if (i < keys.length) i else -1
+  }
+
+  def lookup(k: Long): AnyRef = {
+    val i = indexOf(k)
+    if (i >= 0) vals(i) else null
+  }
+
+  def get(k: Long): Option[V] = {
+    val i = indexOf(k)
+    if (i >= 0) Some(vals(i).asInstanceOf[V]) else None
+  }
+
+  def inserted(k: Long, v: V): LongLNode[V] = {
+    val i = indexOf(k)
+    if (i >= 0) {
+      val nvals = vals.clone
+      nvals(i) = v.asInstanceOf[AnyRef]
+      new LongLNode(keys, nvals)
+    } else {
+      val nkeys = java.util.Arrays.copyOf(keys, keys.length + 1)
+      val nvals = java.util.Arrays.copyOf(vals, vals.length + 1)
+      nkeys(keys.length) = k
+      nvals(vals.length) = v.asInstanceOf[AnyRef]
+      new LongLNode(nkeys, nvals)
+    }
+  }
+
+  def removed(k: Long): MainNode[Long, V] = {
+    val i = indexOf(k)
+    val n = keys.length
+    if (n > 2) {
+      val nkeys = new Array[Long](n - 1)
+      val nvals = new Array[AnyRef](n - 1)
+      System.arraycopy(keys, 0, nkeys, 0, i)
+      System.arraycopy(keys, i + 1, nkeys, i, n - i - 1)
+      System.arraycopy(vals, 0, nvals, 0, i)
+      System.arraycopy(vals, i + 1, nvals, i, n - i - 1)
+      new LongLNode(nkeys, nvals)
+    } else {
+      // create it tombed so that it gets compressed on subsequent accesses
+      new LongTNode(keys(1 - i), vals(1 - i).asInstanceOf[V])
+    }
+  }
+
+  def cachedSize(ct: AnyRef): Int = keys.length
+  def string(lev: Int) = (" " * lev) + "LNode(%s)".format((keys zip vals).mkString(", "))
+}
+
+
+private[concurrent] final class LongCNode[V](val bitmap: Int, val array: Array[BasicNode], val gen: Gen) extends CNodeBase[Long, V] {
+  // this should only be called from within read-only snapshots
+  def cachedSize(ct: AnyRef) = {
+    val currsz = READ_SIZE()
+    if (currsz != -1) currsz
+    else {
+      val sz = computeSize(ct.asInstanceOf[LongTrieMap[V]])
+      while (READ_SIZE() == -1) CAS_SIZE(-1, sz)
+      READ_SIZE()
+    }
+  }
+
+  private def computeSize(ct: LongTrieMap[V]): Int = {
+    var i = 0
+    var sz = 0
+    val offset =
+      if (array.length > 0) scala.concurrent.forkjoin.ThreadLocalRandom.current.nextInt(0, array.length)
+      else 0
+    while (i < array.length) {
+      array((i + offset) % array.length) match {
+        case sn: LongSNode[_] => sz += 1
+        case in: LongINode[V] => sz += in.cachedSize(ct)
+      }
+      i += 1
+    }
+    sz
+  }
+
+  def updatedAt(pos: Int, nn: BasicNode, gen: Gen) = {
+    val narr = array.clone
+    narr(pos) = nn
+    new LongCNode[V](bitmap, narr, gen)
+  }
+
+  def removedAt(pos: Int, flag: Int, gen: Gen) = {
+    val arr = array
+    val len = arr.length
+    val narr = new Array[BasicNode](len - 1)
+    Array.copy(arr, 0, narr, 0, pos)
+    Array.copy(arr, pos + 1, narr, pos, len - pos - 1)
+    new LongCNode[V](bitmap ^ flag, narr, gen)
+  }
+
+  def insertedAt(pos: Int, flag: Int, nn: BasicNode, gen: Gen) = {
+    val len = array.length
+    val narr = new Array[BasicNode](len + 1)
+    Array.copy(array, 0, narr, 0, pos)
+    narr(pos) = nn
+    Array.copy(array, pos, narr, pos + 1, len - pos)
+    new LongCNode[V](bitmap | flag, narr, gen)
+  }
+
+  /** Returns a copy of this cnode such that all the i-nodes below it are copied
+   *  to the specified generation `ngen`.
+   */
+  def renewed(ngen: Gen, ct: LongTrieMap[V]) = {
+    var i = 0
+    val arr = array
+    val len = arr.length
+    val narr = new Array[BasicNode](len)
+    while (i < len) {
+      arr(i) match {
+        case in: LongINode[V] => narr(i) = in.copyToGen(ngen, ct)
+        case bn: BasicNode => narr(i) = bn
+      }
+      i += 1
+    }
+    new LongCNode[V](bitmap, narr, ngen)
+  }
+
+  def toContracted(lev: Int): MainNode[Long, V] = if (array.length == 1 && lev > 0) array(0) match {
+    case sn: LongSNode[V] => sn.copyTombed
+    case _ => this
+  } else this
+
+  def toCompressed(ct: LongTrieMap[V], lev: Int, gen: Gen) = {
+    var i = 0
+    val arr = array
+    val tmparray = new Array[BasicNode](arr.length)
+    while (i < arr.length) {
+      tmparray(i) = arr(i) match {
+        case in: LongINode[V] =>
+          in.gcasRead(ct) match {
+            case tn: LongTNode[V] => tn.copyUntombed
+            case _ => in
+          }
+        case sn: LongSNode[V] => sn
+      }
+      i += 1
+    }
+
+    new LongCNode[V](bitmap, tmparray, gen).toContracted(lev)
+  }
+
+  def string(lev: Int): String = "CNode %x\n%s".format(bitmap, array.map(_.string(lev + 1)).mkString("\n"))
+}
+
+
+private[concurrent] object LongCNode {
+
+  def dual[V](x: LongSNode[V], xhc: Int, y: LongSNode[V], yhc: Int, lev: Int, gen: Gen): MainNode[Long, V] = if (lev < 35) {
+    val xidx = (xhc >>> lev) & 0x1f
+    val yidx = (yhc >>> lev) & 0x1f
+    val bmp = (1 << xidx) | (1 << yidx)
+    if (xidx == yidx) {
+      val subinode = new LongINode[V](gen)
+      subinode.mainnode = dual(x, xhc, y, yhc, lev + 5, gen)
+      new LongCNode(bmp, Array[BasicNode](subinode), gen)
+    } else {
+      if (xidx < yidx) new LongCNode(bmp, Array[BasicNode](x, y), gen)
+      else new LongCNode(bmp, Array[BasicNode](y, x), gen)
+    }
+  } else {
+    new LongLNode[V](Array(x.k, y.k), Array(x.v.asInstanceOf[AnyRef], y.v.asInstanceOf[AnyRef]))
+  }
+
+}
+
+
+private[concurrent] final class LongRDCSSDescriptor[V](val old: LongINode[V], val expectedmain: MainNode[Long, V], val nv: LongINode[V]) {
+  @volatile var committed = false
+}
+
+
+/** A concurrent hash-trie with `Long` keys: a `TrieMap[Long, V]` that stores its keys unboxed.
+ *
+ *  It is lock-free, and has the same O(1) atomic snapshots, linearizable operations and
+ *  memory layout as `TrieMap`, except for its leaves: these hold a primitive `Long` key and
+ *  no cached hash code, which takes about half the memory of a `TrieMap` entry and its boxed key.
+ *  Keys are hashed by `LongTrieMap.hash`, without going through `##`.
+ *
+ *  Calls made on a `LongTrieMap` (as opposed to a `Map[Long, V]`) do not box their keys;
+ *  `lookup` does not allocate at all.
+ *
+ *  @since 2.11
+ */
+@SerialVersionUID(1L)
+final class LongTrieMap[V] private (r: AnyRef, rtupd: AtomicReferenceFieldUpdater[LongTrieMap[V], AnyRef])
+extends scala.collection.concurrent.Map[Long, V]
+   with scala.collection.mutable.MapLike[Long, V, LongTrieMap[V]]
+   with Serializable
+{
+  import LongTrieMap.hash
+
+  private var rootupdater = rtupd
+  @volatile var root = r
+
+  def this() = this(
+    LongTrieMap.newRootNode,
+    AtomicReferenceFieldUpdater.newUpdater(classOf[LongTrieMap[V]], classOf[AnyRef], "root")
+  )
+
+  /* internal methods */
+
+  private def writeObject(out: java.io.ObjectOutputStream) {
+    val it = iterator
+    while (it.hasNext) {
+      val (k, v) = it.next()
+      out.writeBoolean(true)
+      out.writeLong(k)
+      out.writeObject(v)
+    }
+    out.writeBoolean(false)
+  }
+
+  private def readObject(in: java.io.ObjectInputStream) {
+    root = LongTrieMap.newRootNode
+    rootupdater = AtomicReferenceFieldUpdater.newUpdater(classOf[LongTrieMap[V]], classOf[AnyRef], "root")
+
+    while (in.readBoolean()) {
+      val k = in.readLong()
+      update(k, in.readObject().asInstanceOf[V])
+    }
+  }
+
+  def CAS_ROOT(ov: AnyRef, nv: AnyRef) = rootupdater.compareAndSet(this, ov, nv)
+
+  def readRoot(abort: Boolean = false): LongINode[V] = RDCSS_READ_ROOT(abort)
+
+  def RDCSS_READ_ROOT(abort: Boolean = false): LongINode[V] = {
+    val r = /*READ*/root
+    r match {
+      case in: LongINode[V] => in
+      case desc: LongRDCSSDescriptor[V] => RDCSS_Complete(abort)
+    }
+  }
+
+  @tailrec private def RDCSS_Complete(abort: Boolean): LongINode[V] = {
+    val v = /*READ*/root
+    v match {
+      case in: LongINode[V] => in
+      case desc: LongRDCSSDescriptor[V] =>
+        val ov = desc.old
+        if (abort) {
+          if (CAS_ROOT(desc, ov)) ov
+          else RDCSS_Complete(abort)
+        } else {
+          val oldmain = ov.gcasRead(this)
+          if (oldmain eq desc.expectedmain) {
+            if (CAS_ROOT(desc, desc.nv)) {
+              desc.committed = true
+              desc.nv
+            } else RDCSS_Complete(abort)
+          } else {
+            if (CAS_ROOT(desc, ov)) ov
+            else RDCSS_Complete(abort)
+          }
+        }
+    }
+  }
+
+  private def RDCSS_ROOT(ov: LongINode[V], expectedmain: MainNode[Long, V], nv: LongINode[V]): Boolean = {
+    val desc = new LongRDCSSDescriptor(ov, expectedmain, nv)
+    if (CAS_ROOT(ov, desc)) {
+      RDCSS_Complete(abort = false)
+      /*READ*/desc.committed
+    } else false
+  }
+
+  @tailrec private def inserthc(k: Long, hc: Int, v: V) {
+    val r = RDCSS_READ_ROOT()
+    if (!r.rec_insert(k, v, hc, 0, null, r.gen, this)) inserthc(k, hc, v)
+  }
+
+  @tailrec private def insertifhc(k: Long, hc: Int, v: V, cond: AnyRef): Option[V] = {
+    val r = RDCSS_READ_ROOT()
+    val ret = r.rec_insertif(k, v, hc, cond, 0, null, r.gen, this)
+    if (ret eq null) insertifhc(k, hc, v, cond)
+    else ret
+  }
+
+  @tailrec private def lookuphc(k: Long, hc: Int): AnyRef = {
+    val r = RDCSS_READ_ROOT()
+    val res = r.rec_lookup(k, hc, 0, null, r.gen, this)
+    if (res eq INodeBase.RESTART) lookuphc(k, hc)
+    else res
+  }
+
+  @tailrec private def removehc(k: Long, v: V, hc: Int): Option[V] = {
+    val r = RDCSS_READ_ROOT()
+    val res = r.rec_remove(k, v, hc, 0, null, r.gen, this)
+    if (res ne null) res
+    else removehc(k, v, hc)
+  }
+
+  def string = RDCSS_READ_ROOT().string(0)
+
+  /* public methods */
+
+  override def seq = this
+
+  override def empty: LongTrieMap[V] = new LongTrieMap[V]
+
+  def isReadOnly = rootupdater eq null
+
+  def nonReadOnly = rootupdater ne null
+
+  /** Returns a snapshot of this LongTrieMap, see `TrieMap.snapshot`.
+   *  This operation is lock-free and linearizable.
+   */
+  @tailrec def snapshot(): LongTrieMap[V] = {
+    val r = RDCSS_READ_ROOT()
+    val expmain = r.gcasRead(this)
+    if (RDCSS_ROOT(r, expmain, r.copyToGen(new Gen, this))) new LongTrieMap(r.copyToGen(new Gen, this), rootupdater)
+    else snapshot()
+  }
+
+  /** Returns a read-only snapshot of this LongTrieMap, see `TrieMap.readOnlySnapshot`.
+   *  This operation is lock-free and linearizable.
+   */
+  @tailrec def readOnlySnapshot(): scala.collection.Map[Long, V] = {
+    val r = RDCSS_READ_ROOT()
+    val expmain = r.gcasRead(this)
+    if (RDCSS_ROOT(r, expmain, r.copyToGen(new Gen, this))) new LongTrieMap(r, null)
+    else readOnlySnapshot()
+  }
+
+  @tailrec override def clear() {
+    val r = RDCSS_READ_ROOT()
+    if (!RDCSS_ROOT(r, r.gcasRead(this), LongTrieMap.newRootNode[V])) clear()
+  }
+
+  /** Returns the value bound to `k`, or `null` if there is none. */
+  def lookup(k: Long): V = lookuphc(k, hash(k)).asInstanceOf[V]
+
+  override def apply(k: Long): V = {
+    val res = lookuphc(k, hash(k))
+    if (res eq null) throw new NoSuchElementException
+    else res.asInstanceOf[V]
+  }
+
+  def get(k: Long): Option[V] = Option(lookuphc(k, hash(k))).asInstanceOf[Option[V]]
+
+  override def contains(k: Long): Boolean = lookuphc(k, hash(k)) ne null
+
+  override def put(key: Long, value: V): Option[V] = insertifhc(key, hash(key), value, null)
+
+  override def update(k: Long, v: V): Unit = inserthc(k, hash(k), v)
+
+  def +=(kv: (Long, V)) = {
+    update(kv._1, kv._2)
+    this
+  }
+
+  override def remove(k: Long): Option[V] = removehc(k, null.asInstanceOf[V], hash(k))
+
+  def -=(k: Long) = {
+    remove(k)
+    this
+  }
+
+  def putIfAbsent(k: Long, v: V): Option[V] = insertifhc(k, hash(k), v, INode.KEY_ABSENT)
+
+  def remove(k: Long, v: V): Boolean = removehc(k, v, hash(k)).nonEmpty
+
+  def replace(k: Long, oldvalue: V, newvalue: V): Boolean = insertifhc(k, hash(k), newvalue, oldvalue.asInstanceOf[AnyRef]).nonEmpty
+
+  def replace(k: Long, v: V): Option[V] = insertifhc(k, hash(k), v, INode.KEY_PRESENT)
+
+  def iterator: Iterator[(Long, V)] =
+    if (nonReadOnly) readOnlySnapshot().iterator
+    else new LongTrieMapIterator(this)
+
+  override def size: Int =
+    if (nonReadOnly) readOnlySnapshot().size
+    else RDCSS_READ_ROOT().cachedSize(this)
+
+  override def stringPrefix = "LongTrieMap"
+
+}
+
+
+object LongTrieMap {
+
+  def empty[V]: LongTrieMap[V] = new LongTrieMap[V]
+
+  def apply[V](elems: (Long, V)*): LongTrieMap[V] = empty[V] ++= elems
+
+  /** The hash code of a key. The trie is indexed by the low bits first, which
+   *  `byteswap32` derives from all the bits of the key.
+   */
+  def hash(k: Long): Int = scala.util.hashing.byteswap32((k ^ (k >>> 32)).toInt)
+
+  private[concurrent] def newRootNode[V] = {
+    val gen = new Gen
+    val cn = new LongCNode[V](0, new Array(0), gen)
+    new LongINode[V](cn, gen)
+  }
+
+}
+
+
+private[concurrent] final class LongTrieMapIterator[V](ct: LongTrieMap[V]) extends Iterator[(Long, V)] {
+  private val stack = new Array[Array[BasicNode]](7)
+  private val stackpos = new Array[Int](7)
+  private var depth = -1
+  private var current: LongKVNode[V] = null
+  private var lnode: LongLNode[V] = null
+  private var lnodepos = 0
+
+  assert(ct.isReadOnly)
+  readin(ct.RDCSS_READ_ROOT())
+
+  def hasNext = (current ne null) || (lnode ne null)
+
+  def next() = if (hasNext) {
+    if (lnode ne null) {
+      val r = (lnode.keys(lnodepos), lnode.vals(lnodepos).asInstanceOf[V])
+      lnodepos += 1
+      if (lnodepos == lnode.keys.length) {
+        lnode = null
+        advance()
+      }
+      r
+    } else {
+      val r = (current.k, current.v)
+      advance()
+      r
+    }
+  } else Iterator.empty.next()
+
+  private def readin(in: LongINode[V]) = in.gcasRead(ct) match {
+    case cn: LongCNode[V] =>
+      depth += 1
+      stack(depth) = cn.array
+      stackpos(depth) = -1
+      advance()
+    case tn: LongTNode[V] =>
+      current = tn
+    case ln: LongLNode[V] =>
+      current = null
+      lnode = ln
+      lnodepos = 0
+    case null =>
+      current = null
+  }
+
+  private def advance(): Unit = if (depth >= 0) {
+    val npos = stackpos(depth) + 1
+    if (npos < stack(depth).length) {
+      stackpos(depth) = npos
+      stack(depth)(npos) match {
+        case sn: LongSNode[V] =>
+          current = sn
+        case in: LongINode[V] =>
+          readin(in)
+      }
+    } else {
+      depth -= 1
+      advance()
+    }
+  } else current = null
+
+}
@@ -16,7 +16,7 @@ abstract class MainNode<K, V> extends BasicNode {
     public static final AtomicReferenceFieldUpdater<MainNode, MainNode> updater =
             AtomicReferenceFieldUpdater.newUpdater(MainNode.class, MainNode.class, "prev");
 
-    public volatile MainNode<K, V> prev = null;
+    public volatile MainNode<K, V> prev;
 
     public abstract int cachedSize(Object ct);
 
@@ -24,8 +24,9 @@ abstract class MainNode<K, V> extends BasicNode {
 	return updater.compareAndSet(this, oldval, nval);
     }
 
+    /** Only used on nodes not yet published, which a later CAS makes visible with this write. */
     public void WRITE_PREV(MainNode<K, V> nval) {
-	updater.set(this, nval);
+	updater.lazySet(this, nval);
     }
 
     // do we need this? unclear in the javadocs...
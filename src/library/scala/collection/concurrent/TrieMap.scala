@@ -26,7 +26,8 @@ private[collection] final class INode[K, V](bn: MainNode[K, V], g: Gen) extends
 
   def this(g: Gen) = this(null, g)
 
-  def WRITE(nval: MainNode[K, V]) = INodeBase.updater.set(this, nval)
+  // only used on i-nodes not yet published, see WRITE_PREV
+  def WRITE(nval: MainNode[K, V]) = INodeBase.updater.lazySet(this, nval)
 
   def CAS(old: MainNode[K, V], n: MainNode[K, V]) = INodeBase.updater.compareAndSet(this, old, n)
 
@@ -305,34 +306,7 @@ private[collection] final class INode[K, V](bn: MainNode[K, V], g: Gen) extends
 
           if (res == None || (res eq null)) res
           else {
-            @tailrec def cleanParent(nonlive: AnyRef) {
-              val pm = parent.GCAS_READ(ct)
-              pm match {
-                case cn: CNode[K, V] =>
-                  val idx = (hc >>> (lev - 5)) & 0x1f
-                  val bmp = cn.bitmap
-                  val flag = 1 << idx
-                  if ((bmp & flag) == 0) {} // somebody already removed this i-node, we're done
-                  else {
-                    val pos = Integer.bitCount(bmp & (flag - 1))
-                    val sub = cn.array(pos)
-                    if (sub eq this) nonlive match {
-                      case tn: TNode[K, V] =>
-                        val ncn = cn.updatedAt(pos, tn.copyUntombed, gen).toContracted(lev - 5)
-                        if (!parent.GCAS(cn, ncn, ct))
-                          if (ct.readRoot().gen == startgen) cleanParent(nonlive)
-                    }
-                  }
-                case _ => // parent is no longer a cnode, we're done
-              }
-            }
-
-            if (parent ne null) { // never tomb at root
-              val n = GCAS_READ(ct)
-              if (n.isInstanceOf[TNode[_, _]])
-                cleanParent(n)
-            }
-
+            contractParent(parent, hc, lev, startgen, ct)
             res
           }
         }
@@ -353,6 +327,127 @@ private[collection] final class INode[K, V](bn: MainNode[K, V], g: Gen) extends
     }
   }
 
+  /** Replaces the binding of the key with the result of `f` on the current binding, `None` standing for no binding.
+   *  When the node it modifies changes concurrently, it retries from this i-node rather than from the root,
+   *  as long as no snapshot was taken since the operation started.
+   *
+   *  @return          null if the operation must be restarted from the root, the result of `f` otherwise
+   */
+  @tailrec def rec_update(k: K, hc: Int, f: Option[V] => Option[V], lev: Int, parent: INode[K, V], startgen: Gen, ct: TrieMap[K, V]): Option[V] = {
+    val m = GCAS_READ(ct) // use -Yinline!
+
+    // a failed GCAS leaves this i-node in the trie unless the root changed generation
+    def canRetry = ct.readRoot().gen eq startgen
+
+    m match {
+      case cn: CNode[K, V] =>
+        val idx = (hc >>> lev) & 0x1f
+        val flag = 1 << idx
+        val bmp = cn.bitmap
+        val pos = Integer.bitCount(bmp & (flag - 1))
+        if ((bmp & flag) != 0) {
+          cn.array(pos) match {
+            case in: INode[K, V] =>
+              if (startgen eq in.gen) in.rec_update(k, hc, f, lev + 5, this, startgen, ct)
+              else {
+                if (GCAS(cn, cn.renewed(startgen, ct), ct)) rec_update(k, hc, f, lev, parent, startgen, ct)
+                else null
+              }
+            case sn: SNode[K, V] =>
+              if (sn.hc == hc && equal(sn.k, k, ct)) {
+                val res = f(Some(sn.v))
+                val ncn =
+                  if (res.isEmpty) cn.removedAt(pos, flag, gen).toContracted(lev)
+                  else cn.updatedAt(pos, new SNode(k, res.get, hc), gen)
+                if (GCAS(cn, ncn, ct)) {
+                  if (res.isEmpty) {
+                    ct.elementsChanged(-1)
+                    contractParent(parent, hc, lev, startgen, ct)
+                  }
+                  res
+                }
+                else if (canRetry) rec_update(k, hc, f, lev, parent, startgen, ct)
+                else null
+              } else {
+                val res = f(None)
+                if (res.isEmpty) res
+                else {
+                  val rn = if (cn.gen eq gen) cn else cn.renewed(gen, ct)
+                  val nn = rn.updatedAt(pos, inode(CNode.dual(sn, sn.hc, new SNode(k, res.get, hc), hc, lev + 5, gen)), gen)
+                  if (GCAS(cn, nn, ct)) {
+                    ct.elementsChanged(1)
+                    res
+                  }
+                  else if (canRetry) rec_update(k, hc, f, lev, parent, startgen, ct)
+                  else null
+                }
+              }
+          }
+        } else {
+          val res = f(None)
+          if (res.isEmpty) res
+          else {
+            val rn = if (cn.gen eq gen) cn else cn.renewed(gen, ct)
+            val ncnode = rn.insertedAt(pos, flag, new SNode(k, res.get, hc), gen)
+            if (GCAS(cn, ncnode, ct)) {
+              ct.elementsChanged(1)
+              res
+            }
+            else if (canRetry) rec_update(k, hc, f, lev, parent, startgen, ct)
+            else null
+          }
+        }
+      case tn: TNode[K, V] =>
+        clean(parent, ct, lev - 5)
+        null
+      case ln: LNode[K, V] =>
+        val old = ln.get(k)
+        val res = f(old)
+        if (old.isEmpty && res.isEmpty) res
+        else {
+          val nn = if (res.isEmpty) ln.removed(k, ct) else ln.inserted(k, res.get)
+          if (GCAS(ln, nn, ct)) {
+            if (old.isEmpty) ct.elementsChanged(1)
+            else if (res.isEmpty) ct.elementsChanged(-1)
+            res
+          }
+          else if (canRetry) rec_update(k, hc, f, lev, parent, startgen, ct)
+          else null
+        }
+    }
+  }
+
+  /** After a removal below `parent`, replaces this i-node in `parent` if it was entombed. */
+  private def contractParent(parent: INode[K, V], hc: Int, lev: Int, startgen: Gen, ct: TrieMap[K, V]) {
+    @tailrec def cleanParent(nonlive: AnyRef) {
+      val pm = parent.GCAS_READ(ct)
+      pm match {
+        case cn: CNode[K, V] =>
+          val idx = (hc >>> (lev - 5)) & 0x1f
+          val bmp = cn.bitmap
+          val flag = 1 << idx
+          if ((bmp & flag) == 0) {} // somebody already removed this i-node, we're done
+          else {
+            val pos = Integer.bitCount(bmp & (flag - 1))
+            val sub = cn.array(pos)
+            if (sub eq this) nonlive match {
+              case tn: TNode[K, V] =>
+                val ncn = cn.updatedAt(pos, tn.copyUntombed, gen).toContracted(lev - 5)
+                if (!parent.GCAS(cn, ncn, ct))
+                  if (ct.readRoot().gen == startgen) cleanParent(nonlive)
+            }
+          }
+        case _ => // parent is no longer a cnode, we're done
+      }
+    }
+
+    if (parent ne null) { // never tomb at root
+      val n = GCAS_READ(ct)
+      if (n.isInstanceOf[TNode[_, _]])
+        cleanParent(n)
+    }
+  }
+
   private def clean(nd: INode[K, V], ct: TrieMap[K, V], lev: Int) {
     val m = nd.GCAS_READ(ct)
     m match {
@@ -624,13 +719,16 @@ private[concurrent] case class RDCSS_Descriptor[K, V](old: INode[K, V], expected
  *  iterator and clear operations. The cost of evaluating the (lazy) snapshot is
  *  distributed across subsequent updates, thus making snapshot evaluation horizontally scalable.
  *
+ *  A TrieMap created by `TrieMap.withSizeTracking` also counts its elements as they are added and
+ *  removed, so that `size` is O(1) instead of a traversal of a snapshot; see `TrieMap.withSizeTracking`.
+ *
  *  For details, see: http://lampwww.epfl.ch/~prokopec/ctries-snapshot.pdf
  *
  *  @author Aleksandar Prokopec
  *  @since 2.10
  */
 @SerialVersionUID(0L - 6402774413839597105L)
-final class TrieMap[K, V] private (r: AnyRef, rtupd: AtomicReferenceFieldUpdater[TrieMap[K, V], AnyRef], hashf: Hashing[K], ef: Equiv[K])
+final class TrieMap[K, V] private (r: AnyRef, rtupd: AtomicReferenceFieldUpdater[TrieMap[K, V], AnyRef], hashf: Hashing[K], ef: Equiv[K], counter: TrieMap.SizeCounter)
 extends scala.collection.concurrent.Map[K, V]
    with scala.collection.mutable.MapLike[K, V, TrieMap[K, V]]
    with CustomParallelizable[(K, V), ParTrieMap[K, V]]
@@ -642,14 +740,20 @@ extends scala.collection.concurrent.Map[K, V]
   def hashing = hashingobj
   def equality = equalityobj
   @volatile var root = r
+  // counts the elements if this TrieMap tracks its size, null otherwise (also after deserialization).
+  // Final, so that a TrieMap published without synchronization is never seen without its counter.
+  private[this] val sizeCounter = counter
 
-  def this(hashf: Hashing[K], ef: Equiv[K]) = this(
+  private def this(hashf: Hashing[K], ef: Equiv[K], counter: TrieMap.SizeCounter) = this(
     INode.newRootNode,
     AtomicReferenceFieldUpdater.newUpdater(classOf[TrieMap[K, V]], classOf[AnyRef], "root"),
     hashf,
-    ef
+    ef,
+    counter
   )
 
+  def this(hashf: Hashing[K], ef: Equiv[K]) = this(hashf, ef, null)
+
   def this() = this(Hashing.default, Equiv.universal)
 
   /* internal methods */
@@ -739,7 +843,11 @@ extends scala.collection.concurrent.Map[K, V]
 
     val ret = r.rec_insertif(k, v, hc, cond, 0, null, r.gen, this)
     if (ret eq null) insertifhc(k, hc, v, cond)
-    else ret
+    else {
+      // with no condition or KEY_ABSENT, None means the key was added
+      if ((sizeCounter ne null) && (ret eq None) && ((cond eq null) || (cond eq INode.KEY_ABSENT))) sizeCounter.add(1)
+      ret
+    }
   }
 
   @tailrec private def lookuphc(k: K, hc: Int): AnyRef = {
@@ -762,10 +870,23 @@ extends scala.collection.concurrent.Map[K, V]
   }
   */
 
+  @tailrec private def updatehc(k: K, hc: Int, f: Option[V] => Option[V]): Option[V] = {
+    val r = RDCSS_READ_ROOT()
+    val res = r.rec_update(k, hc, f, 0, null, r.gen, this)
+    if (res ne null) res
+    else updatehc(k, hc, f)
+  }
+
+  private[concurrent] def elementsChanged(delta: Int): Unit =
+    if (sizeCounter ne null) sizeCounter.add(delta)
+
   @tailrec private def removehc(k: K, v: V, hc: Int): Option[V] = {
     val r = RDCSS_READ_ROOT()
     val res = r.rec_remove(k, v, hc, 0, null, r.gen, this)
-    if (res ne null) res
+    if (res ne null) {
+      if ((sizeCounter ne null) && res.isDefined) sizeCounter.add(-1)
+      res
+    }
     else removehc(k, v, hc)
   }
 
@@ -795,7 +916,11 @@ extends scala.collection.concurrent.Map[K, V]
   @tailrec def snapshot(): TrieMap[K, V] = {
     val r = RDCSS_READ_ROOT()
     val expmain = r.gcasRead(this)
-    if (RDCSS_ROOT(r, expmain, r.copyToGen(new Gen, this))) new TrieMap(r.copyToGen(new Gen, this), rootupdater, hashing, equality)
+    if (RDCSS_ROOT(r, expmain, r.copyToGen(new Gen, this))) {
+      // `r` no longer changes: the snapshot starts with its elements, counted when its size is first needed
+      val snapCounter = if (sizeCounter eq null) null else TrieMap.SizeCounter.startingWith(r, hashing, equality)
+      new TrieMap(r.copyToGen(new Gen, this), rootupdater, hashing, equality, snapCounter)
+    }
     else snapshot()
   }
 
@@ -814,13 +939,17 @@ extends scala.collection.concurrent.Map[K, V]
   @tailrec def readOnlySnapshot(): scala.collection.Map[K, V] = {
     val r = RDCSS_READ_ROOT()
     val expmain = r.gcasRead(this)
-    if (RDCSS_ROOT(r, expmain, r.copyToGen(new Gen, this))) new TrieMap(r, null, hashing, equality)
+    if (RDCSS_ROOT(r, expmain, r.copyToGen(new Gen, this))) new TrieMap(r, null, hashing, equality, null)
     else readOnlySnapshot()
   }
 
+  /** Removes all elements. This is O(1), or O(n) if this TrieMap tracks its size: the elements
+   *  under the replaced root, which no update can change anymore, are then counted right away.
+   */
   @tailrec override def clear() {
     val r = RDCSS_READ_ROOT()
     if (!RDCSS_ROOT(r, r.gcasRead(this), INode.newRootNode[K, V])) clear()
+    else if (sizeCounter ne null) sizeCounter.add(-TrieMap.frozenSize(r, hashing, equality))
   }
 
 
@@ -850,7 +979,9 @@ extends scala.collection.concurrent.Map[K, V]
 
   override def update(k: K, v: V) {
     val hc = computeHash(k)
-    inserthc(k, hc, v)
+    // only insertifhc tells whether the key was added
+    if (sizeCounter eq null) inserthc(k, hc, v)
+    else insertifhc(k, hc, v, null)
   }
 
   def +=(kv: (K, V)) = {
@@ -888,6 +1019,31 @@ extends scala.collection.concurrent.Map[K, V]
     insertifhc(k, hc, v, INode.KEY_PRESENT)
   }
 
+  /** Atomically replaces the binding of `k` with the result of `remappingFunction` on its current binding,
+   *  `None` standing for no binding on either side: the binding is added, changed or removed accordingly.
+   *
+   *  The function is applied while the node holding the binding is read, and the result is committed only
+   *  if that node did not change meanwhile; otherwise the function is applied again to the new binding.
+   *  It may thus be applied more than once under contention, and should be free of side effects.
+   *
+   *  @return  the new binding of `k`, if any
+   */
+  def updateWith(k: K)(remappingFunction: Option[V] => Option[V]): Option[V] = {
+    val hc = computeHash(k)
+    updatehc(k, hc, remappingFunction)
+  }
+
+  /** Atomically binds `k` to `v` if it is not bound yet, and to `f(old, v)` if it is bound to `old`.
+   *  As with `updateWith`, `f` may be applied more than once under contention.
+   *
+   *  @return  the new value bound to `k`
+   */
+  def merge(k: K, v: V)(f: (V, V) => V): V =
+    updateWith(k) {
+      case Some(old) => Some(f(old, v))
+      case None      => Some(v)
+    }.get
+
   def iterator: Iterator[(K, V)] =
     if (nonReadOnly) readOnlySnapshot().iterator
     else new TrieMapIterator(0, this)
@@ -897,10 +1053,18 @@ extends scala.collection.concurrent.Map[K, V]
     r.cachedSize(this)
   }
 
+  /** The number of elements. If this TrieMap tracks its size, this is O(1) and exact whenever no
+   *  update is in progress; otherwise, and for read-only snapshots, it is linearizable and O(n)
+   *  after each update. `readOnlySnapshot().size` is always linearizable.
+   */
   override def size: Int =
-    if (nonReadOnly) readOnlySnapshot().size
+    if (sizeCounter ne null) sizeCounter.sum
+    else if (nonReadOnly) readOnlySnapshot().size
     else cachedSize()
 
+  /** Whether this TrieMap counts its elements, see `TrieMap.withSizeTracking`. */
+  def isSizeTracking: Boolean = sizeCounter ne null
+
   override def stringPrefix = "TrieMap"
 
 }
@@ -913,6 +1077,65 @@ object TrieMap extends MutableMapFactory[TrieMap] {
 
   def empty[K, V]: TrieMap[K, V] = new TrieMap[K, V]
 
+  /** Creates an empty TrieMap that counts its elements, making `size` O(1).
+   *
+   *  Additions and removals are counted once they took effect, on counters striped by thread, so
+   *  that updates from different threads do not contend on them. `size` sums the counters: unlike
+   *  the snapshot-based `size` of other TrieMaps, it is not linearizable, but it is exact whenever
+   *  no update is in progress. Size tracking is preserved by `snapshot`, but not by serialization.
+   */
+  def withSizeTracking[K, V]: TrieMap[K, V] = withSizeTracking(Hashing.default, Equiv.universal)
+
+  /** Creates an empty TrieMap with the given hashing and equivalence, that counts its elements. */
+  def withSizeTracking[K, V](hashf: Hashing[K], ef: Equiv[K]): TrieMap[K, V] =
+    new TrieMap[K, V](hashf, ef, new SizeCounter(null))
+
+  /* The number of elements under a root replaced by `snapshot` or `clear`, which no update can change anymore. */
+  private def frozenSize[K, V](r: INode[K, V], hashf: Hashing[K], ef: Equiv[K]): Int =
+    new TrieMap[K, V](r, null, hashf, ef, null).size
+
+  /** Striped element counter of a size-tracking TrieMap.
+   *
+   *  @param base  the number of elements the TrieMap starts with, computed on first use, or null if none.
+   */
+  private[concurrent] final class SizeCounter(base: () => Int) {
+    import SizeCounter._
+
+    // one cell per stripe, Padding longs apart so that each sits on its own cache line
+    private val cells = new AtomicLongArray(Stripes * Padding)
+    // dropped once counted, so that the root it counts can be collected
+    private[this] var pendingBase = base
+    private[this] lazy val baseCount: Long = {
+      val b = pendingBase
+      pendingBase = null
+      if (b eq null) 0L else b().toLong
+    }
+
+    def add(delta: Int): Unit = {
+      val stripe = Thread.currentThread.getId.toInt & (Stripes - 1)
+      cells.addAndGet(stripe * Padding, delta)
+    }
+
+    def sum: Int = {
+      var s = baseCount
+      var i = 0
+      while (i < Stripes) {
+        s += cells.get(i * Padding)
+        i += 1
+      }
+      s.toInt
+    }
+  }
+
+  private[concurrent] object SizeCounter {
+    final val Stripes = 32 // a power of two
+    final val Padding = 8
+
+    // captures neither TrieMap, only the frozen root
+    def startingWith[K, V](r: INode[K, V], hashf: Hashing[K], ef: Equiv[K]): SizeCounter =
+      new SizeCounter(() => frozenSize(r, hashf, ef))
+  }
+
   class MangledHashing[K] extends Hashing[K] {
     def hash(k: K)= scala.util.hashing.byteswap32(k.##)
   }
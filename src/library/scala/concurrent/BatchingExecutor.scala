@@ -10,6 +10,7 @@ package scala.concurrent
 
 import java.util.concurrent.Executor
 import scala.annotation.tailrec
+import scala.util.control.NonFatal
 
 /**
  * Mixin trait for an Executor
@@ -69,7 +70,14 @@ private[concurrent] trait BatchingExecutor extends Executor {
                   // up to the invoking executor
                   val remaining = _tasksLocal.get
                   _tasksLocal set Nil
-                  unbatchedExecute(new Batch(remaining)) //TODO what if this submission fails?
+                  if (remaining.nonEmpty) {
+                    try unbatchedExecute(new Batch(remaining)) catch {
+                      case NonFatal(_) =>
+                        // the executor rejected them: run them here rather than drop them
+                        _tasksLocal.remove()
+                        new Batch(remaining).run()
+                    }
+                  }
                   throw t // rethrow
               }
               processBatch(_tasksLocal.get) // since head.run() can add entries, always do _tasksLocal.get here
@@ -109,6 +117,21 @@ private[concurrent] trait BatchingExecutor extends Executor {
     } else unbatchedExecute(runnable) // If not batchable, just delegate to underlying
   }
 
+  /** Executes all of `runnables` as a single batch: one task submitted to the
+   *  underlying executor, or added to the current batch when called from within one.
+   *  If some of them are not batchable, they are all executed one by one.
+   *  When they are all batchable, either all of them or none were submitted if this
+   *  throws, since the underlying executor only gets the one batch.
+   */
+  private[concurrent] def executeBatch(runnables: List[Runnable]): Unit = {
+    if (runnables forall batchable) {
+      _tasksLocal.get match {
+        case null => unbatchedExecute(new Batch(runnables))
+        case some => _tasksLocal.set(runnables ::: some)
+      }
+    } else runnables foreach execute
+  }
+
   /** Override this to define which runnables will be batched. */
   def batchable(runnable: Runnable): Boolean = runnable match {
     case _: OnCompleteRunnable => true
@@ -93,6 +93,19 @@ object ExecutionContext {
   /**
    * This is the explicit global ExecutionContext,
    * call this when you want to provide the global ExecutionContext explicitly
+   *
+   * Its pool is configured by these system properties:
+   *  - `scala.concurrent.context.minThreads`, `numThreads` and `maxThreads`: the parallelism,
+   *    as a number of threads or as a factor of the number of processors (e.g. `x2`)
+   *  - `scala.concurrent.context.maxExtraThreads`: the number of threads blocked in a
+   *    `blocking` section that the pool can make up for by starting new ones (256 by default)
+   *  - `scala.concurrent.context.blockingPolicy`: what a `blocking` section does beyond that,
+   *    `block` (run it on the thread anyway without starting another, the default) or `reject`
+   *    (throw a `RejectedExecutionException`); other values are ignored with a warning
+   *  - `scala.concurrent.context.asyncMode`: whether the queues of the threads are FIFO
+   *    (`true`, the default) or LIFO
+   *  - `scala.concurrent.context.localSubmission`: whether tasks executed from a thread of the
+   *    pool go to the queue of that thread (`true`, the default) or to the queue of the pool
    */
   def global: ExecutionContextExecutor = Implicits.global
 
@@ -125,6 +138,49 @@ object ExecutionContext {
   /** The default reporter simply prints the stack trace of the `Throwable` to System.err.
    */
   def defaultReporter: Throwable => Unit = _.printStackTrace()
+
+  /** A snapshot of the state of the pool of threads behind an `ExecutionContext`.
+   *  The counts are estimates, taken without stopping the pool.
+   *
+   *  @param parallelism         the targeted number of running threads
+   *  @param poolSize            the number of threads started and not yet terminated
+   *  @param activeThreads       the number of threads running or stealing tasks
+   *  @param runningThreads      the number of threads not blocked waiting
+   *  @param blockedThreads      the number of threads in a `blocking` section
+   *  @param blockingSections    the number of `blocking` sections entered so far
+   *  @param uncompensatedBlockingSections the number of those run without compensation, `maxExtraThreads` being reached
+   *  @param rejectedBlockingSections      the number of those rejected, `maxExtraThreads` being reached
+   *  @param compensationThreads the number of threads started beyond `parallelism` to make up for blocked ones
+   *  @param steals              the number of tasks run by a thread other than the one that queued them
+   *  @param queuedTasks         the number of tasks in the queues of the threads
+   *  @param queuedSubmissions   the number of tasks submitted from outside the pool and not yet run
+   */
+  final class PoolStatistics(
+    val parallelism: Int,
+    val poolSize: Int,
+    val activeThreads: Int,
+    val runningThreads: Int,
+    val blockedThreads: Int,
+    val blockingSections: Long,
+    val uncompensatedBlockingSections: Long,
+    val rejectedBlockingSections: Long,
+    val compensationThreads: Int,
+    val steals: Long,
+    val queuedTasks: Long,
+    val queuedSubmissions: Int) {
+    override def toString =
+      s"PoolStatistics(parallelism = $parallelism, poolSize = $poolSize, active = $activeThreads, running = $runningThreads, " +
+      s"blocked = $blockedThreads, blocking sections = $blockingSections (uncompensated = $uncompensatedBlockingSections, " +
+      s"rejected = $rejectedBlockingSections), compensation = $compensationThreads, steals = $steals, queued = $queuedTasks, submissions = $queuedSubmissions)"
+  }
+
+  /** The statistics of the pool behind `ec`, if it is `global` or it was created
+   *  by `fromExecutor` or `fromExecutorService` on a `scala.concurrent.forkjoin.ForkJoinPool`.
+   */
+  def poolStatistics(ec: ExecutionContext): Option[PoolStatistics] = ec match {
+    case ctx: impl.ExecutionContextImpl => ctx.poolStatistics
+    case _                              => None
+  }
 }
 
 
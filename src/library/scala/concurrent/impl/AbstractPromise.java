@@ -31,6 +31,15 @@ abstract class AbstractPromise {
 	return Unsafe.instance.compareAndSwapObject(this, _refoffset, oldState, newState);
     }
 
+    /** Sets the state with a release store. Only for the writes that replace a link by
+     *  a link further down the chain: they follow the CAS that linked the promise, so they
+     *  are already ordered. The initial state is written with updateState, which stays
+     *  visible to threads that get the promise through a data race.
+     */
+    protected final void setState(Object newState) {
+	updater.lazySet(this, newState);
+    }
+
     protected final Object getState() {
 	return _ref;
     }
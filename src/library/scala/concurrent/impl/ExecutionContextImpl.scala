@@ -10,7 +10,8 @@ package scala.concurrent.impl
 
 
 
-import java.util.concurrent.{ LinkedBlockingQueue, Callable, Executor, ExecutorService, Executors, ThreadFactory, TimeUnit, ThreadPoolExecutor }
+import java.util.concurrent.{ LinkedBlockingQueue, Callable, Executor, ExecutorService, Executors, RejectedExecutionException, ThreadFactory, TimeUnit, ThreadPoolExecutor }
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicLong }
 import java.util.Collection
 import scala.concurrent.forkjoin._
 import scala.concurrent.{ BlockContext, ExecutionContext, Awaitable, CanAwait, ExecutionContextExecutor, ExecutionContextExecutorService }
@@ -24,6 +25,15 @@ private[scala] class ExecutionContextImpl private[impl] (es: Executor, reporter:
     def uncaughtException(thread: Thread, cause: Throwable): Unit = reporter(cause)
   }
 
+  // the number of threads of this context's pool in a `blocking` section
+  private[this] val blockedThreads = new AtomicInteger
+  // the number of those for which the pool may start a compensation thread
+  private[this] val compensatedThreads = new AtomicInteger
+  private[this] val blockingSections, uncompensatedSections, rejectedSections = new AtomicLong
+  // set by `createExecutorService`, from `scala.concurrent.context.maxExtraThreads` and `.blockingPolicy`
+  private[this] var maxExtraThreads = Int.MaxValue
+  private[this] var rejectBlocking = false
+
   val executor: Executor = es match {
     case null => createExecutorService
     case some => some
@@ -41,16 +51,35 @@ private[scala] class ExecutionContextImpl private[impl] (es: Executor, reporter:
 
     def newThread(fjp: ForkJoinPool): ForkJoinWorkerThread = wire(new ForkJoinWorkerThread(fjp) with BlockContext {
       override def blockOn[T](thunk: =>T)(implicit permission: CanAwait): T = {
-        var result: T = null.asInstanceOf[T]
-        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker {
-          @volatile var isdone = false
-          override def block(): Boolean = {
-            result = try thunk finally { isdone = true }
-            true
+        blockingSections.incrementAndGet()
+        // each managed block starts at most one thread, so limiting them bounds the pool
+        if (compensatedThreads.incrementAndGet() > maxExtraThreads) {
+          compensatedThreads.decrementAndGet()
+          if (rejectBlocking) {
+            rejectedSections.incrementAndGet()
+            throw new RejectedExecutionException(s"$maxExtraThreads threads of the pool are already blocked")
+          }
+          // block without compensation: the thread is lost to the pool until the thunk returns,
+          // and nothing is queued, the pool's other tasks just have one thread less
+          uncompensatedSections.incrementAndGet()
+          blockedThreads.incrementAndGet()
+          try thunk finally blockedThreads.decrementAndGet()
+        } else {
+          var result: T = null.asInstanceOf[T]
+          blockedThreads.incrementAndGet()
+          try ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker {
+            @volatile var isdone = false
+            override def block(): Boolean = {
+              result = try thunk finally { isdone = true }
+              true
+            }
+            override def isReleasable = isdone
+          }) finally {
+            blockedThreads.decrementAndGet()
+            compensatedThreads.decrementAndGet()
           }
-          override def isReleasable = isdone
-        })
-        result
+          result
+        }
       }
     })
   }
@@ -64,6 +93,13 @@ private[scala] class ExecutionContextImpl private[impl] (es: Executor, reporter:
       case other => other.toInt
     }
 
+    def getBoolean(name: String, default: Boolean) = (try System.getProperty(name) catch {
+      case e: SecurityException => null
+    }) match {
+      case null  => default
+      case other => other.toBoolean
+    }
+
     def range(floor: Int, desired: Int, ceiling: Int) = scala.math.min(scala.math.max(floor, desired), ceiling)
 
     val desiredParallelism = range(
@@ -71,6 +107,17 @@ private[scala] class ExecutionContextImpl private[impl] (es: Executor, reporter:
       getInt("scala.concurrent.context.numThreads", "x1"),
       getInt("scala.concurrent.context.maxThreads", "x1"))
 
+    maxExtraThreads = getInt("scala.concurrent.context.maxExtraThreads", "256")
+    rejectBlocking = (try System.getProperty("scala.concurrent.context.blockingPolicy", "block") catch {
+      case e: SecurityException => "block"
+    }) match {
+      case "block"  => false
+      case "reject" => true
+      case other    =>
+        System.err.println(s"Ignoring scala.concurrent.context.blockingPolicy=$other, which must be block or reject; using block")
+        false
+    }
+
     val threadFactory = new DefaultThreadFactory(daemonic = true)
 
     try {
@@ -78,7 +125,8 @@ private[scala] class ExecutionContextImpl private[impl] (es: Executor, reporter:
         desiredParallelism,
         threadFactory,
         uncaughtExceptionHandler,
-        true) // Async all the way baby
+        // FIFO local queues by default; LIFO ones keep the data of recursive tasks in the cache
+        getBoolean("scala.concurrent.context.asyncMode", true))
     } catch {
       case NonFatal(t) =>
         System.err.println("Failed to create ForkJoinPool for the default ExecutionContext, falling back to ThreadPoolExecutor")
@@ -103,18 +151,46 @@ private[scala] class ExecutionContextImpl private[impl] (es: Executor, reporter:
         case r                  => new ExecutionContextImpl.AdaptedForkJoinTask(r)
       }
       Thread.currentThread match {
-        case fjw: ForkJoinWorkerThread if fjw.getPool eq fj => fjt.fork()
-        case _                                              => fj execute fjt
+        case fjw: ForkJoinWorkerThread if (fjw.getPool eq fj) && ExecutionContextImpl.localSubmission => fjt.fork()
+        case _                                                                                        => fj execute fjt
       }
     case generic => generic execute runnable
   }
 
+  /** The statistics of the pool, if it's a `ForkJoinPool`. */
+  def poolStatistics: Option[ExecutionContext.PoolStatistics] = executor match {
+    case fj: ForkJoinPool =>
+      val poolSize = fj.getPoolSize
+      Some(new ExecutionContext.PoolStatistics(
+        parallelism                   = fj.getParallelism,
+        poolSize                      = poolSize,
+        activeThreads                 = fj.getActiveThreadCount,
+        runningThreads                = fj.getRunningThreadCount,
+        blockedThreads                = blockedThreads.get,
+        blockingSections              = blockingSections.get,
+        uncompensatedBlockingSections = uncompensatedSections.get,
+        rejectedBlockingSections      = rejectedSections.get,
+        compensationThreads           = scala.math.max(0, poolSize - fj.getParallelism),
+        steals                        = fj.getStealCount,
+        queuedTasks                   = fj.getQueuedTaskCount,
+        queuedSubmissions             = fj.getQueuedSubmissionCount))
+    case _ => None
+  }
+
   def reportFailure(t: Throwable) = reporter(t)
 }
 
 
 private[concurrent] object ExecutionContextImpl {
 
+  /** Whether tasks executed from a thread of the pool go to the queue of that thread
+   *  (from which other threads steal them), rather than to the queue shared by the pool.
+   *  Set by the property `scala.concurrent.context.localSubmission`, true by default.
+   */
+  val localSubmission: Boolean =
+    try System.getProperty("scala.concurrent.context.localSubmission", "true").toBoolean
+    catch { case e: SecurityException => true }
+
   final class AdaptedForkJoinTask(runnable: Runnable) extends ForkJoinTask[Unit] {
           final override def setRawResult(u: Unit): Unit = ()
           final override def getRawResult(): Unit = ()
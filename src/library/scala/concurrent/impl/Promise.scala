@@ -8,10 +8,11 @@
 
 package scala.concurrent.impl
 
-import scala.concurrent.{ ExecutionContext, CanAwait, OnCompleteRunnable, TimeoutException, ExecutionException, blocking }
+import scala.concurrent.{ BatchingExecutor, ExecutionContext, CanAwait, OnCompleteRunnable, TimeoutException, ExecutionException, blocking }
 import scala.concurrent.Future.InternalCallbackExecutor
 import scala.concurrent.duration.{ Duration, Deadline, FiniteDuration, NANOSECONDS }
 import scala.annotation.tailrec
+import scala.collection.mutable.ListBuffer
 import scala.util.control.NonFatal
 import scala.util.{ Try, Success, Failure }
 import java.io.ObjectInputStream
@@ -32,15 +33,54 @@ private class CallbackRunnable[T](val executor: ExecutionContext, val onComplete
     try onComplete(value) catch { case NonFatal(e) => executor reportFailure e }
   }
 
-  def executeWithValue(v: Try[T]): Unit = {
+  def setValue(v: Try[T]): this.type = {
     require(value eq null) // can't complete it twice
     value = v
+    this
+  }
+
+  def executeWithValue(v: Try[T]): Unit = {
+    setValue(v)
+    dispatch()
+  }
+
+  /** Hands this callback, whose value is set, to its executor. */
+  def dispatch(): Unit = {
     // Note that we cannot prepare the ExecutionContext at this point, since we might
     // already be running on a different thread!
     try executor.execute(this) catch { case NonFatal(t) => executor reportFailure t }
   }
 }
 
+private object CallbackRunnable {
+  /** Executes the callbacks of a promise completed with `v`. Consecutive batchable
+   *  callbacks on the same batching executor are handed to it in a single batch.
+   *  If the executor rejects the batch, the rejection is reported and each of its
+   *  callbacks is handed to the executor on its own, so none is dropped.
+   */
+  @tailrec def executeAll[T](callbacks: List[CallbackRunnable[T]], v: Try[T]): Unit = if (callbacks.nonEmpty) {
+    val first = callbacks.head
+    first.executor match {
+      case batching: BatchingExecutor if batching batchable first =>
+        val batch = new ListBuffer[CallbackRunnable[T]]
+        var rest = callbacks
+        while (rest.nonEmpty && (rest.head.executor eq first.executor) && (batching batchable rest.head)) {
+          batch += rest.head.setValue(v)
+          rest = rest.tail
+        }
+        try batching.executeBatch(batch.toList) catch {
+          case NonFatal(t) =>
+            first.executor reportFailure t
+            batch foreach (_.dispatch())
+        }
+        executeAll(rest, v)
+      case _ =>
+        first.executeWithValue(v)
+        executeAll(callbacks.tail, v)
+    }
+  }
+}
+
 private[concurrent] object Promise {
 
   private def resolveTry[T](source: Try[T]): Try[T] = source match {
@@ -151,7 +191,9 @@ private[concurrent] object Promise {
    * by Future.flatMap.
    */
   class DefaultPromise[T] extends AbstractPromise with Promise[T] { self =>
-    updateState(null, Nil) // The promise is incomplete and has no callbacks
+    // The promise is incomplete and has no callbacks. This stays a CAS, not a release store:
+    // a promise published through a data race must never be seen with a null state.
+    updateState(null, Nil)
 
     /** Get the root promise for this promise, compressing the link chain to that
      *  promise if necessary.
@@ -167,12 +209,14 @@ private[concurrent] object Promise {
      *  be garbage collected. Also, subsequent calls to this method should be
      *  faster as the link chain will be shorter.
      */
-    @tailrec
     private def compressedRoot(): DefaultPromise[T] = {
       getState match {
         case linked: DefaultPromise[_] =>
           val target = linked.asInstanceOf[DefaultPromise[T]].root
-          if (linked eq target) target else if (updateState(linked, target)) target else compressedRoot()
+          // Once linked, a promise stays linked to a promise of the same chain, so
+          // racing compressions can't lose anything but the compression itself.
+          if (linked ne target) setState(target)
+          target
         case _ => this
       }
     }
@@ -245,7 +289,7 @@ private[concurrent] object Promise {
       tryCompleteAndGetListeners(resolved) match {
         case null             => false
         case rs if rs.isEmpty => true
-        case rs               => rs.foreach(r => r.executeWithValue(resolved)); true
+        case rs               => CallbackRunnable.executeAll(rs, resolved); true
       }
     }
 
@@ -17,6 +17,10 @@ import scala.math.ScalaNumber;
   * of methods in this object:
   *   - Convenience boxing methods which call the static valueOf method
   *     on the boxed class, thus utilizing the JVM boxing cache.
+  *     Larger caches for Int, Long and Char values can be enabled with
+  *     the system properties `scala.runtime.boxCache.int`, `.long` and
+  *     `.char`, each giving the largest value to be cached, up to 2^22 - 1
+  *     (values from 128 up to it are boxed once, when first needed).
   *   - Convenience unboxing methods returning default value on null.
   *   - The generalised comparison method to be used when an object may
   *     be a boxed value.
@@ -43,6 +47,28 @@ public final class BoxesRunTime
         return OTHER;
     }
 
+    private static final java.lang.Integer[] integerCache = new java.lang.Integer[boxCacheSize("int")];
+    private static final java.lang.Long[] longCache = new java.lang.Long[boxCacheSize("long")];
+    private static final java.lang.Character[] characterCache = new java.lang.Character[boxCacheSize("char")];
+
+    /** The largest cached value that can be configured, which keeps each cache array under 32MB. */
+    private static final int MaxBoxCacheHigh = (1 << 22) - 1;
+
+    /** The number of values above 127 to be cached, as configured by the
+     *  property `scala.runtime.boxCache.<kind>`.
+     */
+    private static int boxCacheSize(String kind) {
+        int high = 0;
+        try {
+            String prop = System.getProperty("scala.runtime.boxCache." + kind);
+            if (prop != null) high = Integer.parseInt(prop.trim());
+        } catch (SecurityException e) {
+        } catch (NumberFormatException e) {
+        }
+        high = Math.min(high, kind.equals("char") ? Character.MAX_VALUE : MaxBoxCacheHigh);
+        return high < 128 ? 0 : high - 127;
+    }
+
     private static String boxDescription(Object a) {
       return "" + a.getClass().getSimpleName() + "(" + a + ")";
     }
@@ -54,6 +80,14 @@ public final class BoxesRunTime
     }
 
     public static java.lang.Character boxToCharacter(char c) {
+        java.lang.Character[] cache = characterCache;
+        int index = c - 128;
+        if (index >= 0 && index < cache.length) {
+            // the race is benign: the cache only ever holds equal boxes
+            java.lang.Character b = cache[index];
+            if (b == null) cache[index] = b = java.lang.Character.valueOf(c);
+            return b;
+        }
         return java.lang.Character.valueOf(c);
     }
 
@@ -66,10 +100,23 @@ public final class BoxesRunTime
     }
 
     public static java.lang.Integer boxToInteger(int i) {
+        java.lang.Integer[] cache = integerCache;
+        if (i >= 128 && i - 128 < cache.length) {
+            java.lang.Integer b = cache[i - 128];
+            if (b == null) cache[i - 128] = b = java.lang.Integer.valueOf(i);
+            return b;
+        }
         return java.lang.Integer.valueOf(i);
     }
 
     public static java.lang.Long boxToLong(long l) {
+        java.lang.Long[] cache = longCache;
+        if (l >= 128 && l - 128 < cache.length) {
+            int index = (int) (l - 128);
+            java.lang.Long b = cache[index];
+            if (b == null) cache[index] = b = java.lang.Long.valueOf(l);
+            return b;
+        }
         return java.lang.Long.valueOf(l);
     }
 
@@ -129,6 +176,21 @@ public final class BoxesRunTime
      *  in any case, we dispatch to it as soon as we spot one on either side.
      */
     public static boolean equals2(Object x, Object y) {
+        // monomorphic fast paths: boxes of the same class compare by value, and
+        // a String is never cooperatively equal to anything but a String.
+        if (x instanceof java.lang.Integer) {
+            if (y instanceof java.lang.Integer)
+                return ((java.lang.Integer)x).intValue() == ((java.lang.Integer)y).intValue();
+        } else if (x instanceof java.lang.String) {
+            return x.equals(y);
+        } else if (x instanceof java.lang.Long) {
+            if (y instanceof java.lang.Long)
+                return ((java.lang.Long)x).longValue() == ((java.lang.Long)y).longValue();
+        } else if (x instanceof java.lang.Double) {
+            if (y instanceof java.lang.Double)
+                return ((java.lang.Double)x).doubleValue() == ((java.lang.Double)y).doubleValue();
+        }
+
         if (x instanceof java.lang.Number)
             return equalsNumObject((java.lang.Number)x, y);
         if (x instanceof java.lang.Character)
@@ -151,6 +213,11 @@ public final class BoxesRunTime
     }
 
     public static boolean equalsNumNum(java.lang.Number xn, java.lang.Number yn) {
+        if (xn instanceof java.lang.Integer && yn instanceof java.lang.Integer)
+            return xn.intValue() == yn.intValue();
+        if (xn instanceof java.lang.Long && yn instanceof java.lang.Long)
+            return xn.longValue() == yn.longValue();
+
         int xcode = typeCode(xn);
         int ycode = typeCode(yn);
         switch (ycode > xcode ? ycode : xcode) {
@@ -256,13 +323,15 @@ public final class BoxesRunTime
         else return n.hashCode();
     }
     public static int hashFromNumber(java.lang.Number n) {
-      if (n instanceof java.lang.Long) return hashFromLong((java.lang.Long)n);
+      if (n instanceof java.lang.Integer) return n.hashCode();
+      else if (n instanceof java.lang.Long) return hashFromLong((java.lang.Long)n);
       else if (n instanceof java.lang.Double) return hashFromDouble((java.lang.Double)n);
       else if (n instanceof java.lang.Float) return hashFromFloat((java.lang.Float)n);
       else return n.hashCode();
     }
     public static int hashFromObject(Object a) {
-      if (a instanceof Number) return hashFromNumber((Number)a);
+      if (a instanceof java.lang.String) return a.hashCode();
+      else if (a instanceof Number) return hashFromNumber((Number)a);
       else return a.hashCode();
     }
 
@@ -75,6 +75,9 @@ public final class Statics {
     if (x == null)
       return 0;
 
+    if (x instanceof java.lang.Integer || x instanceof java.lang.String)
+      return x.hashCode();
+
     if (x instanceof java.lang.Long)
       return longHash(((java.lang.Long)x).longValue());
 
@@ -86,4 +89,116 @@ public final class Statics {
 
     return x.hashCode();
   }
+
+  /* Bulk hashing. Each method computes the same hash as mixing in the `##` of
+   * the elements `from` until `until` one by one, starting from `seed`, and
+   * finalizing with the number of elements.
+   */
+
+  public static int intArrayHash(int[] a, int from, int until, int seed) {
+    int h = seed;
+    int i = from;
+    for (int end = until - 3; i < end; i += 4) {
+      h = mix(h, a[i]);
+      h = mix(h, a[i + 1]);
+      h = mix(h, a[i + 2]);
+      h = mix(h, a[i + 3]);
+    }
+    for (; i < until; i++)
+      h = mix(h, a[i]);
+    return finalizeHash(h, until - from);
+  }
+
+  public static int longArrayHash(long[] a, int from, int until, int seed) {
+    int h = seed;
+    int i = from;
+    for (int end = until - 3; i < end; i += 4) {
+      h = mix(h, longHash(a[i]));
+      h = mix(h, longHash(a[i + 1]));
+      h = mix(h, longHash(a[i + 2]));
+      h = mix(h, longHash(a[i + 3]));
+    }
+    for (; i < until; i++)
+      h = mix(h, longHash(a[i]));
+    return finalizeHash(h, until - from);
+  }
+
+  public static int doubleArrayHash(double[] a, int from, int until, int seed) {
+    int h = seed;
+    int i = from;
+    for (int end = until - 3; i < end; i += 4) {
+      h = mix(h, doubleHash(a[i]));
+      h = mix(h, doubleHash(a[i + 1]));
+      h = mix(h, doubleHash(a[i + 2]));
+      h = mix(h, doubleHash(a[i + 3]));
+    }
+    for (; i < until; i++)
+      h = mix(h, doubleHash(a[i]));
+    return finalizeHash(h, until - from);
+  }
+
+  public static int floatArrayHash(float[] a, int from, int until, int seed) {
+    int h = seed;
+    for (int i = from; i < until; i++)
+      h = mix(h, floatHash(a[i]));
+    return finalizeHash(h, until - from);
+  }
+
+  public static int charArrayHash(char[] a, int from, int until, int seed) {
+    int h = seed;
+    int i = from;
+    for (int end = until - 3; i < end; i += 4) {
+      h = mix(h, a[i]);
+      h = mix(h, a[i + 1]);
+      h = mix(h, a[i + 2]);
+      h = mix(h, a[i + 3]);
+    }
+    for (; i < until; i++)
+      h = mix(h, a[i]);
+    return finalizeHash(h, until - from);
+  }
+
+  public static int byteArrayHash(byte[] a, int from, int until, int seed) {
+    int h = seed;
+    int i = from;
+    for (int end = until - 3; i < end; i += 4) {
+      h = mix(h, a[i]);
+      h = mix(h, a[i + 1]);
+      h = mix(h, a[i + 2]);
+      h = mix(h, a[i + 3]);
+    }
+    for (; i < until; i++)
+      h = mix(h, a[i]);
+    return finalizeHash(h, until - from);
+  }
+
+  /** The hash of `until - from` bytes taken 4 at a time, little-endian, as MurmurHash3 does. */
+  public static int bytesHash(byte[] data, int from, int until, int seed) {
+    int h = seed;
+    int i = from;
+    for (int end = until - 3; i < end; i += 4) {
+      int k = (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | (data[i + 3] & 0xFF) << 24;
+      h = mix(h, k);
+    }
+    int rest = until - i;
+    if (rest > 0) {
+      int k = data[i] & 0xFF;
+      if (rest >= 2) k ^= (data[i + 1] & 0xFF) << 8;
+      if (rest == 3) k ^= (data[i + 2] & 0xFF) << 16;
+      h = mixLast(h, k);
+    }
+    return finalizeHash(h, until - from);
+  }
+
+  /** The hash of the characters of `str`, taken 2 at a time, as MurmurHash3 does. */
+  public static int stringHash(String str, int seed) {
+    int h = seed;
+    int len = str.length();
+    int i = 0;
+    for (; i + 1 < len; i += 2)
+      h = mix(h, (str.charAt(i) << 16) + str.charAt(i + 1));
+    if (i < len)
+      h = mixLast(h, str.charAt(i));
+    return finalizeHash(h, len);
+  }
 }
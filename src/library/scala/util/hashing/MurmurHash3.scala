@@ -10,6 +10,8 @@ package scala
 package util.hashing
 
 import java.lang.Integer.{ rotateLeft => rotl }
+import scala.collection.mutable.WrappedArray
+import scala.runtime.Statics
 
 private[hashing] class MurmurHash3 {
   /** Mix in a block of data into an intermediate hash value. */
@@ -69,17 +71,7 @@ private[hashing] class MurmurHash3 {
   }
 
   /** Compute the hash of a string */
-  final def stringHash(str: String, seed: Int): Int = {
-    var h = seed
-    var i = 0
-    while (i + 1 < str.length) {
-      val data = (str.charAt(i) << 16) + str.charAt(i + 1)
-      h = mix(h, data)
-      i += 2
-    }
-    if (i < str.length) h = mixLast(h, str.charAt(i).toInt)
-    finalizeHash(h, str.length)
-  }
+  final def stringHash(str: String, seed: Int): Int = Statics.stringHash(str, seed)
 
   /** Compute a hash that is symmetric in its arguments - that is a hash
    *  where the order of appearance of elements does not matter.
@@ -115,49 +107,27 @@ private[hashing] class MurmurHash3 {
 
   /** Compute the hash of an array.
    */
-  final def arrayHash[@specialized T](a: Array[T], seed: Int): Int = {
-    var h = seed
-    var i = 0
-    while (i < a.length) {
-      h = mix(h, a(i).##)
-      i += 1
-    }
-    finalizeHash(h, a.length)
+  final def arrayHash[@specialized T](a: Array[T], seed: Int): Int = (a: AnyRef) match {
+    case a: Array[Int]    => Statics.intArrayHash(a, 0, a.length, seed)
+    case a: Array[Long]   => Statics.longArrayHash(a, 0, a.length, seed)
+    case a: Array[Double] => Statics.doubleArrayHash(a, 0, a.length, seed)
+    case a: Array[Float]  => Statics.floatArrayHash(a, 0, a.length, seed)
+    case a: Array[Char]   => Statics.charArrayHash(a, 0, a.length, seed)
+    case a: Array[Byte]   => Statics.byteArrayHash(a, 0, a.length, seed)
+    case _ =>
+      var h = seed
+      var i = 0
+      while (i < a.length) {
+        h = mix(h, a(i).##)
+        i += 1
+      }
+      finalizeHash(h, a.length)
   }
 
   /** Compute the hash of a byte array. Faster than arrayHash, because
    *  it hashes 4 bytes at once.
    */
-  final def bytesHash(data: Array[Byte], seed: Int): Int = {
-    var len = data.length
-    var h = seed
-
-    // Body
-    var i = 0
-    while(len >= 4) {
-      var k = data(i + 0) & 0xFF
-      k |= (data(i + 1) & 0xFF) << 8
-      k |= (data(i + 2) & 0xFF) << 16
-      k |= (data(i + 3) & 0xFF) << 24
-
-      h = mix(h, k)
-
-      i += 4
-      len -= 4
-    }
-
-    // Tail
-    var k = 0
-    if(len == 3) k ^= (data(i + 2) & 0xFF) << 16
-    if(len >= 2) k ^= (data(i + 1) & 0xFF) << 8
-    if(len >= 1) {
-      k ^= (data(i + 0) & 0xFF)
-      h = mixLast(h, k)
-    }
-
-    // Finalization
-    finalizeHash(h, data.length)
-  }
+  final def bytesHash(data: Array[Byte], seed: Int): Int = Statics.bytesHash(data, 0, data.length, seed)
 
   final def listHash(xs: scala.collection.immutable.List[_], seed: Int): Int = {
     var n = 0
@@ -216,6 +186,12 @@ object MurmurHash3 extends MurmurHash3 {
    */
   def seqHash(xs: scala.collection.Seq[_]): Int    = xs match {
     case xs: List[_] => listHash(xs, seqSeed)
+    // the hash of a primitive array wrapper is that of its elements, computed without boxing them
+    case xs: WrappedArray.ofInt    => Statics.intArrayHash(xs.array, 0, xs.length, seqSeed)
+    case xs: WrappedArray.ofLong   => Statics.longArrayHash(xs.array, 0, xs.length, seqSeed)
+    case xs: WrappedArray.ofDouble => Statics.doubleArrayHash(xs.array, 0, xs.length, seqSeed)
+    case xs: WrappedArray.ofChar   => Statics.charArrayHash(xs.array, 0, xs.length, seqSeed)
+    case xs: WrappedArray.ofByte   => Statics.byteArrayHash(xs.array, 0, xs.length, seqSeed)
     case xs => orderedHash(xs, seqSeed)
   }
 
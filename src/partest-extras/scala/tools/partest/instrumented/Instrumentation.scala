@@ -71,6 +71,19 @@ object Instrumentation {
     res
   }
 
+  /** Call counts gathered when the agent runs in hot-method mode (`-javaagent:<jar>=hot`). */
+  def getHotStatistics: Map[MethodCallTrace, Long] =
+    Profiler.getHotStatistics().asScala.toMap.map {
+      case (trace, count) => MethodCallTrace(trace.className, trace.methodName, trace.methodDescriptor) -> count.longValue
+    }
+
+  /** Writes the hot-method profile to `path`, in a format flame graph tools read. */
+  def writeFlameGraph(path: String): Unit = {
+    val out = new java.io.BufferedWriter(new java.io.FileWriter(path))
+    try Profiler.writeCollapsed(out)
+    finally out.close()
+  }
+
   val standardFilter: MethodCallTrace => Boolean = t => {
     // ignore all calls to Console trigger by printing
     t.className != "scala/Console$" &&
@@ -5,8 +5,17 @@
 
 package scala.tools.partest.instrumented;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A simple profiler class that counts method invocations. It is being used in byte-code instrumentation by inserting
@@ -15,10 +24,16 @@ import java.util.Map;
  * WARANING: This class is INTERNAL implementation detail and should never be used directly. It's made public only
  * because it must be universally accessible for instrumentation needs. If you want to profile your test use
  * {@link Instrumentation} instead.
+ *
+ * When the agent runs in hot-method mode, instrumented methods call {@link Profiler#methodEntered(int)} instead,
+ * which counts calls by method id into per-thread-stripe counters, so that multi-threaded programs can be profiled.
+ * Two system properties apply to that mode:
+ *   - `partest.profiler.sample=N` counts one call in N (per stripe), recording the call stack of the sampled calls;
+ *   - `partest.profiler.out=file` profiles from startup and writes {@link Profiler#writeCollapsed} to `file` on exit.
  */
 public class Profiler {
 
-        private static boolean isProfiling = false;
+        private static volatile boolean isProfiling = false;
         private static Map<MethodCallTrace, Integer> counts = new HashMap<MethodCallTrace, Integer>();
 
         static public class MethodCallTrace {
@@ -61,6 +76,10 @@ public class Profiler {
 
         public static void resetProfiling() {
           counts = new HashMap<MethodCallTrace, Integer>();
+          for (int i = 0; i < hotCounts.length(); i++) {
+            hotCounts.set(i, null);
+          }
+          sampledStacks.clear();
         }
 
         public static void methodCalled(final String className, final String methodName, final String methodDescriptor) {
@@ -79,4 +98,198 @@ public class Profiler {
           return new HashMap<MethodCallTrace, Integer>(counts);
         }
 
+        // hot-method mode
+
+        private static final int STRIPES    = 16; // a power of two
+        private static final int CHUNK_BITS = 12;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int MAX_CHUNKS = 1 << 10; // per stripe, ids beyond MAX_CHUNKS * CHUNK_SIZE are not counted
+
+        // call counts by stripe and method id, in chunks allocated on first use
+        private static final AtomicReferenceArray<AtomicLongArray> hotCounts =
+          new AtomicReferenceArray<AtomicLongArray>(STRIPES * MAX_CHUNKS);
+
+        // calls left before the next sample, by stripe; threads sharing a stripe race on it, which only blurs the sampling
+        private static final int[] countdown = new int[STRIPES];
+        private static volatile int sampleEvery = Math.max(1, Integer.getInteger("partest.profiler.sample", 1));
+
+        // sampled call stacks, collapsed as `outermost;...;innermost`
+        private static final ConcurrentHashMap<String, AtomicLong> sampledStacks = new ConcurrentHashMap<String, AtomicLong>();
+
+        /** Counts one call in `every` from now on, recording the call stack of the sampled ones. */
+        public static void setSampling(int every) {
+          if (every < 1) throw new IllegalArgumentException("sampling period must be positive: " + every);
+          sampleEvery = every;
+        }
+
+        public static void methodEntered(final int id) {
+          if (isProfiling) {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            int every = sampleEvery;
+            if (every > 1) {
+              if (--countdown[stripe] > 0) return;
+              countdown[stripe] = every;
+              recordStack(every);
+            }
+            if ((id >>> CHUNK_BITS) < MAX_CHUNKS) {
+              int chunk = stripe * MAX_CHUNKS + (id >>> CHUNK_BITS);
+              AtomicLongArray c = hotCounts.get(chunk);
+              if (c == null) {
+                hotCounts.compareAndSet(chunk, null, new AtomicLongArray(CHUNK_SIZE));
+                c = hotCounts.get(chunk);
+              }
+              c.addAndGet(id & (CHUNK_SIZE - 1), every);
+            }
+          }
+        }
+
+        private static void recordStack(int weight) {
+          StackTraceElement[] frames = new Throwable().getStackTrace();
+          StringBuilder sb = new StringBuilder();
+          // frames[0] is this method, frames[1] methodEntered
+          for (int i = frames.length - 1; i >= 2; i--) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+          }
+          String stack = sb.toString();
+          AtomicLong count = sampledStacks.get(stack);
+          if (count == null) {
+            AtomicLong fresh = new AtomicLong();
+            count = sampledStacks.putIfAbsent(stack, fresh);
+            if (count == null) count = fresh;
+          }
+          count.addAndGet(weight);
+        }
+
+        /** The (estimated, when sampling) number of calls by method id. */
+        public static long[] getHotCounts() {
+          int chunks = 0;
+          for (int i = 0; i < hotCounts.length(); i++) {
+            if (hotCounts.get(i) != null) chunks = Math.max(chunks, i % MAX_CHUNKS + 1);
+          }
+          long[] totals = new long[chunks * CHUNK_SIZE];
+          for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+              AtomicLongArray c = hotCounts.get(stripe * MAX_CHUNKS + chunk);
+              if (c != null) {
+                for (int j = 0; j < CHUNK_SIZE; j++) totals[chunk * CHUNK_SIZE + j] += c.get(j);
+              }
+            }
+          }
+          return totals;
+        }
+
+        /** The counts of {@link #getHotCounts}, by method. */
+        public static Map<MethodCallTrace, Long> getHotStatistics() {
+          long[] totals = getHotCounts();
+          Map<MethodCallTrace, Long> stats = new HashMap<MethodCallTrace, Long>();
+          for (int id = 0; id < totals.length; id++) {
+            if (totals[id] != 0) stats.put(methodOf(id), totals[id]);
+          }
+          return stats;
+        }
+
+        /**
+         * Writes the profile in the collapsed format read by flame graph tools (one `frame;frame;... count` per line):
+         * the sampled call stacks if any, or else one single-frame line per method.
+         *
+         * Single frames are named after the method and its descriptor, in source form (`C.m(int,java.lang.String)void`),
+         * so that overloads stay apart. Sampled frames come from stack traces, which carry no descriptor: the calls
+         * of overloaded methods are merged there.
+         */
+        public static void writeCollapsed(Writer out) throws IOException {
+          if (!sampledStacks.isEmpty()) {
+            for (Map.Entry<String, AtomicLong> e : sampledStacks.entrySet()) {
+              out.write(e.getKey() + " " + e.getValue().get() + "\n");
+            }
+          } else {
+            for (Map.Entry<MethodCallTrace, Long> e : getHotStatistics().entrySet()) {
+              out.write(frameName(e.getKey()) + " " + e.getValue() + "\n");
+            }
+          }
+          out.flush();
+        }
+
+        // descriptors contain `;`, the frame separator, so they are written as parameter and result types
+        private static String frameName(MethodCallTrace m) {
+          StringBuilder sb = new StringBuilder();
+          sb.append(m.className.replace('/', '.')).append('.').append(m.methodName);
+          String desc = m.methodDescriptor;
+          if (desc.startsWith("(")) {
+            sb.append('(');
+            int i = 1;
+            while (desc.charAt(i) != ')') {
+              if (i > 1) sb.append(',');
+              i = appendType(desc, i, sb);
+            }
+            sb.append(')');
+            appendType(desc, i + 1, sb);
+          }
+          return sb.toString();
+        }
+
+        // appends the type starting at `desc(i)`, returns the index following it
+        private static int appendType(String desc, int i, StringBuilder sb) {
+          int dims = 0;
+          while (desc.charAt(i) == '[') { dims++; i++; }
+          char c = desc.charAt(i++);
+          switch (c) {
+            case 'Z': sb.append("boolean"); break;
+            case 'B': sb.append("byte"); break;
+            case 'C': sb.append("char"); break;
+            case 'S': sb.append("short"); break;
+            case 'I': sb.append("int"); break;
+            case 'J': sb.append("long"); break;
+            case 'F': sb.append("float"); break;
+            case 'D': sb.append("double"); break;
+            case 'V': sb.append("void"); break;
+            default:
+              int end = desc.indexOf(';', i);
+              sb.append(desc.substring(i, end).replace('/', '.'));
+              i = end + 1;
+          }
+          for (; dims > 0; dims--) sb.append("[]");
+          return i;
+        }
+
+        private static Method describeMethod;
+
+        // MethodIds lives in the agent jar, on the system class path
+        private static synchronized MethodCallTrace methodOf(int id) {
+          String[] m = null;
+          try {
+            if (describeMethod == null) {
+              Class<?> ids = Class.forName("scala.tools.partest.javaagent.MethodIds", true, ClassLoader.getSystemClassLoader());
+              describeMethod = ids.getMethod("describe", int.class);
+            }
+            m = (String[]) describeMethod.invoke(null, id);
+          } catch (Exception e) {
+            // unknown id, reported as such
+          }
+          return m != null ? new MethodCallTrace(m[0], m[1], m[2]) : new MethodCallTrace("<unknown>", "#" + id, "");
+        }
+
+        static {
+          final String out = System.getProperty("partest.profiler.out");
+          if (out != null) {
+            isProfiling = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("partest-profiler-dump") {
+              @Override
+              public void run() {
+                isProfiling = false;
+                try {
+                  Writer w = new BufferedWriter(new FileWriter(out));
+                  try {
+                    writeCollapsed(w);
+                  } finally {
+                    w.close();
+                  }
+                } catch (IOException e) {
+                  System.err.println("could not write profile to " + out + ": " + e);
+                }
+              }
+            });
+          }
+        }
+
 }
@@ -7,12 +7,40 @@ package scala.tools.partest.javaagent;
 
 import java.lang.instrument.ClassFileTransformer;
 import java.security.ProtectionDomain;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import scala.tools.asm.ClassHierarchy;
 
 import scala.tools.asm.ClassReader;
 import scala.tools.asm.ClassWriter;
 
 public class ASMTransformer implements ClassFileTransformer {
 
+  // instrument for hot-method counting, see ProfilingAgent
+  private final boolean hot;
+
+  public ASMTransformer() {
+    this(false);
+  }
+
+  public ASMTransformer(boolean hot) {
+    this.hot = hot;
+  }
+
+  // one hierarchy per class loader, shared by all the classes it defines.
+  // A hierarchy only weakly references its loader, which would otherwise never be collected.
+  private final Map<ClassLoader, ClassHierarchy> hierarchies = new WeakHashMap<ClassLoader, ClassHierarchy>();
+
+  private synchronized ClassHierarchy hierarchyFor(ClassLoader classLoader) {
+    ClassHierarchy hierarchy = hierarchies.get(classLoader);
+    if (hierarchy == null) {
+      hierarchy = ClassHierarchy.forClassLoader(classLoader, 4096);
+      hierarchies.put(classLoader, hierarchy);
+    }
+    return hierarchy;
+  }
+
   private boolean shouldTransform(String className) {
     return
         // do not instrument instrumentation logic (in order to avoid infinite recursion)
@@ -28,17 +56,12 @@ public class ASMTransformer implements ClassFileTransformer {
 
         public byte[] transform(final ClassLoader classLoader, final String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
           if (shouldTransform(className)) {
-            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS) {
-              @Override protected String getCommonSuperClass(final String type1, final String type2) {
-                // Since we are not recomputing stack frame map, this should never be called we override this method because
-                // default implementation uses reflection for implementation and might try to load the class that we are
-                // currently processing. That leads to weird results like swallowed exceptions and classes being not
-                // transformed.
-                throw new RuntimeException("Unexpected call to getCommonSuperClass(" + type1 + ", " + type2 +
-                    ") while transforming " + className);
-              }
-            };
-                ProfilerVisitor visitor = new ProfilerVisitor(writer);
+            // Since we are not recomputing stack frame map, getCommonSuperClass should never be called. Should it be,
+            // the default implementation would use reflection and might try to load the class that we are currently
+            // processing. That leads to weird results like swallowed exceptions and classes being not transformed.
+            // A ClassHierarchy reads classfiles instead, without loading anything.
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS, hierarchyFor(classLoader));
+                ProfilerVisitor visitor = new ProfilerVisitor(writer, hot);
                 ClassReader reader = new ClassReader(classfileBuffer);
                 reader.accept(visitor, 0);
                 return writer.toByteArray();
@@ -0,0 +1,37 @@
+/* NEST (New Scala Test)
+ * Copyright 2007-2013 LAMP/EPFL
+ */
+
+package scala.tools.partest.javaagent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The integer ids given to instrumented methods in hot-method mode, see
+ * {@link scala.tools.partest.instrumented.Profiler#methodEntered(int)}.
+ *
+ * Ids are assigned when classes are transformed and looked up (reflectively,
+ * since this class lives in the agent jar) when the profile is dumped.
+ */
+public final class MethodIds {
+
+  private static final List<String[]> methods = new ArrayList<String[]>();
+
+  private MethodIds() {}
+
+  static synchronized int register(String className, String methodName, String methodDescriptor) {
+    methods.add(new String[] { className, methodName, methodDescriptor });
+    return methods.size() - 1;
+  }
+
+  /** The number of ids given so far. */
+  public static synchronized int count() {
+    return methods.size();
+  }
+
+  /** The class name, method name and method descriptor of the given id, or `null` if unknown. */
+  public static synchronized String[] describe(int id) {
+    return (id >= 0 && id < methods.size()) ? methods.get(id) : null;
+  }
+}
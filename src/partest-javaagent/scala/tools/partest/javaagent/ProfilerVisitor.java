@@ -13,8 +13,16 @@ public class ProfilerVisitor extends ClassVisitor implements Opcodes {
 
   private static String profilerClass = "scala/tools/partest/instrumented/Profiler";
 
+  // count calls by method id (see MethodIds) instead of by name
+  private final boolean hot;
+
   public ProfilerVisitor(final ClassVisitor cv) {
+    this(cv, false);
+  }
+
+  public ProfilerVisitor(final ClassVisitor cv, final boolean hot) {
     super(ASM4, cv);
+    this.hot = hot;
   }
 
   private String className = null;
@@ -46,11 +54,16 @@ public class ProfilerVisitor extends ClassVisitor implements Opcodes {
          * Instructions below are just loading constants and calling a method so according
          * to definition above they do not contribute to compressed stack frame map.
          */
-        mv.visitLdcInsn(className);
-        mv.visitLdcInsn(name);
-        mv.visitLdcInsn(desc);
-        mv.visitMethodInsn(INVOKESTATIC, profilerClass, "methodCalled",
-            "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V");
+        if (hot) {
+          mv.visitLdcInsn(MethodIds.register(className, name, desc));
+          mv.visitMethodInsn(INVOKESTATIC, profilerClass, "methodEntered", "(I)V");
+        } else {
+          mv.visitLdcInsn(className);
+          mv.visitLdcInsn(name);
+          mv.visitLdcInsn(desc);
+          mv.visitMethodInsn(INVOKESTATIC, profilerClass, "methodCalled",
+              "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V");
+        }
       }
     }
     return mv;
@@ -12,6 +12,12 @@ import java.lang.instrument.UnmodifiableClassException;
  * Profiling agent that instruments byte-code to insert calls to
  * {@link scala.tools.partest.instrumented.Profiler#methodCalled(String, String, String)}
  * by using ASM library for byte-code manipulation.
+ *
+ * Started as `-javaagent:<jar>=hot`, it inserts calls to
+ * {@link scala.tools.partest.instrumented.Profiler#methodEntered(int)} instead, passing
+ * an id given to the method at transformation time (see {@link MethodIds}). Counting by
+ * id is cheap and thread-safe enough to profile whole compiler runs; see `Profiler` for
+ * the system properties controlling sampling and the output file.
  */
 public class ProfilingAgent {
         public static void premain(String args, Instrumentation inst) throws UnmodifiableClassException {
@@ -20,6 +26,6 @@ public class ProfilingAgent {
           // and the test-case itself won't be loaded yet. We rely here on the fact that ASMTransformer does
           // not depend on Scala library. In case our assumptions are wrong we can always insert call to
           // inst.retransformClasses.
-          inst.addTransformer(new ASMTransformer(), false);
+          inst.addTransformer(new ASMTransformer("hot".equals(args)), false);
         }
 }
@@ -0,0 +1,71 @@
+import scala.tools.asm.Opcodes._
+import scala.tools.asm.tree._
+import scala.tools.asm.tree.analysis._
+
+// Compares a fresh Analyzer per run with a recycling one, and with reanalyzing after an edit
+// near the end of the method, the way the optimizer does after inlining a callsite.
+//
+// run with -Dlength=<number of blocks in the analyzed method>
+
+object AsmAnalyzerMethod {
+  val length = sys.props("length").toInt
+
+  // many small basic blocks with forward jumps and a few locals live across all of them, like pattern matches
+  def newMethod(): MethodNode = {
+    val m = new MethodNode(ACC_STATIC, "m", "(ILjava/lang/Object;)I", null, null)
+    val is = m.instructions
+    is.add(new InsnNode(ICONST_0))
+    is.add(new VarInsnNode(ISTORE, 2))
+    for (i <- 0 until length) {
+      val skip = new LabelNode
+      is.add(new VarInsnNode(ILOAD, 0))
+      is.add(new LdcInsnNode(Integer.valueOf(i)))
+      is.add(new JumpInsnNode(IF_ICMPNE, skip))
+      is.add(new VarInsnNode(ALOAD, 1))
+      is.add(new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I"))
+      is.add(new VarInsnNode(ILOAD, 2))
+      is.add(new InsnNode(IADD))
+      is.add(new VarInsnNode(ISTORE, 2))
+      is.add(skip)
+    }
+    is.add(new InsnNode(NOP)) // replaced by the edits
+    is.add(new VarInsnNode(ILOAD, 2))
+    is.add(new InsnNode(IRETURN))
+    m.maxLocals = 3
+    m.maxStack = 2
+    m
+  }
+  val method = newMethod()
+}
+
+// Each edit replaces the same instruction, so the method keeps its size from one run to the next.
+class AsmAnalyzerEdits(method: MethodNode) {
+  private var edited = method.instructions.getLast.getPrevious.getPrevious
+
+  def edit(): AbstractInsnNode = {
+    val replacement = new InsnNode(NOP)
+    method.instructions.set(edited, replacement)
+    edited = replacement
+    replacement
+  }
+}
+
+object AsmAnalyzerFresh extends testing.Benchmark {
+  import AsmAnalyzerMethod._
+  def run = (new Analyzer(new BasicInterpreter)).analyze("C", method)
+}
+
+object AsmAnalyzerRecycled extends testing.Benchmark {
+  import AsmAnalyzerMethod._
+  val analyzer = new Analyzer(new BasicInterpreter, true)
+  def run = analyzer.analyze("C", method)
+}
+
+object AsmAnalyzerIncremental extends testing.Benchmark {
+  import AsmAnalyzerMethod._
+  val edited = newMethod()
+  val edits = new AsmAnalyzerEdits(edited)
+  val analyzer = new Analyzer(new BasicInterpreter, true)
+  analyzer.analyze("C", edited)
+  def run = analyzer.reanalyze("C", edited, edits.edit())
+}
@@ -0,0 +1,41 @@
+import scala.tools.asm.{ ClassWriter, Opcodes }
+import scala.tools.asm.tree._
+import Opcodes._
+
+// Serializes a class with many distinct constants, like a big companion object,
+// with and without sizing the constant pool upfront.
+//
+// run with -Dlength=<number of methods, each one adds 4 constants>
+
+object AsmConstantPoolClass {
+  val length = sys.props("length").toInt
+
+  val cnode = {
+    val cn = new ClassNode
+    cn.visit(V1_6, ACC_PUBLIC, "Big$", null, "java/lang/Object", null)
+    for (i <- 0 until length) {
+      val m = new MethodNode(ACC_PUBLIC, "field" + i, "()Ljava/lang/String;", null, null)
+      m.instructions.add(new LdcInsnNode("constant" + i))
+      m.instructions.add(new InsnNode(ARETURN))
+      m.maxStack = 1
+      m.maxLocals = 1
+      cn.methods.add(m)
+    }
+    cn
+  }
+
+  def write(cw: ClassWriter) = {
+    cnode.accept(cw)
+    cw.toByteArray
+  }
+}
+
+object AsmConstantPoolDefault extends testing.Benchmark {
+  import AsmConstantPoolClass._
+  def run = write(new ClassWriter(0))
+}
+
+object AsmConstantPoolPresized extends testing.Benchmark {
+  import AsmConstantPoolClass._
+  def run = write(new ClassWriter(0, null, 4 * length + 16))
+}
@@ -0,0 +1,52 @@
+import scala.collection.mutable
+
+// Looks up boxed numeric keys in maps keyed by `Any`, where every probe goes
+// through `BoxesRunTime.equals` and `##`. The mixed map hits the cooperative
+// equality between different boxes (e.g. Int and Long) instead of the
+// same-class fast paths.
+//
+// run with -Dsize=<number of keys>
+
+object BoxedKeys {
+  val size = sys.props("size").toInt
+
+  val ints: Array[Any] = Array.tabulate(size)(i => i)
+  val longs: Array[Any] = Array.tabulate(size)(i => i.toLong << 20)
+  val mixed: Array[Any] = Array.tabulate(size)(i => if (i % 2 == 0) i else i.toLong)
+
+  def fill(keys: Array[Any]) = {
+    val m = new mutable.HashMap[Any, Int]
+    for (k <- keys) m(k) = 1
+    m
+  }
+
+  def lookups(m: mutable.HashMap[Any, Int], keys: Array[Any]) = {
+    var i = 0
+    var found = 0
+    while (i < keys.length) {
+      found += m.getOrElse(keys(i), 0)
+      i += 1
+    }
+    assert(found == keys.length)
+  }
+}
+
+object BoxedIntKeys extends testing.Benchmark {
+  import BoxedKeys._
+  val map = fill(ints)
+  def run = lookups(map, ints)
+}
+
+object BoxedLongKeys extends testing.Benchmark {
+  import BoxedKeys._
+  val map = fill(longs)
+  def run = lookups(map, longs)
+}
+
+object BoxedMixedKeys extends testing.Benchmark {
+  import BoxedKeys._
+  val map = fill(ints)
+  // Ints looked up with equal Longs
+  val probes: Array[Any] = mixed
+  def run = lookups(map, probes)
+}
@@ -0,0 +1,60 @@
+import java.util.concurrent.CountDownLatch
+import scala.actors.{OutputChannel, Reactor}
+
+// Many threads send to one reactor, which counts the messages. `send`
+// appends to the reactor's send buffer without locking; the locked variant
+// takes the reactor's monitor around every `send`, as it used to.
+//
+// run with -Dmessages=<messages per producer> [-Dproducers=<threads, 64 by default>]
+// and -Dactors.messageBudget=<n> to let the reactor react to n messages per task
+
+object ReactorFanIn {
+  val producers = sys.props.getOrElse("producers", "64").toInt
+  val messages = sys.props("messages").toInt
+
+  class Counter(done: CountDownLatch) extends Reactor[Any] {
+    val expected = producers * messages
+    var count = 0
+    def act() = loopWhile(count < expected) {
+      react {
+        case _ =>
+          count += 1
+          if (count == expected) done.countDown()
+      }
+    }
+  }
+
+  class LockedCounter(done: CountDownLatch) extends Counter(done) {
+    override def send(msg: Any, replyTo: OutputChannel[Any]) = synchronized {
+      super.send(msg, replyTo)
+    }
+  }
+
+  def fanIn(newCounter: CountDownLatch => Counter) {
+    val done = new CountDownLatch(1)
+    val counter = newCounter(done)
+    counter.start()
+    val threads = for (p <- 0 until producers) yield new Thread {
+      override def run() {
+        var i = 0
+        while (i < messages) {
+          counter ! i
+          i += 1
+        }
+      }
+    }
+    threads foreach (_.start())
+    threads foreach (_.join())
+    done.await()
+  }
+}
+
+object ReactorFanInLockFree extends testing.Benchmark {
+  import ReactorFanIn._
+  def run = fanIn(new Counter(_))
+}
+
+object ReactorFanInLocked extends testing.Benchmark {
+  import ReactorFanIn._
+  def run = fanIn(new LockedCounter(_))
+}
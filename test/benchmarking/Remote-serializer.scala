@@ -0,0 +1,55 @@
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream}
+import scala.actors.remote.{CompactSerializer, JavaSerializer, Locator, NamedSend, Node}
+
+// Round trips of a remote message, as TcpService frames it, through each
+// serializer: the user message is serialized into a NamedSend, which is
+// serialized to an array and written to a stream as TcpServiceWorker.transmit
+// does, then read back with readObject, and the user message is deserialized.
+// Both serializers allocate the array of the frame on the send side.
+// The size of the frame is printed first.
+//
+// run with -Dmessages=<round trips per run>
+
+case class Quote(symbol: String, price: Double, volume: Long, exchange: Symbol)
+
+object RemoteSerializer {
+  CompactSerializer.register(CompactSerializer.FirstUserId, classOf[Quote])
+
+  val messages = sys.props("messages").toInt
+  val loc = Locator(Node("127.0.0.1", 9010), 'echo)
+  val quote = Quote("ACME", 12.5, 1000L, 'nyse)
+
+  def roundTrips(serializer: JavaSerializer) {
+    val bytes = new ByteArrayOutputStream
+    val out = new DataOutputStream(bytes)
+    var i = 0
+    while (i < messages) {
+      bytes.reset()
+      val frame = serializer.serialize(NamedSend(loc, loc, serializer.serialize(quote), 'nosession))
+      out.writeInt(frame.length)
+      out.write(frame)
+      out.flush()
+      val in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray))
+      val send = serializer.readObject(in).asInstanceOf[NamedSend]
+      if (serializer.deserialize(send.data) != quote) sys.error("wrong message")
+      i += 1
+    }
+  }
+
+  def frameSize(serializer: JavaSerializer) =
+    serializer.serialize(NamedSend(loc, loc, serializer.serialize(quote), 'nosession)).length + 4
+}
+
+object RemoteSerializerJava extends testing.Benchmark {
+  import RemoteSerializer._
+  val serializer = new JavaSerializer(null, null)
+  println("frame size: "+frameSize(serializer)+" bytes")
+  def run = roundTrips(serializer)
+}
+
+object RemoteSerializerCompact extends testing.Benchmark {
+  import RemoteSerializer._
+  val serializer = new CompactSerializer(null, null)
+  println("frame size: "+frameSize(serializer)+" bytes")
+  def run = roundTrips(serializer)
+}
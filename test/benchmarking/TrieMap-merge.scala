@@ -0,0 +1,46 @@
+import collection.concurrent.TrieMap
+
+
+
+// Counts occurrences of `keys` keys from `threads` threads, as a counter map would,
+// either with a lookup-replace loop or with merge.
+//
+// run with -Dkeys=<number of distinct keys> -Dthreads=<number of threads, 32 or more to see contention>
+
+object TrieMapCounters {
+  val keys = sys.props("keys").toInt
+  val threads = sys.props("threads").toInt
+  val increments = 1000000 / threads
+
+  def count(increment: (TrieMap[Int, Long], Int) => Unit) = {
+    val ct = new TrieMap[Int, Long]
+    val workers = for (t <- 0 until threads) yield new Thread {
+      override def run() {
+        var i = 0
+        while (i < increments) {
+          increment(ct, (t * 7919 + i) % keys)
+          i += 1
+        }
+      }
+    }
+    workers foreach (_.start())
+    workers foreach (_.join())
+    ct
+  }
+}
+
+object TrieMapReplaceLoop extends testing.Benchmark {
+  import TrieMapCounters._
+  def run = count { (ct, k) =>
+    var done = false
+    while (!done) ct.get(k) match {
+      case Some(n) => done = ct.replace(k, n, n + 1)
+      case None    => done = ct.putIfAbsent(k, 1L).isEmpty
+    }
+  }
+}
+
+object TrieMapMerge extends testing.Benchmark {
+  import TrieMapCounters._
+  def run = count((ct, k) => ct.merge(k, 1L)(_ + _))
+}
@@ -0,0 +1,62 @@
+import java.io.File
+import java.lang.management.ManagementFactory
+import scala.collection.JavaConverters._
+import scala.sys.process._
+import scala.tools.partest.instrumented.Instrumentation._
+
+class Overloads {
+  def f(x: Int) = x
+  def f(x: String) = x.length
+  def f(x: Int, y: Int) = x + y
+  def h(): Unit = ()
+}
+
+/** Runs itself again with the agent in hot-method mode, and checks the counts and the collapsed profile */
+object Test {
+  def prop(key: String) = {
+    val value = System.getProperty(key)
+    assert(value != null, key)
+    value
+  }
+
+  def main(args: Array[String]) {
+    if (scala.tools.partest.utils.Properties.isAvian) {
+      println("!!!TEST SKIPPED!!!")
+      println("Instrumentation is not supported on Avian.")
+    } else if (args.isEmpty) {
+      val agentArg = ManagementFactory.getRuntimeMXBean.getInputArguments.asScala.find(_ startsWith "-javaagent:")
+      val agentJar = agentArg.get.stripPrefix("-javaagent:").takeWhile(_ != '=')
+      val classpath = prop("partest.output") + prop("path.separator") + prop("java.class.path")
+      val javaBinary = prop("java.home") + "/bin/java"
+      print(List(javaBinary, "-javaagent:" + agentJar + "=hot", "-cp", classpath, "Test", "hot").!!)
+    } else {
+      // force predef initialization before profiling
+      Predef
+      val o = new Overloads
+      startProfiling()
+      for (i <- 1 to 3) o.f(i)
+      for (i <- 1 to 5) o.f("a")
+      for (i <- 1 to 7) o.f(i, i)
+      val threads = List.fill(4)(new Thread {
+        override def run(): Unit = for (i <- 1 to 1000) o.h()
+      })
+      threads foreach (_.start())
+      threads foreach (_.join())
+      stopProfiling()
+
+      println("Hot method statistics:")
+      getHotStatistics.toSeq.filter(_._1.className == "Overloads").sortBy(_._1) foreach {
+        case (trace, count) => printf("%5d  %s\n", count, trace)
+      }
+
+      val profile = File.createTempFile("hot-profile", ".txt")
+      try {
+        writeFlameGraph(profile.getPath)
+        println("Collapsed profile:")
+        val source = scala.io.Source.fromFile(profile)
+        try source.getLines.filter(_ startsWith "Overloads.").toList.sorted foreach println
+        finally source.close()
+      } finally profile.delete()
+    }
+  }
+}
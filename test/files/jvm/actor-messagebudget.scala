@@ -0,0 +1,37 @@
+/* An actor with a message budget of 100 reacts to the messages already in
+ * its mailbox 100 at a time, submitting a task for each batch instead of
+ * for each message.
+ */
+@deprecated("Suppress warnings", since="2.11")
+object Test {
+import java.util.concurrent.CountDownLatch
+import scala.actors.{Actor, Scheduler}
+
+val messages = 1000
+
+class Consumer(done: CountDownLatch) extends Actor {
+  override protected def messageBudget = 100
+  var next = 0
+  var ordered = true
+  def act() = loopWhile(next < messages) {
+    react {
+      case i: Int =>
+        if (i != next) ordered = false
+        next += 1
+        if (next == messages) done.countDown()
+    }
+  }
+}
+
+def main(args: Array[String]) {
+  val done = new CountDownLatch(1)
+  val consumer = new Consumer(done)
+  for (i <- 0 until messages) consumer ! i
+  Scheduler.metrics.reset()
+  consumer.start()
+  done.await()
+  println("ordered: " + consumer.ordered)
+  val resubmissions = Scheduler.metrics.resubmissionCount
+  println("resubmissions: " + (resubmissions >= messages / 100 - 1 && resubmissions <= messages / 100 + 1))
+}
+}
@@ -0,0 +1,31 @@
+/* `receiveFor` only tests the messages with the given key (their class by
+ * default), and leaves the others in the mailbox, in order.
+ */
+@deprecated("Suppress warnings", since="2.11")
+object Test {
+import scala.actors.Actor
+
+case class Reply(n: Int)
+
+class Receiver extends Actor {
+  def act() {
+    val r = receiveFor(classOf[Reply]) { case Reply(n) => n }
+    println("reply " + r)
+    println("scanned " + mailboxScannedMessages)
+    println("left " + mailboxSize)
+    receiveFor(classOf[Reply]) { case Reply(n) if n == 2 => println("guarded " + n) }
+    receiveFor(classOf[Reply]) { case Reply(n) => println("then " + n) }
+    receive { case s: String => println("first " + s) }
+    println("left " + mailboxSize)
+  }
+}
+
+def main(args: Array[String]) {
+  val receiver = new Receiver
+  for (i <- 0 until 1000) receiver ! ("s" + i)
+  receiver ! Reply(42)
+  receiver ! Reply(1)
+  receiver ! Reply(2)
+  receiver.start()
+}
+}
@@ -0,0 +1,69 @@
+/* Senders append to a reactor's send buffer without locking. Many threads
+ * send to a reactor and to a blocking actor at once: each must get every
+ * message, and the messages of one sender in order.
+ */
+@deprecated("Suppress warnings", since="2.11")
+object Test {
+import java.util.concurrent.CountDownLatch
+import scala.actors.{Actor, OutputChannel, Reactor}
+
+val producers = 16
+val messages = 1000
+
+class Checker {
+  val next = new Array[Int](producers)
+  var count = 0
+  var ok = true
+  def check(p: Int, i: Int) {
+    if (next(p) != i) ok = false
+    next(p) = i + 1
+    count += 1
+  }
+  def done = count == producers * messages
+}
+
+class FanInReactor(latch: CountDownLatch) extends Reactor[Any] {
+  val checker = new Checker
+  def act() = loopWhile(!checker.done) {
+    react {
+      case (p: Int, i: Int) =>
+        checker.check(p, i)
+        if (checker.done) latch.countDown()
+    }
+  }
+}
+
+class FanInActor(latch: CountDownLatch) extends Actor {
+  val checker = new Checker
+  def act() {
+    while (!checker.done)
+      receive {
+        case (p: Int, i: Int) => checker.check(p, i)
+      }
+    latch.countDown()
+  }
+}
+
+def sendAll(target: OutputChannel[Any]) {
+  val threads = for (p <- 0 until producers) yield new Thread {
+    override def run() {
+      for (i <- 0 until messages) target.send((p, i), null)
+    }
+  }
+  threads foreach (_.start())
+  threads foreach (_.join())
+}
+
+def main(args: Array[String]) {
+  val latch = new CountDownLatch(2)
+  val reactor = new FanInReactor(latch)
+  val actor = new FanInActor(latch)
+  reactor.start()
+  actor.start()
+  sendAll(reactor)
+  sendAll(actor)
+  latch.await()
+  println("reactor: " + reactor.checker.ok)
+  println("actor: " + actor.checker.ok)
+}
+}
@@ -0,0 +1,42 @@
+/* The values a `CompactSerializer` encodes itself, and those it leaves to
+ * Java serialization, come back equal, also through framed streams.
+ */
+@deprecated("Suppress warnings", since="2.11")
+object Test {
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream}
+import scala.actors.remote.{CompactSerializer, JavaSerializer, Locator, NamedSend, Node}
+
+case class Quote(symbol: String, price: Double, volume: Long, exchange: Symbol)
+
+def main(args: Array[String]) {
+  CompactSerializer.register(CompactSerializer.FirstUserId, classOf[Quote])
+  val compact = new CompactSerializer(null, null)
+  val java = new JavaSerializer(null, null)
+
+  val quote = Quote("ACME", 12.5, 1000L, 'nyse)
+  val values: List[AnyRef] = List(
+    null, Int.box(42), Int.box(-7), Long.box(Long.MaxValue), Double.box(1.5),
+    Char.box('c'), Boolean.box(true), "héllo", 'sym, scala.runtime.BoxedUnit.UNIT, None,
+    Some(quote), (1, 2), (1, "a", 'b'), List(1, 2, 3), Node("127.0.0.1", 9010))
+
+  for (v <- values) {
+    val back = compact.deserialize(compact.serialize(v))
+    println(v+": "+(back == v))
+  }
+
+  val bytes = Array.tabulate[Byte](100)(_.toByte)
+  val back = compact.deserialize(compact.serialize(bytes)).asInstanceOf[Array[Byte]]
+  println("bytes: "+(back sameElements bytes))
+
+  val loc = Locator(Node("127.0.0.1", 9010), 'echo)
+  val send = NamedSend(loc, loc, compact.serialize(quote), 'nosession)
+  val out = new ByteArrayOutputStream
+  compact.writeObject(new DataOutputStream(out), send)
+  compact.writeObject(new DataOutputStream(out), quote)
+  val in = new DataInputStream(new ByteArrayInputStream(out.toByteArray))
+  val sendBack = compact.readObject(in).asInstanceOf[NamedSend]
+  println("framed: "+(sendBack.receiverLoc == loc && compact.deserialize(sendBack.data) == quote && compact.readObject(in) == quote))
+
+  println("smaller: "+(compact.serialize(quote).length < java.serialize(quote).length))
+}
+}
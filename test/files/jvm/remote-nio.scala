@@ -0,0 +1,122 @@
+/* Remote actors over the selector-based `NioService`, see remote-nio.javaopts.
+ * An actor echoes the messages sent to it through the loopback interface:
+ * many small ones, and one larger than a read buffer.
+ *
+ * With `maxQueuedBytes` set low, a sender to a peer that does not read
+ * waits until the peer reads, and messages sent to a node before it is up
+ * are delivered once it is.
+ */
+@deprecated("Suppress warnings", since="2.11")
+object Test {
+import java.io.{BufferedInputStream, DataInputStream}
+import java.net.{InetSocketAddress, ServerSocket}
+import java.util.concurrent.CountDownLatch
+import scala.actors.Actor._
+import scala.actors.remote.{Node, NioService, TcpService}
+import scala.actors.remote.RemoteActor._
+
+def echo() {
+  val port = TcpService.generatePort
+  val up = new CountDownLatch(1)
+
+  val echo = actor {
+    alive(port)
+    register('echo, self)
+    up.countDown()
+    loop {
+      react {
+        case 'stop => exit()
+        case msg   => reply(msg)
+      }
+    }
+  }
+
+  up.await()
+  val remote = select(Node("127.0.0.1", port), 'echo)
+
+  val replies = for (i <- 0 until 100) yield remote !? i
+  println("small: "+(replies == (0 until 100)))
+
+  val big = Array.tabulate[Byte](1 << 20)(_.toByte)
+  val bigReply = (remote !? big).asInstanceOf[Array[Byte]]
+  println("large: "+(bigReply sameElements big))
+
+  remote ! 'stop
+}
+
+// a peer that only reads once told to, much more than the socket buffers can hold
+def backPressure() {
+  val peer = new ServerSocket()
+  peer.bind(new InetSocketAddress("127.0.0.1", 0))
+  val service = new NioService(TcpService.generatePort, getClass.getClassLoader, "127.0.0.1")
+  service.start()
+
+  val messages = 512
+  val frame = new Array[Byte](64 * 1024)
+  val sender = new Thread {
+    override def run() {
+      for (i <- 0 until messages)
+        service.send(Node("127.0.0.1", peer.getLocalPort), frame)
+    }
+  }
+  sender.start()
+
+  val socket = peer.accept()
+  val deadline = System.currentTimeMillis + 10000
+  while (sender.getState != Thread.State.WAITING && System.currentTimeMillis < deadline)
+    Thread.sleep(10)
+  println("sender blocked: "+(sender.getState == Thread.State.WAITING))
+
+  // the node of the service, then the messages
+  val in = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+  var frames = 0
+  var sizes = true
+  while (frames < messages + 1) {
+    val length = in.readInt()
+    if (frames > 0 && length != frame.length) sizes = false
+    in.readFully(new Array[Byte](length))
+    frames += 1
+  }
+  sender.join(10000)
+  println("sender done: "+(!sender.isAlive)+", all read: "+sizes)
+
+  socket.close()
+  peer.close()
+  service.terminate()
+}
+
+// messages to a node are kept while it is down, and sent with the next one once it is up
+def lateNode() {
+  val port = TcpService.generatePort
+  val remote = select(Node("127.0.0.1", port), 'late)
+  for (i <- 0 until 10) remote ! i
+  // let the connection to the node fail
+  Thread.sleep(500)
+
+  val up = new CountDownLatch(1)
+  val done = new CountDownLatch(1)
+  var received = List[Any]()
+  actor {
+    alive(port)
+    register('late, self)
+    up.countDown()
+    loopWhile(received.length < 11) {
+      react {
+        case msg =>
+          received = msg :: received
+          if (received.length == 11) done.countDown()
+      }
+    }
+  }
+  up.await()
+  remote ! 10
+  done.await()
+  println("late node: "+(received.reverse == (0 to 10).toList))
+}
+
+def main(args: Array[String]) {
+  echo()
+  backPressure()
+  lateNode()
+}
+}
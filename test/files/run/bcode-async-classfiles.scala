@@ -0,0 +1,30 @@
+// Classfiles written by the background writer of -Yasync-classfiles must all make it to disk,
+// in the output directories of their packages, which GenBCode resolves once per package.
+
+package p {
+  object A1 { def f = "A1" }
+  class  B1 { def f = "B1" }
+  object B1 { def f = "B1$" }
+  package q {
+    trait  C1 { def f = "C1" }
+    class  D1 extends C1
+    object E1 { class Inner { def f = "E1.Inner" } }
+  }
+}
+
+@scala.beans.BeanInfo class F1 { @scala.beans.BeanProperty var x: Int = 1 }
+case class G1(a: Int, b: String)
+
+object Test {
+  import p._, p.q._
+  def main(args: Array[String]) {
+    println(A1.f)
+    println((new B1).f)
+    println(B1.f)
+    println((new D1).f)
+    println((new E1.Inner).f)
+    println((new F1).getX)
+    println(G1(1, "one"))
+    println((1 to 20).map(i => (x: Int) => x * i).map(_(2)).sum)
+  }
+}
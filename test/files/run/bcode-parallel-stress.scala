@@ -0,0 +1,33 @@
+import scala.tools.partest._
+
+// Many classes through GenBCode's parallel pipeline. Each method merges values of two
+// classes, so the Worker2 threads compute stack map frames, and thus look up names,
+// for every class. All classfiles must make it to disk, and run.
+object Test extends DirectTest {
+  override def extraSettings: String =
+    "-usejavacp -Ybackend:GenBCode -Ybackend-parallelism 8 -d " + testOutput.path
+
+  val n = 500
+
+  def code = (0 until n).map(i => s"""
+class C$i extends Base {
+  def pick(b: Boolean): Base = { val x = if (b) new C$i else new D$i; x.id; x }
+  def id = $i
+}
+class D$i extends Base { def id = -$i }
+""").mkString("abstract class Base { def id: Int }\n", "", "")
+
+  override def show(): Unit = {
+    println("compiled: " + compile())
+    val classfiles = testOutput.jfile.listFiles.count(_.getName.endsWith(".class"))
+    println("classfiles: " + (classfiles == 2 * n + 1))
+    val loader = new java.net.URLClassLoader(Array(testOutput.jfile.toURI.toURL), getClass.getClassLoader)
+    val sum = (0 until n).map { i =>
+      val c = loader.loadClass("C" + i).newInstance
+      val m = c.getClass.getMethod("pick", classOf[Boolean])
+      val picked = m.invoke(c, Boolean.box(false))
+      picked.getClass.getMethod("id").invoke(picked).asInstanceOf[Int]
+    }.sum
+    println("ran: " + (sum == -(0 until n).sum))
+  }
+}
@@ -0,0 +1,32 @@
+import java.lang.management.ManagementFactory
+import scala.runtime.BoxesRunTime
+
+// Ints up to 100000 are boxed once, see box-cache.javaopts. Building collections
+// of them allocates a box less per element than for Ints above the cache.
+object Test {
+  val bean = ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+
+  def allocated(body: => Any): Long = {
+    val id = Thread.currentThread.getId
+    body // warm up, and fill the cache
+    val before = bean.getThreadAllocatedBytes(id)
+    body
+    bean.getThreadAllocatedBytes(id) - before
+  }
+
+  val n = 20000
+  val cached = 1000
+  val uncached = 200000
+
+  def main(args: Array[String]) {
+    println(BoxesRunTime.boxToInteger(cached + 1) eq BoxesRunTime.boxToInteger(cached + 1))
+    println(BoxesRunTime.boxToInteger(uncached + 1) eq BoxesRunTime.boxToInteger(uncached + 1))
+    println(BoxesRunTime.boxToLong(cached + 1) eq BoxesRunTime.boxToLong(cached + 1))
+
+    def list(from: Int) = (from until from + n).toList
+    def map(from: Int) = (from until from + n).map(i => i -> i).toMap
+    // a box takes at least 12 bytes
+    println(allocated(list(uncached)) - allocated(list(cached)) >= n * 12)
+    println(allocated(map(uncached)) - allocated(map(cached)) >= 2 * n * 12)
+  }
+}
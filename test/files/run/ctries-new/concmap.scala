@@ -183,6 +183,44 @@ object ConcurrentMapSpec extends Spec {
       assertEqual(pct.size, sz)
     }
 
+    "support updateWith" in {
+      val ct = new TrieMap[Wrap, Int]
+      for (i <- 0 until initsz) assertEqual(ct.updateWith(new Wrap(i))(old => Some(old.getOrElse(0) + i)), Some(i))
+      for (i <- 0 until initsz) assertEqual(ct.updateWith(new Wrap(i))(old => old map (-_)), Some(-i))
+      for (i <- 0 until initsz) assertEqual(ct.updateWith(new Wrap(i))(old => if (i % 2 == 0) None else old), if (i % 2 == 0) None else Some(-i))
+      for (i <- initsz until secondsz) assertEqual(ct.updateWith(new Wrap(i))(old => old), None)
+      for (i <- 0 until secondsz) assertEqual(ct.get(new Wrap(i)), if (i < initsz && i % 2 != 0) Some(-i) else None)
+    }
+
+    "support updateWith and merge with colliding keys" in {
+      val ct = TrieMap.withSizeTracking[DumbHash, Int]
+      for (i <- 0 until 100) ct.merge(new DumbHash(i), 1)(_ + _)
+      for (i <- 0 until 100) ct.merge(new DumbHash(i), 1)(_ + _)
+      for (i <- 0 until 100) assertEqual(ct.get(new DumbHash(i)), Some(2))
+      for (i <- 0 until 50) ct.updateWith(new DumbHash(i))(_ => None)
+      assertEqual(ct.size, 50)
+      assertEqual(ct.size, ct.readOnlySnapshot().size)
+    }
+
+    "count with merge, several threads" in {
+      val ct = TrieMap.withSizeTracking[Wrap, Int]
+      val keys = 100
+      val increments = 20000
+
+      class Counter(offs: Int) extends Thread {
+        override def run() {
+          for (i <- 0 until increments) ct.merge(new Wrap((offs + i) % keys), 1)(_ + _)
+        }
+      }
+
+      val threads = for (i <- 0 until 16) yield new Counter(i)
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+
+      assertEqual(ct.values.sum, 16 * increments)
+      assertEqual(ct.size, keys)
+    }
+
   }
 
 }
@@ -0,0 +1,94 @@
+import collection.concurrent.LongTrieMap
+
+
+
+object LongMapSpec extends Spec {
+
+  // keys whose two halves are equal all have the same hash, see LongTrieMap.hash
+  def colliding(i: Int) = i.toLong * 0x100000001L
+
+  def test() {
+    "insert, look up and remove keys" in {
+      val ct = new LongTrieMap[String]
+      for (i <- -500 until 500) ct.update(i.toLong << 20, i.toString)
+      for (i <- -500 until 500) assert(ct.lookup(i.toLong << 20) == i.toString)
+      assert(ct.lookup(1L) == null)
+      assert(ct.get(1L) == None)
+      ct.size shouldEqual 1000
+      for (i <- -500 until 0) assert(ct.remove(i.toLong << 20) == Some(i.toString))
+      for (i <- -500 until 0) assert(!ct.contains(i.toLong << 20))
+      ct.size shouldEqual 500
+    }
+
+    "support the concurrent map operations" in {
+      val ct = new LongTrieMap[Int]
+      assert(ct.putIfAbsent(Long.MaxValue, 1) == None)
+      assert(ct.putIfAbsent(Long.MaxValue, 2) == Some(1))
+      assert(!ct.replace(Long.MaxValue, 2, 3))
+      assert(ct.replace(Long.MaxValue, 1, 3))
+      assert(ct.replace(Long.MaxValue, 4) == Some(3))
+      assert(ct.replace(Long.MinValue, 4) == None)
+      assert(!ct.remove(Long.MaxValue, 3))
+      assert(ct.remove(Long.MaxValue, 4))
+      assert(ct.isEmpty)
+    }
+
+    "handle colliding keys" in {
+      LongTrieMap.hash(colliding(1)) shouldEqual LongTrieMap.hash(colliding(2))
+      val ct = new LongTrieMap[Int]
+      for (i <- 0 until 50) ct.put(colliding(i), i)
+      for (i <- 0 until 50) ct.put(colliding(i), -i)
+      for (i <- 0 until 50) assert(ct(colliding(i)) == -i)
+      ct.size shouldEqual 50
+      ct.iterator.map(_._1).toSet shouldEqual (0 until 50).map(colliding).toSet
+      for (i <- 0 until 49) assert(ct.remove(colliding(i)) == Some(-i))
+      ct.toList shouldEqual List((colliding(49), -49))
+      ct.remove(colliding(49))
+      assert(ct.isEmpty)
+    }
+
+    "take snapshots" in {
+      val ct = new LongTrieMap[Int]
+      for (i <- 0 until 1000) ct.update(i, i)
+      val snap = ct.snapshot()
+      val ro = ct.readOnlySnapshot()
+      for (i <- 0 until 1000) ct.remove(i)
+      for (i <- 0 until 500) snap.update(i, -i)
+      ct.size shouldEqual 0
+      snap.size shouldEqual 1000
+      ro.size shouldEqual 1000
+      for (i <- 0 until 1000) assert(ro(i) == i)
+      for (i <- 0 until 500) assert(snap(i) == -i)
+      ct.clear()
+      assert(snap.nonEmpty)
+    }
+
+    "be updated concurrently" in {
+      val ct = new LongTrieMap[Int]
+      val threads = for (t <- 0 until 4) yield new Thread {
+        override def run() {
+          for (i <- 0 until 2000) ct.update(t * 10000L + i, i)
+          for (i <- 0 until 1000) ct.remove(t * 10000L + i)
+        }
+      }
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+      ct.size shouldEqual 4000
+      for (t <- 0 until 4; i <- 1000 until 2000) assert(ct.lookup(t * 10000L + i) == i)
+    }
+
+    "be serializable" in {
+      val ct = LongTrieMap(1L -> "a", -1L -> "b", colliding(3) -> "c", colliding(4) -> "d")
+      val bos = new java.io.ByteArrayOutputStream
+      val out = new java.io.ObjectOutputStream(bos)
+      out.writeObject(ct)
+      out.close()
+      val in = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bos.toByteArray))
+      val copy = in.readObject().asInstanceOf[LongTrieMap[String]]
+      copy.toMap shouldEqual ct.toMap
+      copy.update(2L, "e")
+      copy.size shouldEqual 5
+    }
+  }
+
+}
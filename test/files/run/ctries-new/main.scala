@@ -14,6 +14,8 @@ object Test {
     IteratorSpec.test()
     LNodeSpec.test()
     SnapshotSpec.test()
+    SizeSpec.test()
+    LongMapSpec.test()
   }
 
 }
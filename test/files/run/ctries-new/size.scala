@@ -0,0 +1,70 @@
+import collection.concurrent.TrieMap
+
+
+
+object SizeSpec extends Spec {
+
+  def test() {
+    "track the size of a sequentially updated map" in {
+      val ct = TrieMap.withSizeTracking[Wrap, Int]
+      assert(ct.isSizeTracking)
+      for (i <- 0 until 500) ct.update(new Wrap(i), i)
+      ct.size shouldEqual 500
+      for (i <- 0 until 500) ct.update(new Wrap(i), -i)
+      ct.size shouldEqual 500
+      for (i <- 0 until 100) ct.put(new Wrap(i), i)
+      for (i <- 500 until 600) ct.putIfAbsent(new Wrap(i), i)
+      for (i <- 0 until 700) ct.replace(new Wrap(i), i)
+      ct.size shouldEqual 600
+      for (i <- 0 until 200) ct.remove(new Wrap(i))
+      for (i <- 200 until 300) ct.remove(new Wrap(i), -i - 1)
+      ct.size shouldEqual 400
+      ct.size shouldEqual ct.readOnlySnapshot().size
+    }
+
+    "track the size with colliding keys" in {
+      val ct = TrieMap.withSizeTracking[DumbHash, Int]
+      for (i <- 0 until 100) ct.put(new DumbHash(i), i)
+      for (i <- 0 until 100) ct.put(new DumbHash(i), i)
+      ct.size shouldEqual 100
+      for (i <- 0 until 50) ct -= new DumbHash(i)
+      ct.size shouldEqual 50
+    }
+
+    "track the size across snapshots and clear" in {
+      val ct = TrieMap.withSizeTracking[Wrap, Int]
+      for (i <- 0 until 300) ct.update(new Wrap(i), i)
+      val snap = ct.snapshot()
+      assert(snap.isSizeTracking)
+      for (i <- 0 until 100) snap.remove(new Wrap(i))
+      for (i <- 300 until 400) ct.update(new Wrap(i), i)
+      ct.size shouldEqual 400
+      snap.size shouldEqual 200
+      ct.clear()
+      ct.size shouldEqual 0
+      ct.update(new Wrap(0), 0)
+      ct.size shouldEqual 1
+      snap.size shouldEqual 200
+    }
+
+    "track the size under concurrent updates" in {
+      val sz = 20000
+      val ct = TrieMap.withSizeTracking[Wrap, Int]
+
+      class Updater(offset: Int) extends Thread {
+        override def run() {
+          for (i <- 0 until sz) ct.put(new Wrap(i % 1000 + offset), i)
+          for (i <- 0 until 500) ct.remove(new Wrap(i + offset))
+        }
+      }
+
+      val threads = for (t <- 0 until 4) yield new Updater(t * 500)
+      threads foreach (_.start())
+      threads foreach (_.join())
+
+      ct.size shouldEqual ct.readOnlySnapshot().size
+      ct.size shouldEqual ct.iterator.size
+    }
+  }
+
+}
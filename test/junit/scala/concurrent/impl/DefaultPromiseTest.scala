@@ -341,4 +341,62 @@ class DefaultPromiseTest {
     }
   }
 
+  @Test
+  def callbacksOnABatchingExecutorAreSubmittedAsOneBatch() {
+    val submitted = new ConcurrentLinkedQueue[Runnable]
+    object batching extends ExecutionContext with scala.concurrent.BatchingExecutor {
+      override protected def unbatchedExecute(r: Runnable): Unit = submitted add r
+      override def reportFailure(t: Throwable): Unit = throw t
+    }
+    val p = new DefaultPromise[Int]()
+    var called = List[Int]()
+    for (i <- 1 to 10) p.onComplete(v => called = i :: called)(batching)
+    p.success(1)
+    assertEquals(1, submitted.size)
+    submitted.poll().run()
+    assertEquals((1 to 10).toList, called.sorted)
+  }
+
+  @Test
+  def aThrowingCallbackDoesNotStopTheOthers() {
+    val submitted = new ConcurrentLinkedQueue[Runnable]
+    val failures = new ConcurrentLinkedQueue[Throwable]
+    object batching extends ExecutionContext with scala.concurrent.BatchingExecutor {
+      override protected def unbatchedExecute(r: Runnable): Unit = submitted add r
+      override def reportFailure(t: Throwable): Unit = failures add t
+    }
+    val p = new DefaultPromise[Int]()
+    var called = List[Int]()
+    val boom = new RuntimeException("boom")
+    for (i <- 1 to 10) p.onComplete { v =>
+      if (i == 5) throw boom
+      called = i :: called
+    }(batching)
+    p.success(1)
+    while (!submitted.isEmpty) submitted.poll().run()
+    assertEquals((1 to 10).filter(_ != 5).toList, called.sorted)
+    assertEquals(List(boom), failures.toArray.toList)
+  }
+
+  @Test
+  def callbacksOfARejectedBatchAreExecutedOneByOne() {
+    val submitted = new ConcurrentLinkedQueue[Runnable]
+    val failures = new ConcurrentLinkedQueue[Throwable]
+    val rejection = new java.util.concurrent.RejectedExecutionException("full")
+    object batching extends ExecutionContext with scala.concurrent.BatchingExecutor {
+      var rejectNext = true
+      override protected def unbatchedExecute(r: Runnable): Unit =
+        if (rejectNext) { rejectNext = false; throw rejection } else submitted add r
+      override def reportFailure(t: Throwable): Unit = failures add t
+    }
+    val p = new DefaultPromise[Int]()
+    var called = List[Int]()
+    for (i <- 1 to 10) p.onComplete(v => called = i :: called)(batching)
+    p.success(1)
+    assertEquals(10, submitted.size)
+    while (!submitted.isEmpty) submitted.poll().run()
+    assertEquals((1 to 10).toList, called.sorted)
+    assertEquals(List(rejection), failures.toArray.toList)
+  }
+
 }
@@ -0,0 +1,90 @@
+package scala.concurrent.impl
+
+import java.util.concurrent.{ CountDownLatch, Executors, ExecutorService, RejectedExecutionException }
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import scala.concurrent.{ Await, blocking, ExecutionContext, Future }
+import scala.concurrent.duration._
+import scala.util.Success
+
+@RunWith(classOf[JUnit4])
+class ExecutionContextImplTest {
+  @Test
+  def noStatisticsWithoutAForkJoinPool() {
+    val es = Executors.newSingleThreadExecutor()
+    try assertEquals(None, ExecutionContext.poolStatistics(ExecutionContext.fromExecutorService(es)))
+    finally es.shutdown()
+  }
+
+  @Test
+  def globalPoolStatistics() {
+    implicit val ec = ExecutionContext.global
+    val started = new CountDownLatch(1)
+    val release = new CountDownLatch(1)
+    val f = Future(blocking { started.countDown(); release.await() })
+    started.await()
+    val stats = ExecutionContext.poolStatistics(ec).get
+    assertTrue(stats.toString, stats.parallelism >= 1)
+    assertTrue(stats.toString, stats.poolSize >= 1)
+    assertTrue(stats.toString, stats.blockedThreads >= 1)
+    release.countDown()
+    Await.ready(f, 10.seconds)
+  }
+
+  /** A context with its own pool, created while the given properties are set. */
+  def withPool[T](properties: (String, String)*)(body: ExecutionContextImpl => T): T = {
+    val saved = properties map { case (k, _) => k -> System.getProperty(k) }
+    val ec = try {
+      for ((k, v) <- properties) System.setProperty(k, v)
+      ExecutionContextImpl.fromExecutor(null)
+    } finally for ((k, v) <- saved) if (v eq null) System.clearProperty(k) else System.setProperty(k, v)
+    try body(ec) finally ec.executor.asInstanceOf[ExecutorService].shutdown()
+  }
+
+  /** Blocks one thread of the pool of `ec`, then runs a second blocking section on it. */
+  def blockPastTheCap(ec: ExecutionContextImpl): (Future[Int], ExecutionContext.PoolStatistics) = {
+    val started = new CountDownLatch(1)
+    val release = new CountDownLatch(1)
+    val first = Future(blocking { started.countDown(); release.await() })(ec)
+    started.await()
+    val second = Future(blocking(42))(ec)
+    Await.ready(second, 10.seconds)
+    val stats = ec.poolStatistics.get
+    release.countDown()
+    Await.ready(first, 10.seconds)
+    (second, stats)
+  }
+
+  @Test
+  def blockPolicyRunsUncompensatedAtTheCap() {
+    withPool("scala.concurrent.context.maxExtraThreads" -> "1", "scala.concurrent.context.blockingPolicy" -> "block") { ec =>
+      val (second, stats) = blockPastTheCap(ec)
+      assertEquals(Some(Success(42)), second.value)
+      assertEquals(stats.toString, 2L, stats.blockingSections)
+      assertEquals(stats.toString, 1L, stats.uncompensatedBlockingSections)
+      assertEquals(stats.toString, 0L, stats.rejectedBlockingSections)
+    }
+  }
+
+  @Test
+  def rejectPolicyThrowsAtTheCap() {
+    withPool("scala.concurrent.context.maxExtraThreads" -> "1", "scala.concurrent.context.blockingPolicy" -> "reject") { ec =>
+      val (second, stats) = blockPastTheCap(ec)
+      assertTrue(second.value.toString, second.value.get.failed.get.isInstanceOf[RejectedExecutionException])
+      assertEquals(stats.toString, 2L, stats.blockingSections)
+      assertEquals(stats.toString, 0L, stats.uncompensatedBlockingSections)
+      assertEquals(stats.toString, 1L, stats.rejectedBlockingSections)
+    }
+  }
+
+  @Test
+  def invalidPolicyFallsBackToBlock() {
+    withPool("scala.concurrent.context.maxExtraThreads" -> "1", "scala.concurrent.context.blockingPolicy" -> "queue") { ec =>
+      val (second, stats) = blockPastTheCap(ec)
+      assertEquals(Some(Success(42)), second.value)
+      assertEquals(stats.toString, 1L, stats.uncompensatedBlockingSections)
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package scala.runtime
+
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(classOf[JUnit4])
+class BoxesRunTimeTest {
+  import BoxesRunTime.{ equals => eq, equalsNumNum, hashFromObject }
+
+  def box(x: Any): AnyRef = x.asInstanceOf[AnyRef]
+
+  @Test
+  def sameClassBoxes() {
+    assertTrue(eq(box(1), box(1)))
+    assertFalse(eq(box(1), box(2)))
+    assertTrue(eq(box(1L << 40), box(1L << 40)))
+    assertTrue(eq(box(0.0), box(-0.0)))
+    assertFalse(eq(box(Double.NaN), box(Double.NaN)))
+    assertTrue(equalsNumNum(Int.box(3), Int.box(3)))
+    assertTrue(eq("a", "a"))
+    assertFalse(eq("1", box(1)))
+  }
+
+  @Test
+  def mixedBoxes() {
+    val ones = List[Any](1, 1L, 1.0, 1.0f, 1.toByte, 1.toShort, BigInt(1), BigDecimal(1))
+    for (x <- ones; y <- ones) {
+      assertTrue(s"$x == $y", eq(box(x), box(y)))
+      assertEquals(s"$x.## == $y.##", hashFromObject(box(x)), hashFromObject(box(y)))
+    }
+    assertTrue(eq(box('a'), box(97L)))
+    assertTrue(eq(box(97.0), box('a')))
+    assertFalse(eq(box(1), box(1L << 32 | 1)))
+    assertFalse(eq(box(1), null))
+    assertFalse(eq(null, box(1)))
+  }
+}
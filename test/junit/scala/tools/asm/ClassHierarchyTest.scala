@@ -0,0 +1,180 @@
+package scala.tools.asm
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentHashMap, CountDownLatch}
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+import scala.collection.JavaConverters._
+import scala.tools.asm.Opcodes._
+import scala.tools.asm.tree.{ClassNode, FrameNode}
+import scala.tools.testing.AssertUtil.assertThrows
+
+@RunWith(classOf[JUnit4])
+/* ClassHierarchy answers as the reflection-based ClassWriter.getCommonSuperClass does, without loading classes. */
+class ClassHierarchyTest {
+
+  /* The default getCommonSuperClass of ClassWriter, which loads the classes. */
+  class ReflectiveWriter extends ClassWriter(0) {
+    def lub(a: String, b: String) = getCommonSuperClass(a, b)
+  }
+
+  /* p/C0 extends Object, and p/Ci extends p/C(i/2): the common super class of two is their common ancestor. */
+  def classfile(i: Int): Array[Byte] = {
+    val cw = new ClassWriter(0)
+    cw.visit(V1_6, ACC_PUBLIC, "p/C" + i, null, if (i == 0) "java/lang/Object" else "p/C" + (i / 2), null)
+    cw.visitEnd()
+    cw.toByteArray
+  }
+
+  class Synthetic(n: Int) extends ClassHierarchy.ClassBytes {
+    val reads = new ConcurrentHashMap[String, AtomicInteger]
+    def get(name: String): Array[Byte] = {
+      reads.putIfAbsent(name, new AtomicInteger)
+      reads.get(name).incrementAndGet()
+      if (name startsWith "p/C") {
+        val i = name.substring(3).toInt
+        if (i < n) classfile(i) else null
+      } else {
+        val is = getClass.getClassLoader.getResourceAsStream(name + ".class")
+        if (is == null) null else ClassReader.readClass(is, true)
+      }
+    }
+    def readsOf(name: String) = if (reads.containsKey(name)) reads.get(name).get else 0
+  }
+
+  def ancestor(i: Int, j: Int): String =
+    if (i == j) "p/C" + i else if (i > j) ancestor(i / 2, j) else ancestor(i, j / 2)
+
+  val types = List(
+    "java/lang/String", "java/lang/Integer", "java/util/ArrayList", "java/util/LinkedList",
+    "java/util/List", "java/lang/Runnable", "java/lang/Object", "java/lang/Cloneable", "java/io/Serializable",
+    "[Ljava/lang/String;", "[Ljava/lang/Object;", "[Ljava/lang/Integer;", "[I", "[J", "[[I",
+    "[[Ljava/lang/String;", "[Ljava/lang/Cloneable;", "[Ljava/util/List;", "[Ljava/util/ArrayList;")
+
+  @Test
+  def agreesWithReflection() {
+    val hierarchy = ClassHierarchy.forClassLoader(getClass.getClassLoader, 64)
+    val reflective = new ReflectiveWriter
+    for (a <- types; b <- types)
+      assertEquals(s"$a and $b", reflective.lub(a, b), hierarchy.getCommonSuperClass(a, b))
+  }
+
+  @Test
+  def interfaces() {
+    val hierarchy = ClassHierarchy.forClassLoader(getClass.getClassLoader, 64)
+    assertEquals("java/util/List", hierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/List"))
+    assertEquals("java/util/AbstractList", hierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"))
+    assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/lang/Runnable", "java/lang/String"))
+    assertTrue(hierarchy.isAssignableFrom("java/util/Collection", "java/util/ArrayList"))
+  }
+
+  @Test
+  def arrays() {
+    val hierarchy = new ClassHierarchy(new Synthetic(8), 64)
+    assertEquals("[Lp/C1;", hierarchy.getCommonSuperClass("[Lp/C3;", "[Lp/C1;"))
+    assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("[Lp/C3;", "[Lp/C4;"))
+    assertEquals("[I", hierarchy.getCommonSuperClass("[I", "[I"))
+    assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("[I", "[J"))
+    assertEquals("java/lang/Cloneable", hierarchy.getCommonSuperClass("java/lang/Cloneable", "[I"))
+    assertEquals("[Ljava/lang/Object;", hierarchy.getCommonSuperClass("[Ljava/lang/Object;", "[[I"))
+    assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("p/C3", "[Lp/C3;"))
+  }
+
+  @Test
+  def missingClasses() {
+    val bytes = new Synthetic(8)
+    val hierarchy = new ClassHierarchy(bytes, 64)
+    assertThrows[RuntimeException](hierarchy.getCommonSuperClass("p/C3", "p/C100"))
+    assertThrows[RuntimeException](hierarchy.getInfo("no/Such"))
+    // nothing is cached for a missing class: it is looked up again
+    assertThrows[RuntimeException](hierarchy.getInfo("no/Such"))
+    assertEquals(2, bytes.readsOf("no/Such"))
+    // and the classes that were found still answer
+    assertEquals("p/C1", hierarchy.getCommonSuperClass("p/C3", "p/C2"))
+  }
+
+  @Test
+  def leastRecentlyUsedEviction() {
+    // one entry per segment: of two names in the same segment, the second evicts the first
+    val bytes = new Synthetic(1000)
+    val hierarchy = new ClassHierarchy(bytes, 16)
+    def segment(name: String) = (name.hashCode & 0x7FFFFFFF) % 16
+    val first = "p/C1"
+    val other = (2 until 1000).map("p/C" + _).find(segment(_) == segment(first)).get
+
+    hierarchy.getInfo(first)
+    hierarchy.getInfo(first)
+    assertEquals(1, bytes.readsOf(first))
+    hierarchy.getInfo(other)
+    hierarchy.getInfo(first)
+    assertEquals(2, bytes.readsOf(first))
+
+    // a larger cache keeps both
+    val roomy = new Synthetic(1000)
+    val cached = new ClassHierarchy(roomy, 1024)
+    for (name <- List(first, other, first, other)) cached.getInfo(name)
+    assertEquals(1, roomy.readsOf(first))
+    assertEquals(1, roomy.readsOf(other))
+  }
+
+  @Test
+  def concurrentUse() {
+    val n = 512
+    // small enough for the threads to keep evicting each other's entries
+    val hierarchy = new ClassHierarchy(new Synthetic(n), 32)
+    val threads = 8
+    val start = new CountDownLatch(1)
+    val failures = new ConcurrentHashMap[String, String]
+    val workers = for (t <- 0 until threads) yield new Thread {
+      override def run() {
+        start.await()
+        val rnd = new scala.util.Random(t)
+        for (_ <- 0 until 2000) {
+          val i = 1 + rnd.nextInt(n - 1)
+          val j = 1 + rnd.nextInt(n - 1)
+          try {
+            val lub = hierarchy.getCommonSuperClass("p/C" + i, "p/C" + j)
+            if (lub != ancestor(i, j)) failures.put(s"$i, $j", lub)
+          } catch {
+            case e: Throwable => failures.put(s"$i, $j", e.toString)
+          }
+        }
+      }
+    }
+    workers foreach (_.start())
+    start.countDown()
+    workers foreach (_.join())
+    assertTrue(failures.asScala.take(10).toString, failures.isEmpty)
+  }
+
+  @Test
+  def framesRecomputedWithTheHierarchy() {
+    // p/C3 and p/C4 can't be loaded, only the hierarchy knows their common super class p/C1
+    val cw = new ClassWriter(ClassWriter.COMPUTE_MAXS, new ClassHierarchy(new Synthetic(8), 64))
+    cw.visit(V1_6, ACC_PUBLIC, "p/M", null, "java/lang/Object", null)
+    val mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "m", "(ZLp/C3;Lp/C4;)Ljava/lang/Object;", null, null)
+    val otherwise, end = new Label
+    mv.visitCode()
+    mv.visitVarInsn(ILOAD, 0)
+    mv.visitJumpInsn(IFEQ, otherwise)
+    mv.visitVarInsn(ALOAD, 1)
+    mv.visitJumpInsn(GOTO, end)
+    mv.visitLabel(otherwise)
+    mv.visitVarInsn(ALOAD, 2)
+    mv.visitLabel(end)
+    mv.visitInsn(ARETURN)
+    mv.visitMaxs(0, 0)
+    mv.visitEnd()
+    cw.visitEnd()
+    // as when instructions were resized: toByteArray computes the frames again
+    cw.invalidFrames = true
+
+    val cn = new ClassNode
+    new ClassReader(cw.toByteArray).accept(cn, 0)
+    val stacks = cn.methods.get(0).instructions.toArray.toList collect { case f: FrameNode if f.stack != null => f.stack.asScala.toList }
+    assertEquals(List(List("p/C1")), stacks)
+  }
+}
@@ -0,0 +1,115 @@
+package scala.tools.asm
+
+import java.nio.ByteBuffer
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+import scala.collection.JavaConverters._
+import scala.tools.asm.Opcodes._
+import scala.tools.asm.tree.{ClassNode, LdcInsnNode}
+
+@RunWith(classOf[JUnit4])
+/* A ClassReader built from any kind of ByteBuffer reads what one built from the array does, ASCII or not. */
+class ClassReaderTest {
+
+  // ASCII ones take the fast path of readUTF, the others are decoded from modified UTF-8:
+  // NUL is encoded on two bytes there, and a supplementary character as two surrogates of three bytes each
+  val strings = List(
+    "ascii", "", "caf\u00e9", "nul\u0000nul", "\u0000", "smile\uD83D\uDE00", "\u65e5\u672c",
+    "\u007f\u0080\u07ff\u0800\uffff")
+
+  val classfile: Array[Byte] = {
+    val cw = new ClassWriter(ClassWriter.COMPUTE_MAXS)
+    cw.visit(V1_6, ACC_PUBLIC, "p/Str\u00e9", null, "java/lang/Object", null)
+    for ((s, i) <- strings.zipWithIndex)
+      cw.visitField(ACC_PUBLIC, "f" + i + s, "Ljava/lang/String;", null, null).visitEnd()
+    val mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "m", "()V", null, null)
+    mv.visitCode()
+    for (s <- strings) {
+      mv.visitLdcInsn(s)
+      mv.visitInsn(POP)
+    }
+    mv.visitInsn(RETURN)
+    mv.visitMaxs(0, 0)
+    mv.visitEnd()
+    cw.visitEnd()
+    cw.toByteArray
+  }
+
+  /* The name of the class, of its fields, and its string constants. */
+  def contents(cr: ClassReader): List[Any] = {
+    val cn = new ClassNode
+    cr.accept(cn, 0)
+    val insns = cn.methods.get(0).instructions.toArray.toList
+    cn.name :: cn.fields.asScala.toList.map(_.name) ::: insns.collect { case ldc: LdcInsnNode => ldc.cst }
+  }
+
+  def rewritten(cr: ClassReader): Array[Byte] = {
+    val cw = new ClassWriter(0)
+    cr.accept(cw, 0)
+    cw.toByteArray
+  }
+
+  // with the constant pool copied from the reader
+  def copied(cr: ClassReader): Array[Byte] = {
+    val cw = new ClassWriter(cr, 0)
+    cr.accept(cw, 0)
+    cw.toByteArray
+  }
+
+  @Test
+  def stringsAreDecoded() {
+    val names = strings.zipWithIndex map { case (s, i) => "f" + i + s }
+    assertEquals("p/Str\u00e9" :: names ::: strings, contents(new ClassReader(classfile)))
+  }
+
+  def assertReadsAsArray(buffer: ByteBuffer) {
+    val reference = new ClassReader(classfile)
+    val position = buffer.position
+    val cr = new ClassReader(buffer)
+    assertEquals(contents(reference), contents(cr))
+    assertArrayEquals(rewritten(reference), rewritten(cr))
+    assertArrayEquals(copied(reference), copied(cr))
+    assertEquals(position, buffer.position)
+  }
+
+  // the classfile at offset 7 of a larger array
+  def padded: Array[Byte] = {
+    val a = new Array[Byte](classfile.length + 10)
+    System.arraycopy(classfile, 0, a, 7, classfile.length)
+    a
+  }
+
+  @Test
+  def heapBuffer() {
+    assertReadsAsArray(ByteBuffer.wrap(classfile))
+    assertReadsAsArray(ByteBuffer.wrap(padded, 7, classfile.length))
+  }
+
+  @Test
+  def slicedBuffer() {
+    val b = ByteBuffer.wrap(padded)
+    b.position(7)
+    val slice = b.slice()
+    slice.limit(classfile.length)
+    assertReadsAsArray(slice)
+  }
+
+  @Test
+  def readOnlyBuffer() {
+    assertReadsAsArray(ByteBuffer.wrap(classfile).asReadOnlyBuffer)
+    assertReadsAsArray(ByteBuffer.wrap(padded, 7, classfile.length).asReadOnlyBuffer)
+  }
+
+  @Test
+  def directBuffer() {
+    val b = ByteBuffer.allocateDirect(classfile.length + 3)
+    b.put(new Array[Byte](3))
+    b.put(classfile)
+    b.flip()
+    b.position(3)
+    assertReadsAsArray(b)
+  }
+}
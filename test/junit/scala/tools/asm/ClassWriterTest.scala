@@ -0,0 +1,71 @@
+package scala.tools.asm
+
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+import scala.tools.asm.Opcodes._
+import scala.tools.asm.tree.{ClassNode, InsnNode, LdcInsnNode, MethodInsnNode, MethodNode}
+
+@RunWith(classOf[JUnit4])
+/* The constant pool of a ClassWriter: entries are shared by equal values, whatever the String instances, and sizing it upfront changes nothing in the output. */
+class ClassWriterTest {
+
+  // a new instance each time, equal to but never identical with the others
+  def fresh(s: String) = new String(s.toCharArray)
+
+  @Test
+  def equalStringsShareEntries() {
+    val cw = new ClassWriter(0)
+    val utf8 = cw.newUTF8(fresh("name"))
+    assertEquals(utf8, cw.newUTF8(fresh("name")))
+    assertEquals(utf8, cw.newUTF8("name".intern))
+    assertTrue(utf8 != cw.newUTF8(fresh("other")))
+
+    val cls = cw.newClass(fresh("p/C"))
+    assertEquals(cls, cw.newClass(fresh("p/C")))
+    assertTrue(cls != cw.newClass(fresh("p/D")))
+    // the class entry refers to the UTF8 entry of its name, which is shared too
+    assertEquals(cw.newUTF8(fresh("p/C")), cw.newUTF8("p/C"))
+  }
+
+  def classNode(methods: Int): ClassNode = {
+    val cn = new ClassNode
+    cn.visit(V1_6, ACC_PUBLIC, "Big$", null, "java/lang/Object", null)
+    for (i <- 0 until methods) {
+      val m = new MethodNode(ACC_PUBLIC, fresh("field" + i), "()Ljava/lang/String;", null, null)
+      m.instructions.add(new LdcInsnNode(fresh("constant" + (i % 7))))
+      m.instructions.add(new MethodInsnNode(INVOKESTATIC, fresh("p/Owner" + (i % 3)), fresh("id"), fresh("(Ljava/lang/String;)Ljava/lang/String;")))
+      m.instructions.add(new InsnNode(ARETURN))
+      m.maxStack = 1
+      m.maxLocals = 1
+      cn.methods.add(m)
+    }
+    cn
+  }
+
+  def write(cw: ClassWriter, cn: ClassNode) = {
+    cn.accept(cw)
+    cw.toByteArray
+  }
+
+  @Test
+  def presizedPoolWritesTheSameClass() {
+    val cn = classNode(500)
+    val default = write(new ClassWriter(0), cn)
+    for (expected <- List(0, 1, 100, 2000, 100000))
+      assertArrayEquals(s"sized for $expected", default, write(new ClassWriter(0, null, expected), cn))
+  }
+
+  @Test
+  def duplicatesAreWrittenOnce() {
+    val cw = new ClassWriter(0)
+    val bytes = write(cw, classNode(100))
+    val cr = new ClassReader(bytes)
+    // the unused entry 0, 100 method names, 7 strings and their UTF8 entries, 3 owner classes and
+    // their names, "id", 2 descriptors, 1 name-and-type, 3 method refs, Big$ and Object and their
+    // names, and "Code"
+    assertEquals(1 + 100 + 2 * 7 + 2 * 3 + 1 + 2 + 1 + 3 + 4 + 1, cr.getItemCount)
+  }
+}
@@ -0,0 +1,84 @@
+package scala.tools.asm.tree
+
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+import scala.tools.asm.Opcodes._
+import scala.tools.testing.AssertUtil.assertThrows
+
+@RunWith(classOf[JUnit4])
+/* get and indexOf of an InsnList, whose instruction array is kept while appending and rebuilt after other edits. */
+class InsnListTest {
+
+  def nops(n: Int): List[AbstractInsnNode] = List.fill(n)(new InsnNode(NOP))
+
+  /* `list` holds exactly `expected`, in order, as seen by get, indexOf and the links. */
+  def assertHolds(list: InsnList, expected: List[AbstractInsnNode]) {
+    assertEquals(expected.size, list.size)
+    for ((insn, i) <- expected.zipWithIndex) {
+      assertSame(insn, list.get(i))
+      assertEquals(i, list.indexOf(insn))
+    }
+    assertEquals(expected, Iterator.iterate(list.getFirst)(_.getNext).takeWhile(_ != null).toList)
+    assertThrows[IndexOutOfBoundsException](list.get(list.size))
+    assertThrows[IndexOutOfBoundsException](list.get(-1))
+  }
+
+  @Test
+  def appends() {
+    val list = new InsnList
+    assertThrows[IndexOutOfBoundsException](list.get(0))
+    // more than the initial capacity of the array, which then has room past the end of the list
+    val insns = nops(40)
+    insns foreach (list add _)
+    assertHolds(list, insns)
+
+    val more = new InsnList
+    val appended = nops(30)
+    appended foreach (more add _)
+    list.get(0) // builds the array of `more`'s target before appending to it
+    list add more
+    assertHolds(list, insns ++ appended)
+    assertHolds(more, Nil)
+  }
+
+  @Test
+  def insertsAndRemoves() {
+    val list = new InsnList
+    val insns = nops(20)
+    insns foreach (list add _)
+
+    val first = new InsnNode(ICONST_0)
+    list insert first
+    val middle = new InsnNode(ICONST_1)
+    list.insertBefore(insns(10), middle)
+    assertHolds(list, first :: insns.take(10) ++ (middle :: insns.drop(10)))
+
+    list remove insns(5)
+    list remove first
+    val expected = insns.take(5) ++ insns.slice(6, 10) ++ (middle :: insns.drop(10))
+    assertHolds(list, expected)
+
+    // appending after a rebuild of the array extends it again
+    val last = new InsnNode(RETURN)
+    list add last
+    assertHolds(list, expected :+ last)
+
+    val replacement = new InsnNode(ICONST_2)
+    list.set(middle, replacement)
+    assertHolds(list, expected.map(i => if (i eq middle) replacement else i) :+ last)
+  }
+
+  @Test
+  def removeAll() {
+    val list = new InsnList
+    nops(20) foreach (list add _)
+    list.clear()
+    assertHolds(list, Nil)
+    val insns = nops(3)
+    insns foreach (list add _)
+    assertHolds(list, insns)
+  }
+}
@@ -0,0 +1,112 @@
+package scala.tools.asm.tree.analysis
+
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import org.junit.Test
+import org.junit.Assert._
+
+import scala.collection.JavaConverters._
+import scala.tools.asm.Opcodes._
+import scala.tools.asm.tree._
+
+@RunWith(classOf[JUnit4])
+/* Tests for Analyzer.reanalyze: after an edit, it must give the frames a fresh analysis gives. */
+class AnalyzerTest {
+
+  def method(maxLocals: Int, maxStack: Int)(insns: AbstractInsnNode*): MethodNode = {
+    val m = new MethodNode(ACC_STATIC, "m", "()V", null, null)
+    insns foreach (m.instructions add _)
+    m.maxLocals = maxLocals
+    m.maxStack = maxStack
+    m
+  }
+
+  // the sources of the values of each frame, as instruction indices
+  def sources(m: MethodNode, frames: Array[Frame[SourceValue]]): List[String] =
+    frames.toList map { f =>
+      if (f == null) "dead"
+      else {
+        val values = (0 until f.getLocals).map(f.getLocal(_)) ++ (0 until f.getStackSize).map(f.getStack(_))
+        values.map(_.insns.asScala.map(m.instructions.indexOf(_)).toList.sorted.mkString("{", ",", "}")).mkString(" ")
+      }
+    }
+
+  /* Analyzes `m`, then applies `edit`, which returns the first changed instruction. */
+  def assertReanalyzedAsFresh(m: MethodNode)(edit: => AbstractInsnNode) {
+    val analyzer = new Analyzer(new SourceInterpreter, true)
+    analyzer.analyze("C", m)
+    val firstChanged = edit
+    val incremental = sources(m, analyzer.reanalyze("C", m, firstChanged))
+    val fresh = sources(m, new Analyzer(new SourceInterpreter).analyze("C", m))
+    assertEquals(fresh, incremental)
+  }
+
+  @Test
+  def removedBackEdge() {
+    val loop = new LabelNode
+    val store = new VarInsnNode(ISTORE, 0)
+    val goto = new JumpInsnNode(GOTO, loop)
+    val m = method(1, 1)(
+      new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 0),
+      loop, new VarInsnNode(ILOAD, 0), new InsnNode(POP),
+      new InsnNode(ICONST_1), store, goto)
+    assertReanalyzedAsFresh(m) {
+      val ret = new InsnNode(RETURN)
+      m.instructions.set(store, ret)
+      m.instructions.remove(goto)
+      ret
+    }
+  }
+
+  @Test
+  def addedBackEdge() {
+    val loop = new LabelNode
+    val ret = new InsnNode(RETURN)
+    val m = method(1, 1)(
+      new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 0),
+      loop, new VarInsnNode(ILOAD, 0), new InsnNode(POP),
+      new InsnNode(ICONST_1), new VarInsnNode(ISTORE, 0), ret)
+    assertReanalyzedAsFresh(m) {
+      val goto = new JumpInsnNode(GOTO, loop)
+      m.instructions.insertBefore(ret, goto)
+      goto
+    }
+  }
+
+  @Test
+  def editAfterForwardJumps() {
+    val skips = List.fill(3)(new LabelNode)
+    val last = new VarInsnNode(ILOAD, 0)
+    val blocks = skips.zipWithIndex flatMap { case (skip, i) =>
+      List(new VarInsnNode(ILOAD, 0), new LdcInsnNode(Integer.valueOf(i)), new JumpInsnNode(IF_ICMPNE, skip),
+           new LdcInsnNode(Integer.valueOf(i)), new VarInsnNode(ISTORE, 0), skip)
+    }
+    val m = method(1, 2)((List(new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 0)) ++ blocks ++
+                          List(last, new InsnNode(POP), new InsnNode(RETURN))): _*)
+    assertReanalyzedAsFresh(m) {
+      val const = new InsnNode(ICONST_5)
+      m.instructions.insertBefore(last, const)
+      m.instructions.insertBefore(last, new VarInsnNode(ISTORE, 0))
+      const
+    }
+  }
+
+  @Test
+  def editInTryBlock() {
+    val (start, end, handler, done) = (new LabelNode, new LabelNode, new LabelNode, new LabelNode)
+    val nop = new InsnNode(NOP)
+    val m = method(1, 1)(
+      new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 0),
+      start, new InsnNode(ICONST_1), new VarInsnNode(ISTORE, 0), nop, end,
+      new JumpInsnNode(GOTO, done),
+      handler, new InsnNode(POP),
+      done, new VarInsnNode(ILOAD, 0), new InsnNode(POP), new InsnNode(RETURN))
+    m.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, null))
+    assertReanalyzedAsFresh(m) {
+      val const = new InsnNode(ICONST_2)
+      m.instructions.insertBefore(nop, const)
+      m.instructions.insertBefore(nop, new VarInsnNode(ISTORE, 0))
+      const
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package scala.tools.asm.tree.analysis
+
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import org.junit.Test
+import org.junit.Assert._
+
+import scala.collection.JavaConverters._
+import scala.tools.asm.Opcodes._
+import scala.tools.asm.tree._
+
+@RunWith(classOf[JUnit4])
+/* BitSourceInterpreter must find the sources SourceInterpreter finds. */
+class BitSourceInterpreterTest {
+
+  def method(desc: String, maxLocals: Int, maxStack: Int)(insns: AbstractInsnNode*): MethodNode = {
+    val m = new MethodNode(ACC_STATIC, "m", desc, null, null)
+    insns foreach (m.instructions add _)
+    m.maxLocals = maxLocals
+    m.maxStack = maxStack
+    m
+  }
+
+  // the sources and size of the values of each frame, sources as instruction indices
+  def values[V <: Value](m: MethodNode, frames: Array[Frame[V]])(insns: V => java.util.Set[AbstractInsnNode]): List[String] =
+    frames.toList map { f =>
+      if (f == null) "dead"
+      else {
+        val vs = (0 until f.getLocals).map(f.getLocal(_)) ++ (0 until f.getStackSize).map(f.getStack(_))
+        vs.map(v => insns(v).asScala.map(m.instructions.indexOf(_)).toList.sorted.mkString("{", ",", "}/") + v.getSize).mkString(" ")
+      }
+    }
+
+  def assertSameSources(m: MethodNode) {
+    val expected = values(m, new Analyzer(new SourceInterpreter).analyze("C", m))(_.insns)
+    val actual = values(m, new Analyzer(new BitSourceInterpreter(m.instructions)).analyze("C", m))(_.getInsns(m.instructions))
+    assertEquals(expected, actual)
+  }
+
+  @Test
+  def mergeOfLongs() {
+    val (otherwise, join) = (new LabelNode, new LabelNode)
+    assertSameSources(method("(I)J", 3, 4)(
+      new VarInsnNode(ILOAD, 0), new JumpInsnNode(IFEQ, otherwise),
+      new InsnNode(LCONST_1), new VarInsnNode(LSTORE, 1), new JumpInsnNode(GOTO, join),
+      otherwise, new LdcInsnNode(java.lang.Long.valueOf(7)), new VarInsnNode(LSTORE, 1),
+      join, new VarInsnNode(LLOAD, 1), new InsnNode(DUP2), new InsnNode(LADD), new InsnNode(LRETURN)))
+  }
+
+  @Test
+  def loop() {
+    val (head, exit) = (new LabelNode, new LabelNode)
+    assertSameSources(method("(I)I", 2, 2)(
+      new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 1),
+      head, new VarInsnNode(ILOAD, 0), new JumpInsnNode(IFLE, exit),
+      new VarInsnNode(ILOAD, 1), new VarInsnNode(ILOAD, 0), new InsnNode(IADD), new VarInsnNode(ISTORE, 1),
+      new IincInsnNode(0, -1), new JumpInsnNode(GOTO, head),
+      exit, new VarInsnNode(ILOAD, 1), new InsnNode(IRETURN)))
+  }
+
+  @Test
+  def handler() {
+    val (start, end, handler, done) = (new LabelNode, new LabelNode, new LabelNode, new LabelNode)
+    val m = method("(Ljava/lang/Object;)I", 2, 1)(
+      new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 1),
+      start, new VarInsnNode(ALOAD, 0),
+      new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I"), new VarInsnNode(ISTORE, 1), end,
+      new JumpInsnNode(GOTO, done),
+      handler, new InsnNode(POP), new InsnNode(ICONST_M1), new VarInsnNode(ISTORE, 1),
+      done, new VarInsnNode(ILOAD, 1), new InsnNode(IRETURN))
+    m.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, null))
+    assertSameSources(m)
+  }
+
+  @Test
+  def manyMergesPastOneWord() {
+    // more than 64 instructions, so the sets of sources span several words
+    val blocks = (0 until 30).toList flatMap { i =>
+      val skip = new LabelNode
+      List(new VarInsnNode(ILOAD, 0), new LdcInsnNode(Integer.valueOf(i)), new JumpInsnNode(IF_ICMPNE, skip),
+           new LdcInsnNode(Integer.valueOf(i)), new VarInsnNode(ISTORE, 1), skip)
+    }
+    assertSameSources(method("(I)I", 2, 2)(
+      (List(new InsnNode(ICONST_0), new VarInsnNode(ISTORE, 1)) ++ blocks ++
+       List(new VarInsnNode(ILOAD, 1), new InsnNode(IRETURN))): _*))
+  }
+}
@@ -0,0 +1,142 @@
+package scala.tools.nsc
+package backend.jvm
+
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+import scala.collection.mutable.ListBuffer
+import scala.reflect.io.{ AbstractFile, Path, PlainFile }
+
+@RunWith(classOf[JUnit4])
+/* Classfiles written on the background thread of a ClassfileSink (-Yasync-classfiles). */
+class ClassfileSinkTest {
+
+  class Reports {
+    val errors = ListBuffer.empty[String]
+    val infos  = ListBuffer.empty[String]
+    val threads = ListBuffer.empty[Thread]
+    def sink = new ClassfileSink(
+      msg => { errors += msg; threads += Thread.currentThread },
+      msg => { infos += msg; threads += Thread.currentThread })
+  }
+
+  def tempDir() = {
+    val dir = java.io.File.createTempFile("classfile-sink", "")
+    dir.delete()
+    dir.mkdir()
+    dir.deleteOnExit()
+    dir
+  }
+
+  def file(jfile: java.io.File): AbstractFile = new PlainFile(Path(jfile))
+
+  def read(jfile: java.io.File): Array[Byte] = file(jfile).toByteArray
+
+  def write(jfile: java.io.File, bytes: Array[Byte]) {
+    val out = new java.io.FileOutputStream(jfile)
+    try out.write(bytes) finally out.close()
+  }
+
+  def contents(i: Int) = s"class C$i".getBytes("UTF-8")
+
+  @Test
+  def everyClassfileLands() {
+    val dir = tempDir()
+    val jfiles = (0 until 200).map(i => new java.io.File(dir, s"C$i.class"))
+    val reports = new Reports
+    val sink = reports.sink
+    for ((jfile, i) <- jfiles.zipWithIndex) sink.write(file(jfile), contents(i), "wrote " + jfile)
+    // queued again, maybe in the same round as before: the last contents win
+    sink.write(file(jfiles(0)), contents(1000), "wrote " + jfiles(0))
+    sink.close()
+
+    assertEquals(Nil, reports.errors.toList)
+    for ((jfile, i) <- jfiles.zipWithIndex; if i > 0)
+      assertArrayEquals(jfile.toString, contents(i), read(jfile))
+    assertArrayEquals(contents(1000), read(jfiles(0)))
+  }
+
+  @Test
+  def unchangedClassfilesAreLeftUntouched() {
+    val dir = tempDir()
+    val same = new java.io.File(dir, "Same.class")
+    val changed = new java.io.File(dir, "Changed.class")
+    write(same, contents(1))
+    write(changed, contents(2))
+    val past = System.currentTimeMillis - 3600 * 1000
+    same.setLastModified(past)
+    changed.setLastModified(past)
+
+    val reports = new Reports
+    val sink = reports.sink
+    sink.write(file(same), contents(1), "wrote " + same)
+    sink.write(file(changed), contents(3), "wrote " + changed)
+    sink.close()
+
+    assertEquals(past / 1000, same.lastModified / 1000)
+    assertArrayEquals(contents(3), read(changed))
+    assertEquals(List("left 1 unchanged classfiles untouched"), reports.infos.toList.filterNot(_ startsWith "wrote"))
+  }
+
+  @Test
+  def errorsSurfaceOnTheClosingThread() {
+    val dir = tempDir()
+    val notADirectory = new java.io.File(dir, "p")
+    write(notADirectory, contents(0))
+    val reports = new Reports
+    val sink = reports.sink
+    val c = new java.io.File(notADirectory, "C.class")
+    val d = new java.io.File(dir, "D.class")
+    sink.write(file(c), contents(1), "wrote " + c)
+    sink.write(file(d), contents(2), "wrote " + d)
+    sink.close()
+
+    assertEquals(1, reports.errors.size)
+    assertTrue(reports.errors.head, reports.errors.head startsWith "error writing")
+    assertEquals(List(Thread.currentThread), reports.threads.toList.distinct)
+    assertArrayEquals(contents(2), read(d))
+    // only the classfile that was written is reported as such
+    assertEquals(List("wrote " + d), reports.infos.toList)
+  }
+
+  @Test
+  def progressIsReportedOnceWritten() {
+    val dir = tempDir()
+    val jfiles = (0 until 50).map(i => new java.io.File(dir, s"C$i.class"))
+    val onDisk = ListBuffer.empty[Boolean]
+    val sink = new ClassfileSink(
+      msg => fail(msg),
+      msg => if (!(msg startsWith "left")) onDisk += new java.io.File(msg).isFile)
+    for ((jfile, i) <- jfiles.zipWithIndex) sink.write(file(jfile), contents(i), jfile.getPath)
+    sink.close()
+
+    assertEquals(List.fill(jfiles.size)(true), onDisk.toList)
+  }
+
+  @Test
+  def aDeadWriterIsNotSilent() {
+    val dir = tempDir()
+    val boom = new Error("boom")
+    val fatal = new PlainFile(Path(new java.io.File(dir, "Fatal.class"))) {
+      override def output = throw boom
+    }
+    val reports = new Reports
+    val sink = reports.sink
+    sink.write(fatal, contents(0), "wrote Fatal")
+
+    // the Error stops the writer thread, later classfiles can't be written
+    def rethrown(body: => Unit): Throwable =
+      try { body; null } catch { case t: Throwable => t }
+    var laterWrite: Throwable = null
+    val deadline = System.currentTimeMillis + 10000
+    while (laterWrite == null && System.currentTimeMillis < deadline) {
+      laterWrite = rethrown(sink.write(file(new java.io.File(dir, "Later.class")), contents(1), "wrote Later"))
+      Thread.sleep(10)
+    }
+    assertSame(boom, laterWrite)
+    assertSame(boom, rethrown(sink.close()))
+    assertFalse(reports.infos.toList.toString, reports.infos exists (_ startsWith "wrote"))
+  }
+}
@@ -0,0 +1,92 @@
+package scala.tools.nsc
+package io
+
+import java.io.{ ByteArrayOutputStream, FileInputStream, InputStream }
+import java.util.jar.{ Attributes, JarInputStream, Manifest => JManifest }
+import java.util.zip.{ CRC32, ZipEntry, ZipFile }
+
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(classOf[JUnit4])
+/* Jars written by ParallelJarWriter, read back by java.util.zip and java.util.jar. */
+class ParallelJarWriterTest {
+  // more entries than a pool of 4 threads keeps pending
+  val entries: List[(String, Array[Byte])] = List(
+    "A.class"         -> "class A".getBytes("UTF-8"),
+    "p/Empty.class"   -> Array.empty[Byte],
+    "p/q/Big.class"   -> Array.tabulate(200000)(i => (i % 251).toByte),
+    "p/Über.class" -> Array.fill(1000)(7.toByte)
+  ) ++ (0 until 40).map(i => s"r/C$i.class" -> s"class C$i extends C${i + 1}".getBytes("UTF-8"))
+
+  def manifest = {
+    val m = new JManifest
+    m.getMainAttributes.put(Attributes.Name.MANIFEST_VERSION, "1.0")
+    m.getMainAttributes.put(Attributes.Name.MAIN_CLASS, "p.Main")
+    m
+  }
+
+  def crc(bytes: Array[Byte]) = {
+    val c = new CRC32
+    c.update(bytes)
+    c.getValue
+  }
+
+  def readAll(in: InputStream): Array[Byte] = {
+    val out = new ByteArrayOutputStream
+    val buf = new Array[Byte](8192)
+    var n = in.read(buf)
+    while (n >= 0) {
+      out.write(buf, 0, n)
+      n = in.read(buf)
+    }
+    out.toByteArray
+  }
+
+  def writeJar(threads: Int, compress: Boolean): java.io.File = {
+    val jfile = java.io.File.createTempFile("parallel-jar-writer", ".jar")
+    jfile.deleteOnExit()
+    val writer = new ParallelJarWriter(File(jfile), manifest, threads, compress)
+    for ((path, bytes) <- entries) writer.writeEntry(path, bytes)
+    writer.close()
+    jfile
+  }
+
+  def checkJar(threads: Int, compress: Boolean) {
+    val jfile = writeJar(threads, compress)
+
+    val zip = new ZipFile(jfile)
+    try {
+      for ((path, bytes) <- entries) {
+        val entry = zip.getEntry(path)
+        assertNotNull(path, entry)
+        assertEquals(path, if (compress) ZipEntry.DEFLATED else ZipEntry.STORED, entry.getMethod)
+        assertEquals(path, bytes.length.toLong, entry.getSize)
+        assertEquals(path, crc(bytes), entry.getCrc)
+        if (!compress) assertEquals(path, bytes.length.toLong, entry.getCompressedSize)
+        assertArrayEquals(path, bytes, readAll(zip.getInputStream(entry)))
+      }
+    } finally zip.close()
+
+    // reads the local headers, checking the CRC of each entry as it goes
+    val jar = new JarInputStream(new FileInputStream(jfile))
+    try {
+      assertEquals("p.Main", jar.getManifest.getMainAttributes.getValue(Attributes.Name.MAIN_CLASS))
+      var read = List.empty[String]
+      var entry = jar.getNextJarEntry
+      while (entry != null) {
+        read ::= entry.getName
+        assertArrayEquals(entry.getName, entries.find(_._1 == entry.getName).get._2, readAll(jar))
+        entry = jar.getNextJarEntry
+      }
+      assertEquals(entries.map(_._1), read.reverse)
+    } finally jar.close()
+  }
+
+  @Test def deflated(): Unit         = checkJar(threads = 1, compress = true)
+  @Test def deflatedInParallel(): Unit = checkJar(threads = 4, compress = true)
+  @Test def stored(): Unit           = checkJar(threads = 1, compress = false)
+  @Test def storedInParallel(): Unit = checkJar(threads = 4, compress = false)
+}
@@ -0,0 +1,53 @@
+package scala.util.hashing
+
+import org.junit.Assert._
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(classOf[JUnit4])
+class MurmurHash3Test {
+  import MurmurHash3._
+
+  // the hash of an array, element by element, as computed before the bulk helpers in Statics
+  def elementwise(xs: Seq[Any], seed: Int) =
+    finalizeHash(xs.foldLeft(seed)((h, x) => mix(h, x.##)), xs.length)
+
+  @Test
+  def primitiveArrays() {
+    for (n <- 0 to 9) {
+      val ints = Array.tabulate(n)(i => i * 0x9e3779b9)
+      assertEquals(elementwise(ints, arraySeed), arrayHash(ints))
+      val longs = Array.tabulate(n)(i => if (i % 2 == 0) i.toLong else i.toLong << 40)
+      assertEquals(elementwise(longs, arraySeed), arrayHash(longs))
+      val doubles = Array.tabulate(n)(i => if (i % 2 == 0) i.toDouble else i / 3.0)
+      assertEquals(elementwise(doubles, arraySeed), arrayHash(doubles))
+      val chars = Array.tabulate(n)(i => ('a' + i * 4000).toChar)
+      assertEquals(elementwise(chars, arraySeed), arrayHash(chars))
+      val bytes = Array.tabulate(n)(i => (i * 37).toByte)
+      assertEquals(elementwise(bytes, arraySeed), arrayHash(bytes))
+      val strings = Array.tabulate(n)(_.toString)
+      assertEquals(elementwise(strings, arraySeed), arrayHash(strings))
+    }
+  }
+
+  @Test
+  def wrappedArraysHashLikeOtherSeqs() {
+    val xs = (0 until 13).toArray
+    assertEquals(xs.toList.hashCode, xs.toSeq.hashCode)
+    assertEquals(xs.map(_.toLong).toList.hashCode, xs.map(_.toLong).toSeq.hashCode)
+    assertEquals(xs.map(_ / 2.0).toList.hashCode, xs.map(_ / 2.0).toSeq.hashCode)
+    assertEquals("abcde".toList.hashCode, "abcde".toArray.toSeq.hashCode)
+  }
+
+  @Test
+  def strings() {
+    for (s <- List("", "a", "ab", "abc", "ሴ噸骼")) {
+      val pairs = s.grouped(2).toList
+      val h = pairs.foldLeft(stringSeed) { (h, p) =>
+        if (p.length == 2) mix(h, (p(0) << 16) + p(1)) else mixLast(h, p(0).toInt)
+      }
+      assertEquals(finalizeHash(h, s.length), stringHash(s))
+    }
+  }
+}